@@ -8,6 +8,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @RestController
 @RequestMapping("/consumer")
 public class HelloController {
@@ -23,4 +28,24 @@ public class HelloController {
 		return helloInterface.hello(name);
 	}
 
+	// 并发的调用在 consumer 端攒成一个批量请求, 每个调用最多多等 RestclientBatch 的时间窗口
+	@GetMapping("/sayHelloBatched")
+	public String sayHelloBatched(@RequestParam("name") String name) {
+		return helloInterface.helloBatched(name);
+	}
+
+	// 返回 CompletableFuture, 等待 provider 的时候不占用 Tomcat 的线程, 结果回来以后再写响应
+	@GetMapping("/sayHelloAsync")
+	public CompletableFuture<String> sayHelloAsync(@RequestParam("name") String name) {
+		return helloInterface.helloAsync(name);
+	}
+
+	@GetMapping("/sayHelloStream")
+	public List<String> sayHelloStream(@RequestParam("name") String name, @RequestParam("count") int count) {
+		// 关闭 Stream 的时候归还连接
+		try (Stream<String> hellos = helloInterface.helloStream(name, count)) {
+			return hellos.collect(Collectors.toList());
+		}
+	}
+
 }
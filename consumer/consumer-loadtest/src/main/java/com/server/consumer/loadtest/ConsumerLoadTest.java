@@ -0,0 +1,50 @@
+package com.server.consumer.loadtest;
+
+import com.server.consumer.controller.ConsumerControllerApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * <p>
+ * 端到端的压测: 启动 provider 替身和 ConsumerControllerApplication（都是随机端口）,
+ * 然后对 consumer 的 /consumer/sayHello 做闭环和开环的压测, 输出吞吐量和延迟的百分位数。
+ * </p>
+ *
+ * <p>
+ * 参数见 LoadTestOptions。consumer 的其它配置和 application.properties 一样, 可以用 JVM 参数
+ * （-Dmicro.rest-client.max-connections=20 这样）覆盖, 用来比较连接池或者传输层的调整
+ * </p>
+ */
+@Slf4j
+public class ConsumerLoadTest {
+
+	public static void main(String[] args) throws Exception {
+		LoadTestOptions options = LoadTestOptions.parse(args);
+		try (ProviderStandIn provider = new ProviderStandIn(options);
+			 // 用命令行参数传, 优先级比 application.properties 高
+			 ConfigurableApplicationContext consumer = new SpringApplicationBuilder(ConsumerControllerApplication.class)
+				 .run("--server.port=0",
+					 "--micro.rest-client.services.provider.instances=" + provider.baseUrl(),
+					 "--micro.rest-client.services.provider.codec=" + options.getCodec())) {
+			int port = ((WebServerApplicationContext) consumer).getWebServer().getPort();
+			LoadGenerator generator = new LoadGenerator("http://127.0.0.1:" + port);
+			log.info("压测参数 {}", options);
+
+			if (!options.getWarmup().isZero()) {
+				generator.closed("warmup", options.getConcurrency(), options.getWarmup(), null);
+			}
+			StringBuilder report = new StringBuilder();
+			if (!"open".equals(options.getMode())) {
+				report.append(generator.closed("closed-loop concurrency=" + options.getConcurrency(),
+					options.getConcurrency(), options.getDuration(), options.getExpectedInterval()).report());
+			}
+			if (!"closed".equals(options.getMode())) {
+				report.append(generator.open("open-loop rate=" + options.getRate() + "/s", options.getRate(),
+					options.getMaxOutstanding(), options.getDuration()).report());
+			}
+			log.info("压测结果{}", report);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.server.consumer.loadtest;
+
+import com.seaflower.microcommon.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * 对 consumer 的 /consumer/sayHello 发请求的压测客户端, 两种模式:
+ * <ul>
+ *     <li>闭环（closed）: 固定数量的线程, 每个线程一个请求结束再发下一个。服务变慢的时候发出的请求也变少,
+ *     延迟会被低估（coordinated omission）, 所以按期望的间隔补上被推迟的请求</li>
+ *     <li>开环（open）: 按固定的速率发请求, 不等之前的请求结束。延迟从计划发出的时间开始算,
+ *     发送端自己来不及的时间也算进去, 不需要再修正</li>
+ * </ul>
+ * </p>
+ */
+@Slf4j
+public class LoadGenerator {
+	private final HttpClient client;
+	private final String baseUrl;
+
+	public LoadGenerator(String baseUrl) {
+		this.baseUrl = baseUrl;
+		this.client = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+	}
+
+	public LoadResult closed(String name, int concurrency, Duration duration, Duration expectedInterval)
+		throws InterruptedException {
+		LatencyHistogram histogram = new LatencyHistogram(1, TimeUnit.DAYS);
+		LongAdder requests = new LongAdder();
+		LongAdder errors = new LongAdder();
+		long start = System.nanoTime();
+		long end = start + duration.toNanos();
+
+		List<Thread> workers = new ArrayList<>(concurrency);
+		for (int i = 0; i < concurrency; i++) {
+			Thread worker = new Thread(() -> {
+				while (System.nanoTime() < end) {
+					long sent = System.nanoTime();
+					boolean ok = send();
+					histogram.record(System.nanoTime() - sent);
+					requests.increment();
+					if (!ok) {
+						errors.increment();
+					}
+				}
+			}, "load-closed-" + i);
+			worker.start();
+			workers.add(worker);
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		LatencyHistogram.Snapshot raw = histogram.snapshot();
+		long interval = expectedInterval != null ? expectedInterval.toNanos() : raw.valueAt(0.5);
+		return new LoadResult(name, requests.sum(), errors.sum(), elapsed, raw,
+			raw.correctedForCoordinatedOmission(interval));
+	}
+
+	public LoadResult open(String name, int rate, int maxOutstanding, Duration duration) throws InterruptedException {
+		LatencyHistogram raw = new LatencyHistogram(1, TimeUnit.DAYS);
+		LatencyHistogram corrected = new LatencyHistogram(1, TimeUnit.DAYS);
+		LongAdder requests = new LongAdder();
+		LongAdder errors = new LongAdder();
+		AtomicInteger outstanding = new AtomicInteger();
+		long period = TimeUnit.SECONDS.toNanos(1) / rate;
+		long start = System.nanoTime();
+		long end = start + duration.toNanos();
+
+		for (long i = 0; ; i++) {
+			long intended = start + i * period;
+			if (intended >= end) {
+				break;
+			}
+			long now;
+			while ((now = System.nanoTime()) < intended) {
+				LockSupport.parkNanos(intended - now);
+			}
+			requests.increment();
+			if (outstanding.incrementAndGet() > maxOutstanding) {
+				// 压测机自己已经跟不上了, 不再发出, 记成失败
+				outstanding.decrementAndGet();
+				errors.increment();
+				continue;
+			}
+			long sent = System.nanoTime();
+			client.sendAsync(request(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+				long done = System.nanoTime();
+				raw.record(done - sent);
+				corrected.record(done - intended);
+				if (e != null || response.statusCode() != 200) {
+					errors.increment();
+				}
+				outstanding.decrementAndGet();
+			});
+		}
+		// 等还没有结束的请求
+		long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (outstanding.get() > 0 && System.nanoTime() < drainUntil) {
+			Thread.sleep(10);
+		}
+		if (outstanding.get() > 0) {
+			log.warn("还有 {} 个请求没有结束, 不计入结果", outstanding.get());
+		}
+		long elapsed = System.nanoTime() - start;
+		return new LoadResult(name, requests.sum(), errors.sum(), elapsed, raw.snapshot(), corrected.snapshot());
+	}
+
+	private boolean send() {
+		try {
+			return client.send(request(), HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private HttpRequest request() {
+		// 名字不重复, 避免被 consumer 端的缓存或者合并影响
+		String name = "load" + ThreadLocalRandom.current().nextInt(1_000_000);
+		return HttpRequest.newBuilder(URI.create(baseUrl + "/consumer/sayHello?name=" + name))
+			.timeout(Duration.ofSeconds(30))
+			.GET()
+			.build();
+	}
+}
@@ -0,0 +1,53 @@
+package com.server.consumer.loadtest;
+
+import com.seaflower.microcommon.metrics.LatencyHistogram;
+
+import java.util.Locale;
+
+/**
+ * 一轮压测的结果。raw 是从真正发出请求开始算的延迟, corrected 是修正了 coordinated omission 以后的延迟
+ */
+public class LoadResult {
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final String name;
+	private final long requests;
+	private final long errors;
+	private final long elapsedNanos;
+	private final LatencyHistogram.Snapshot raw;
+	private final LatencyHistogram.Snapshot corrected;
+
+	public LoadResult(String name, long requests, long errors, long elapsedNanos, LatencyHistogram.Snapshot raw,
+					  LatencyHistogram.Snapshot corrected) {
+		this.name = name;
+		this.requests = requests;
+		this.errors = errors;
+		this.elapsedNanos = elapsedNanos;
+		this.raw = raw;
+		this.corrected = corrected;
+	}
+
+	public double throughput() {
+		return (requests - errors) * 1e9 / elapsedNanos;
+	}
+
+	public String report() {
+		StringBuilder out = new StringBuilder();
+		out.append(String.format(Locale.ROOT, "%n== %s ==%n", name));
+		out.append(String.format(Locale.ROOT, "requests=%d errors=%d (%.2f%%) elapsed=%.1fs throughput=%.1f req/s%n",
+			requests, errors, requests == 0 ? 0 : errors * 100.0 / requests, elapsedNanos / 1e9, throughput()));
+		out.append(String.format(Locale.ROOT, "%-12s%10s%10s%10s%10s%10s%n", "latency(ms)", "p50", "p90", "p99",
+			"p99.9", "max"));
+		row(out, "raw", raw);
+		row(out, "corrected", corrected);
+		return out.toString();
+	}
+
+	private static void row(StringBuilder out, String label, LatencyHistogram.Snapshot snapshot) {
+		out.append(String.format(Locale.ROOT, "%-12s", label));
+		for (double q : QUANTILES) {
+			out.append(String.format(Locale.ROOT, "%10.2f", snapshot.valueAt(q) / 1e6));
+		}
+		out.append(String.format(Locale.ROOT, "%10.2f%n", snapshot.max() / 1e6));
+	}
+}
@@ -0,0 +1,108 @@
+package com.server.consumer.loadtest;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * <p>
+ * 压测的参数, 命令行用 --name=value 的形式传入, 例如:
+ * </p>
+ *
+ * <pre>
+ * java -jar consumer-loadtest.jar --mode=open --rate=2000 --duration=60s --latency=5ms --error-rate=0.01
+ * </pre>
+ */
+@Data
+public class LoadTestOptions {
+	/**
+	 * closed: 固定并发, 一个请求结束再发下一个; open: 按固定的速率发, 不管之前的请求有没有结束; both: 先 closed 再 open
+	 */
+	private String mode = "both";
+
+	/**
+	 * 闭环压测的并发数
+	 */
+	private int concurrency = 32;
+
+	/**
+	 * 开环压测每秒发出的请求数
+	 */
+	private int rate = 1000;
+
+	/**
+	 * 开环压测最多同时进行的请求数, 超过的直接记成失败, 避免把压测机自己压垮
+	 */
+	private int maxOutstanding = 10_000;
+
+	private Duration warmup = Duration.ofSeconds(10);
+
+	private Duration duration = Duration.ofSeconds(30);
+
+	/**
+	 * 闭环压测修正 coordinated omission 用的期望间隔, 不设置的话用 p50
+	 */
+	private Duration expectedInterval;
+
+	/**
+	 * provider 替身每个请求的固定延迟
+	 */
+	private Duration latency = Duration.ofMillis(5);
+
+	/**
+	 * provider 替身在固定延迟之外的随机延迟（0 到 jitter 之间均匀分布）
+	 */
+	private Duration jitter = Duration.ZERO;
+
+	/**
+	 * provider 替身返回 500 的比例, 0 到 1
+	 */
+	private double errorRate;
+
+	/**
+	 * consumer 调用 provider 用的编码格式: JSON, CBOR
+	 */
+	private String codec = "CBOR";
+
+	public static LoadTestOptions parse(String[] args) {
+		LoadTestOptions options = new LoadTestOptions();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+				throw new IllegalArgumentException("参数的格式是 --name=value: " + arg);
+			}
+			String name = arg.substring(2, arg.indexOf('='));
+			String value = arg.substring(arg.indexOf('=') + 1);
+			switch (name) {
+				case "mode" -> options.setMode(value);
+				case "concurrency" -> options.setConcurrency(Integer.parseInt(value));
+				case "rate" -> options.setRate(Integer.parseInt(value));
+				case "max-outstanding" -> options.setMaxOutstanding(Integer.parseInt(value));
+				case "warmup" -> options.setWarmup(duration(value));
+				case "duration" -> options.setDuration(duration(value));
+				case "expected-interval" -> options.setExpectedInterval(duration(value));
+				case "latency" -> options.setLatency(duration(value));
+				case "jitter" -> options.setJitter(duration(value));
+				case "error-rate" -> options.setErrorRate(Double.parseDouble(value));
+				case "codec" -> options.setCodec(value);
+				default -> throw new IllegalArgumentException("不认识的参数: " + arg);
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * 支持 500ms, 30s, 2m 这样的写法, 和 Spring Boot 配置里面的 Duration 一样
+	 */
+	private static Duration duration(String value) {
+		if (value.endsWith("ms")) {
+			return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+		}
+		if (value.endsWith("s")) {
+			return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+		}
+		if (value.endsWith("m")) {
+			return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+		}
+		return Duration.ofMillis(Long.parseLong(value));
+	}
+}
@@ -0,0 +1,197 @@
+package com.server.consumer.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.codec.CborHttpMessageConverter;
+import com.seaflower.microcommon.rest.RestBatchRequest;
+import com.seaflower.microcommon.rest.RestBatchResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * 进程内的 provider 替身, 用 JDK 自带的 HttpServer, 监听随机端口。
+ * 实现了 provider-controller 的 /provider/sayHello 和 /provider/micro-batch, 返回值和 HelloService 一样。
+ * </p>
+ *
+ * <p>
+ * 每个请求先等待 latency + [0, jitter) 的时间, 再按 errorRate 的比例返回 500, 用来模拟慢的或者不稳定的 provider。
+ * 请求体和响应体支持 JSON 和 CBOR, 和真正的 provider 一样按照 Content-Type 和 Accept 处理
+ * </p>
+ */
+@Slf4j
+public class ProviderStandIn implements AutoCloseable {
+	private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+	static {
+		// HttpServer 的响应头和响应体是分开写的, 不关掉 Nagle 的话每个 keep-alive 的请求都要多等一次 delayed ACK（约 40ms）。
+		// 这个属性在 HttpServer 第一次加载的时候读取
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final LoadTestOptions options;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final CborHttpMessageConverter cbor = new CborHttpMessageConverter(objectMapper);
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	public ProviderStandIn(LoadTestOptions options) throws IOException {
+		this.options = options;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		AtomicInteger index = new AtomicInteger();
+		// 延迟是在处理线程上 sleep 出来的, 线程数不能限制, 否则替身自己就成了瓶颈
+		this.executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "provider-stand-in-" + index.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		server.setExecutor(executor);
+		server.createContext("/provider/sayHello", this::sayHello);
+		server.createContext("/provider/micro-batch", this::microBatch);
+		server.start();
+		log.info("provider 替身已经启动 {}", baseUrl());
+	}
+
+	public String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void sayHello(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!delayAndMaybeFail(exchange)) {
+				return;
+			}
+			String name = queryParam(exchange.getRequestURI().getRawQuery(), "name");
+			byte[] body = hello(name).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "text/plain;charset=UTF-8");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+		}
+	}
+
+	private void microBatch(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			boolean cborRequest = String.valueOf(exchange.getRequestHeaders().getFirst(HttpHeaders.CONTENT_TYPE))
+				.startsWith(CBOR.toString());
+			RestBatchRequest request = cborRequest
+				? (RestBatchRequest) cbor.read(RestBatchRequest.class, null, input(exchange))
+				: objectMapper.readValue(exchange.getRequestBody(), RestBatchRequest.class);
+			if (!delayAndMaybeFail(exchange)) {
+				return;
+			}
+			List<RestBatchResult> results = new ArrayList<>(request.getCalls().size());
+			for (List<Object> args : request.getCalls()) {
+				results.add(new RestBatchResult(hello(String.valueOf(args.get(0))), null));
+			}
+
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			String accept = String.valueOf(exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT));
+			if (accept.startsWith(CBOR.toString())) {
+				cbor.write(results, List.class, CBOR, output(body));
+				exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, CBOR.toString());
+			} else {
+				objectMapper.writeValue(body, results);
+				exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+			}
+			exchange.sendResponseHeaders(200, body.size());
+			body.writeTo(exchange.getResponseBody());
+		}
+	}
+
+	private static String hello(String name) {
+		return "你好: " + name + "!";
+	}
+
+	/**
+	 * @return false 表示已经返回了注入的错误
+	 */
+	private boolean delayAndMaybeFail(HttpExchange exchange) throws IOException {
+		long delay = options.getLatency().toNanos();
+		if (!options.getJitter().isZero()) {
+			delay += ThreadLocalRandom.current().nextLong(options.getJitter().toNanos());
+		}
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay / 1_000_000, (int) (delay % 1_000_000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (options.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < options.getErrorRate()) {
+			exchange.sendResponseHeaders(500, -1);
+			return false;
+		}
+		return true;
+	}
+
+	private static String queryParam(String rawQuery, String name) {
+		if (rawQuery == null) {
+			return null;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0 && pair.substring(0, eq).equals(name)) {
+				return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+
+	private static HttpInputMessage input(HttpExchange exchange) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(CBOR);
+		return new HttpInputMessage() {
+			@Override
+			public InputStream getBody() {
+				return exchange.getRequestBody();
+			}
+
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+		};
+	}
+
+	private static HttpOutputMessage output(OutputStream body) {
+		HttpHeaders headers = new HttpHeaders();
+		return new HttpOutputMessage() {
+			@Override
+			public OutputStream getBody() {
+				return body;
+			}
+
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+		};
+	}
+}
@@ -0,0 +1,24 @@
+package com.seaflower.microbenchmark;
+
+import com.seaflower.microcommon.rest.RestclientMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+ * 压测用的契约接口。和 HelloInterface.hello 一样的 GET, 不用 RestclientBatch,
+ * 压测用的契约接口。和 HelloInterface.hello 一样的 GET, 但是没有 RestclientBatch,
+ * 否则测出来的是批量收集的时间窗口
+ */
+@RestclientMapping("/bench")
+public interface BenchmarkInterface {
+	@RestclientMapping(path = "/sayHello", method = RequestMethod.GET)
+	String hello(@RequestParam("name") String name);
+
+	@RestclientMapping(path = "/bill/{billId}", method = RequestMethod.GET)
+	String bill(@PathVariable("billId") String billId, @RequestParam("type") String type,
+				@RequestParam("page") int page);
+
+	@RestclientMapping(path = "/save", method = RequestMethod.POST)
+	Payload save(@RequestBody Payload payload);
+}
@@ -0,0 +1,30 @@
+package com.seaflower.microbenchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.RestTemplateConfig;
+import com.seaflower.microcommon.codec.RestCodec;
+import com.seaflower.microcommon.rest.RestClientContext;
+import com.seaflower.microcommon.rest.lb.ServiceInstance;
+
+import java.util.List;
+
+/**
+ * 不启动 Spring, 按照 RestTemplateConfig 的方式手工组装 RestClientContext, 传输层换成 StubClientHttpRequestFactory
+ */
+public final class BenchmarkSupport {
+	public static final String SERVICE = "provider";
+
+	private BenchmarkSupport() {
+	}
+
+	public static RestClientContext context(RestCodec codec) {
+		RestClientProperties properties = new RestClientProperties();
+		properties.setCodec(codec);
+		ObjectMapper objectMapper = new ObjectMapper();
+		List<ServiceInstance> instances = List.of(new ServiceInstance(SERVICE, "http://stub"));
+		return new RestClientContext(
+			new RestTemplateConfig()._restTemplate(new StubClientHttpRequestFactory("你好: bench!"), objectMapper),
+			name -> instances, properties, objectMapper);
+	}
+}
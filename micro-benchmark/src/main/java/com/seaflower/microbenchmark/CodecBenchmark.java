@@ -0,0 +1,112 @@
+package com.seaflower.microbenchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.codec.CborHttpMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 典型的业务对象经过 RestTemplate 用的 HttpMessageConverter 编码和解码, JSON 和 CBOR 对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CodecBenchmark {
+	@Param({ "JSON", "CBOR" })
+	public String codec;
+
+	@Param({ "1", "100" })
+	public int lines;
+
+	private AbstractGenericHttpMessageConverter<Object> converter;
+	private MediaType mediaType;
+	private Payload payload;
+	private byte[] encoded;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		if ("CBOR".equals(codec)) {
+			converter = new CborHttpMessageConverter(objectMapper);
+			mediaType = MediaType.valueOf("application/cbor");
+		} else {
+			converter = new MappingJackson2HttpMessageConverter(objectMapper);
+			mediaType = MediaType.APPLICATION_JSON;
+		}
+		payload = Payload.sample(lines);
+		encoded = encode().toByteArray();
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream encode() throws IOException {
+		BytesOutputMessage message = new BytesOutputMessage();
+		converter.write(payload, Payload.class, mediaType, message);
+		return message.body;
+	}
+
+	@Benchmark
+	public Object decode() throws IOException {
+		return converter.read(Payload.class, null, new BytesInputMessage(encoded, mediaType));
+	}
+
+	private static final class BytesOutputMessage implements HttpOutputMessage {
+		private final HttpHeaders headers = new HttpHeaders();
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+		@Override
+		public OutputStream getBody() {
+			return body;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+	}
+
+	private static final class BytesInputMessage implements HttpInputMessage {
+		private final HttpHeaders headers = new HttpHeaders();
+		private final byte[] body;
+
+		BytesInputMessage(byte[] body, MediaType mediaType) {
+			this.body = body;
+			headers.setContentType(mediaType);
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+	}
+}
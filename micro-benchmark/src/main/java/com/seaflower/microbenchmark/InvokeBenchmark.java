@@ -0,0 +1,92 @@
+package com.seaflower.microbenchmark;
+
+import com.seaflower.microcommon.codec.RestCodec;
+import com.seaflower.microcommon.rest.RestClientContext;
+import com.seaflower.microcommon.rest.RestClientInvoker;
+import com.server.provider.service.hello.HelloService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * 一次代理调用（RestClientInvoker.invoke）比直接调用 HelloService.hello 多出来的开销:
+ * 参数绑定, 负载均衡, 熔断器和舱壁, RestTemplate 的编解码, 调用统计。传输层是进程内的假实现, 没有网络。
+ * </p>
+ *
+ * <p>
+ * proxy 开头的是 createProxy 返回的对象（有生成的 BenchmarkInterface_RestClient 的话就是它）,
+ * dynamicProxyGet 是强制使用 JDK 动态代理的对照组
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar InvokeBenchmark -prof gc
+ * java -jar target/benchmarks.jar InvokeBenchmark -t 8
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InvokeBenchmark {
+	private RestClientContext context;
+	private BenchmarkInterface proxy;
+	private BenchmarkInterface dynamicProxy;
+	private HelloService helloService;
+	private Payload payload;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		context = BenchmarkSupport.context(RestCodec.JSON);
+		proxy = RestClientInvoker.createProxy(BenchmarkSupport.SERVICE, "/bench", context, BenchmarkInterface.class);
+		dynamicProxy = (BenchmarkInterface) Proxy.newProxyInstance(BenchmarkInterface.class.getClassLoader(),
+			new Class<?>[] { BenchmarkInterface.class },
+			new RestClientInvoker(BenchmarkSupport.SERVICE, "/bench", BenchmarkInterface.class, context));
+		helloService = new HelloService();
+		payload = Payload.sample(10);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.destroy();
+	}
+
+	@Benchmark
+	public String direct() {
+		return helloService.hello("bench");
+	}
+
+	@Benchmark
+	public String proxyGet() {
+		return proxy.hello("bench");
+	}
+
+	@Benchmark
+	public String dynamicProxyGet() {
+		return dynamicProxy.hello("bench");
+	}
+
+	@Benchmark
+	public String proxyGetPathAndQuery() {
+		return proxy.bill("BX-2024-000042", "差旅 费", 3);
+	}
+
+	@Benchmark
+	public Payload proxyPost() {
+		return proxy.save(payload);
+	}
+}
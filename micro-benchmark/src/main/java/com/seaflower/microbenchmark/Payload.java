@@ -0,0 +1,48 @@
+package com.seaflower.microbenchmark;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 比较典型的业务对象: 一张单据和若干明细行
+ */
+@Data
+public class Payload {
+	private String billId;
+	private String title;
+	private long createdAt;
+	private boolean approved;
+	private BigDecimal amount;
+	private List<Line> lines = new ArrayList<>();
+
+	@Data
+	public static class Line {
+		private int index;
+		private String item;
+		private int quantity;
+		private BigDecimal price;
+	}
+
+	public static Payload sample(int lines) {
+		Payload payload = new Payload();
+		payload.setBillId("BX-2024-000042");
+		payload.setTitle("差旅费报销");
+		payload.setCreatedAt(1_700_000_000_000L);
+		payload.setApproved(true);
+		BigDecimal amount = BigDecimal.ZERO;
+		for (int i = 0; i < lines; i++) {
+			Line line = new Line();
+			line.setIndex(i);
+			line.setItem("item-" + i);
+			line.setQuantity(i % 5 + 1);
+			line.setPrice(new BigDecimal("12.50").add(BigDecimal.valueOf(i)));
+			payload.getLines().add(line);
+			amount = amount.add(line.getPrice().multiply(BigDecimal.valueOf(line.getQuantity())));
+		}
+		payload.setAmount(amount);
+		return payload;
+	}
+}
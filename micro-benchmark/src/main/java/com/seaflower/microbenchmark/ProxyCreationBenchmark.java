@@ -0,0 +1,56 @@
+package com.seaflower.microbenchmark;
+
+import com.seaflower.microcommon.codec.RestCodec;
+import com.seaflower.microcommon.rest.RestClientContext;
+import com.seaflower.microcommon.rest.RestClientInvoker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建代理对象（启动的时候每个 RestClientReference 字段一次）。契约接口的 RestMethodPlan 第一次以后是缓存的,
+ * 这里测的是之后每次创建的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ProxyCreationBenchmark {
+	private static final List<String> NAMES = List.of("provider-a", "provider-b", "provider-c", "provider-d");
+
+	private RestClientContext context;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		context = BenchmarkSupport.context(RestCodec.JSON);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.destroy();
+	}
+
+	@Benchmark
+	public BenchmarkInterface createProxy() {
+		return RestClientInvoker.createProxy(BenchmarkSupport.SERVICE, "/bench", context, BenchmarkInterface.class);
+	}
+
+	@Benchmark
+	public List<BenchmarkInterface> createListProxys() {
+		return RestClientInvoker.createListProxys(NAMES, "/bench", context, BenchmarkInterface.class);
+	}
+}
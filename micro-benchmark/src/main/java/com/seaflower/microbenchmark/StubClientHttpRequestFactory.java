@@ -0,0 +1,122 @@
+package com.seaflower.microbenchmark;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * 进程内的假传输层, 不走网络, 测出来的只是代理本身的开销。
+ * </p>
+ *
+ * <p>
+ * 请求有 body 的时候原样返回（Content-Type 也一样, JSON 和 CBOR 都可以）, 没有 body 的时候返回固定的文本
+ * </p>
+ */
+public class StubClientHttpRequestFactory implements ClientHttpRequestFactory {
+	private final byte[] text;
+
+	public StubClientHttpRequestFactory(String text) {
+		this.text = text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+		return new StubRequest(uri, httpMethod);
+	}
+
+	private final class StubRequest implements ClientHttpRequest {
+		private final URI uri;
+		private final HttpMethod method;
+		private final HttpHeaders headers = new HttpHeaders();
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+		private final Map<String, Object> attributes = new HashMap<>();
+
+		StubRequest(URI uri, HttpMethod method) {
+			this.uri = uri;
+			this.method = method;
+		}
+
+		@Override
+		public ClientHttpResponse execute() {
+			if (body.size() == 0) {
+				return new StubResponse(MediaType.TEXT_PLAIN, text);
+			}
+			return new StubResponse(headers.getContentType(), body.toByteArray());
+		}
+
+		@Override
+		public OutputStream getBody() {
+			return body;
+		}
+
+		@Override
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+	}
+
+	private static final class StubResponse implements ClientHttpResponse {
+		private final HttpHeaders headers = new HttpHeaders();
+		private final byte[] body;
+
+		StubResponse(MediaType contentType, byte[] body) {
+			this.body = body;
+			headers.setContentType(contentType);
+			headers.setContentLength(body.length);
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() {
+			return HttpStatus.OK;
+		}
+
+		@Override
+		public String getStatusText() {
+			return "OK";
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microbenchmark.BenchmarkInterface;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * 请求路径的拼接: 路径变量的替换和查询参数的编码（以前的 populatePathVar 和 pupulateGetParamter,
+ * 现在都在 RestMethodPlan.bindPath 里面）。
+ * </p>
+ *
+ * <p>
+ * RestMethodPlan 是包内可见的, 所以这个类放在 com.seaflower.microcommon.rest 包下面
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RestMethodPlanBenchmark {
+	private RestMethodPlan hello;
+	private RestMethodPlan bill;
+
+	@Setup(Level.Trial)
+	public void setup() throws NoSuchMethodException {
+		hello = RestMethodPlan.plansOf(BenchmarkInterface.class)
+			.get(BenchmarkInterface.class.getMethod("hello", String.class));
+		bill = RestMethodPlan.plansOf(BenchmarkInterface.class)
+			.get(BenchmarkInterface.class.getMethod("bill", String.class, String.class, int.class));
+	}
+
+	@Benchmark
+	public String queryOnly() {
+		return hello.bindPath(new Object[] { "bench" });
+	}
+
+	@Benchmark
+	public String pathAndQuery() {
+		return bill.bindPath(new Object[] { "BX-2024-000042", "差旅 费", 3 });
+	}
+}
@@ -0,0 +1,43 @@
+package com.seaflower.microcommon;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.codec.CodecWebConfig;
+import com.seaflower.microcommon.registry.RegistryProperties;
+import com.seaflower.microcommon.registry.RegistryRegistrar;
+import com.seaflower.microcommon.rest.H2cServerConfig;
+import com.seaflower.microcommon.rest.RestBatchDispatcher;
+import com.seaflower.microcommon.rest.RestDeadlineFilter;
+import com.seaflower.microcommon.trace.TraceFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+/**
+ * <p>
+ * provider 端需要的组件, provider 用 {@code @Import(MicroProviderConfig.class)} 引入, 不用扫描整个 com.seaflower.microcommon:
+ * <ul>
+ *     <li>RestDeadlineFilter, TraceFilter: 还原 consumer 带过来的 deadline 和采样</li>
+ *     <li>CodecWebConfig, H2cServerConfig: CBOR 编码和 h2c</li>
+ *     <li>RestBatchDispatcher: 给 provider 自己的 /micro-batch 接口使用</li>
+ *     <li>RegistryRegistrar: 配置了 micro.registry.address 和 service-name 的时候把自己注册上去</li>
+ * </ul>
+ * 客户端的 RestClientContext 和它的线程池, RestclientReferenceProcessor, 进程内的注册中心和它的健康检查,
+ * /micro-registry, /micro-metrics 都不会创建。provider 自己也要调用别的微服务的话还是扫描 com.seaflower.microcommon。
+ * </p>
+ *
+ * <p>
+ * 这个类故意不加 @Configuration, 扫描 com.seaflower.microcommon 的 consumer 不会重复创建这些组件
+ * </p>
+ */
+@EnableConfigurationProperties({ RestClientProperties.class, RegistryProperties.class })
+@Import({ RestDeadlineFilter.class, TraceFilter.class, CodecWebConfig.class, H2cServerConfig.class,
+	RestBatchDispatcher.class })
+public class MicroProviderConfig {
+
+	@Bean
+	@ConditionalOnProperty(prefix = "micro.registry", name = {"address", "service-name"})
+	public RegistryRegistrar registryRegistrar(RegistryProperties properties, ObjectMapper objectMapper) {
+		return new RegistryRegistrar(properties, objectMapper);
+	}
+}
@@ -0,0 +1,279 @@
+package com.seaflower.microcommon;
+
+import com.seaflower.microcommon.codec.RestCodec;
+import com.seaflower.microcommon.rest.lb.LoadBalancer;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * RestClient 的配置, 前缀是 micro.rest-client。
+ * </p>
+ *
+ * <p>
+ * 外层的是所有微服务的默认值, services 下面按微服务名称覆盖, 例如:
+ * <code>
+ * micro.rest-client.services.provider.max-connections=100
+ * </code>
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "micro.rest-client")
+public class RestClientProperties {
+	// 建立连接的超时时间, 同时也是等待连接池空闲连接的时间
+	private Duration connectTimeout = Duration.ofSeconds(5);
+
+	// 读取响应的超时时间
+	private Duration readTimeout = Duration.ofSeconds(5);
+
+	// 每个微服务最多同时占用的连接数
+	private int maxConnections = 50;
+
+	// 连接最长的存活时间, 到期以后新的请求会换一批连接
+	private Duration connectionTtl = Duration.ofMinutes(5);
+
+	// 和 provider 之间的 http 协议
+	private Protocol protocol = Protocol.HTTP_1_1;
+
+	// H2C 的时候每个微服务最多同时进行的请求数, 代替 maxConnections（所有请求复用一个连接）
+	private int maxConcurrentStreams = 100;
+
+	// 微服务的实例地址, 没有单独配置 instances 的微服务都用这个
+	private List<String> instances = new ArrayList<>(List.of("http://localhost:8089"));
+
+	// 负载均衡的策略
+	private LoadBalancer.Strategy loadBalancer = LoadBalancer.Strategy.ROUND_ROBIN;
+
+	// 和 provider 之间的编码格式, provider 不支持的时候响应自动退回 JSON
+	private RestCodec codec = RestCodec.JSON;
+
+	// 异步调用（返回 CompletableFuture 的契约方法）的线程数
+	private int asyncThreads = 64;
+
+	// 异步调用和对冲请求使用虚拟线程, 不再受 asyncThreads 限制; 需要 Java 21, 更低的版本还是用上面的线程池
+	private boolean virtualThreads = false;
+
+	// 每个微服务最多同时进行的调用数（舱壁）, 超过的调用等待 bulkheadMaxWait 以后直接失败
+	private int maxConcurrentCalls = 100;
+
+	// 舱壁满了以后最多等待的时间, 默认不等待
+	private Duration bulkheadMaxWait = Duration.ZERO;
+
+	// 舱壁的上限按调用的往返时间自动调整, 默认关闭
+	private AdaptiveLimitSettings adaptiveLimit = new AdaptiveLimitSettings();
+
+	// 熔断的配置
+	private CircuitBreakerSettings circuitBreaker = new CircuitBreakerSettings();
+
+	// 重试的配置
+	private RetrySettings retry = new RetrySettings();
+
+	// 采样和慢调用的配置
+	private TraceSettings trace = new TraceSettings();
+
+	// 设置成 true 并且有 RestClientReferenceIndexer 生成的索引的时候只按索引注入, 不再扫描所有 Bean 的字段。
+	// 没有用注解处理器编译的模块不在索引里面, 它们的字段不会注入, 所以默认关闭, 所有模块都配置了注解处理器再打开
+	private boolean referenceIndex = false;
+
+	// 容器中有契约接口的实现的时候, RestClientReference 直接注入本地的调用, 不发 http 请求
+	private boolean preferLocal = false;
+
+	// 微服务名称 -> 这个微服务自己的配置
+	private Map<String, Service> services = new HashMap<>();
+
+	/**
+	 * http 协议, 底层都是 JDK 的 HttpClient
+	 */
+	public enum Protocol {
+		// 每个进行中的请求占用一个连接
+		HTTP_1_1,
+		// 明文的 HTTP/2, 第一个请求通过 Upgrade: h2c 升级, 之后所有的请求在一个连接上多路复用。
+		// provider 不支持的话还是 HTTP/1.1
+		H2C
+	}
+
+	/**
+	 * 单个微服务的配置, 没有配置的项使用外层的默认值
+	 */
+	@Data
+	public static class Service {
+		private Duration connectTimeout;
+
+		private Duration readTimeout;
+
+		private Integer maxConnections;
+
+		private Protocol protocol;
+
+		private List<String> instances;
+
+		private LoadBalancer.Strategy loadBalancer;
+
+		private Integer maxConcurrentCalls;
+
+		// 整体覆盖外层的自适应并发上限的配置
+		private AdaptiveLimitSettings adaptiveLimit;
+
+		private RestCodec codec;
+
+		// 整体覆盖外层的熔断配置, 这里没有配置的项使用 CircuitBreakerSettings 的默认值
+		private CircuitBreakerSettings circuitBreaker;
+
+		// 整体覆盖外层的重试配置
+		private RetrySettings retry;
+
+		private Boolean preferLocal;
+	}
+
+	/**
+	 * 重试的配置, 只重试幂等的 GET 方法, 等待的时间是指数增长的随机值（full jitter）
+	 */
+	@Data
+	public static class RetrySettings {
+		// 最多调用几次, 包括第一次, 1 是不重试
+		private int maxAttempts = 3;
+
+		// 第一次重试之前最多等待的时间
+		private Duration initialBackoff = Duration.ofMillis(50);
+
+		// 每次重试等待时间的上限
+		private Duration maxBackoff = Duration.ofSeconds(1);
+
+		// 每次重试等待时间的上限乘以这个倍数
+		private double multiplier = 2.0;
+
+		// 重试的预算: 重试的次数最多是调用次数的百分之多少, 微服务故障的时候重试不会成倍地放大请求
+		private int budgetPercent = 10;
+
+		// 预算最多攒多少次重试
+		private int budgetMaxTokens = 10;
+	}
+
+	/**
+	 * 自适应并发上限的配置, 上限的最大值是 maxConcurrentCalls, 见 AdaptiveLimit
+	 */
+	@Data
+	public static class AdaptiveLimitSettings {
+		private boolean enabled = false;
+
+		// 刚开始的上限, 之后按往返时间调整
+		private int initialLimit = 20;
+
+		// 上限最少降到多少
+		private int minLimit = 4;
+
+		// 最近的往返时间超过正常时候的这个倍数才开始降低上限
+		private double rttTolerance = 1.5;
+	}
+
+	/**
+	 * 采样的配置, 被采样的调用记录每个阶段的时间, 并且把 X-Micro-Trace 传给 provider
+	 */
+	@Data
+	public static class TraceSettings {
+		// 采样的比例, 0 就是关闭
+		private double sampleRate = 0.01;
+
+		// 每个方法保留最慢的调用数
+		private int slowCalls = 10;
+
+		// 慢调用的时间窗口, 看到的是最近 1 到 2 个窗口的调用
+		private Duration window = Duration.ofMinutes(1);
+	}
+
+	/**
+	 * 熔断的配置, 按最近 slidingWindowSize 次调用的失败率和慢调用率判断
+	 */
+	@Data
+	public static class CircuitBreakerSettings {
+		private boolean enabled = true;
+
+		// 统计最近多少次调用
+		private int slidingWindowSize = 100;
+
+		// 窗口里面至少有这么多次调用才开始判断
+		private int minimumCalls = 20;
+
+		// 失败率达到这个百分比就熔断
+		private int failureRateThreshold = 50;
+
+		// 超过这个时间的调用算慢调用
+		private Duration slowCallDuration = Duration.ofSeconds(2);
+
+		// 慢调用率达到这个百分比就熔断
+		private int slowCallRateThreshold = 80;
+
+		// 熔断以后多久进入半开状态
+		private Duration openDuration = Duration.ofSeconds(10);
+
+		// 半开状态放过去试探的调用数, 全部结束以后决定恢复还是继续熔断
+		private int halfOpenCalls = 5;
+	}
+
+	public Duration connectTimeout(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getConnectTimeout() == null ? connectTimeout : service.getConnectTimeout();
+	}
+
+	public Duration readTimeout(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getReadTimeout() == null ? readTimeout : service.getReadTimeout();
+	}
+
+	public int maxConnections(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getMaxConnections() == null ? maxConnections : service.getMaxConnections();
+	}
+
+	public Protocol protocol(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getProtocol() == null ? protocol : service.getProtocol();
+	}
+
+	public List<String> instances(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getInstances() == null ? instances : service.getInstances();
+	}
+
+	public LoadBalancer.Strategy loadBalancer(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getLoadBalancer() == null ? loadBalancer : service.getLoadBalancer();
+	}
+
+	public RestCodec codec(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getCodec() == null ? codec : service.getCodec();
+	}
+
+	public int maxConcurrentCalls(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getMaxConcurrentCalls() == null
+			? maxConcurrentCalls : service.getMaxConcurrentCalls();
+	}
+
+	public AdaptiveLimitSettings adaptiveLimit(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getAdaptiveLimit() == null ? adaptiveLimit : service.getAdaptiveLimit();
+	}
+
+	public RetrySettings retry(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getRetry() == null ? retry : service.getRetry();
+	}
+
+	public CircuitBreakerSettings circuitBreaker(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getCircuitBreaker() == null ? circuitBreaker : service.getCircuitBreaker();
+	}
+
+	public boolean preferLocal(String microServiceName) {
+		Service service = services.get(microServiceName);
+		return service == null || service.getPreferLocal() == null ? preferLocal : service.getPreferLocal();
+	}
+}
@@ -1,29 +1,57 @@
 package com.seaflower.microcommon;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.codec.CborHttpMessageConverter;
+import com.seaflower.microcommon.rest.PooledClientHttpRequestFactory;
+import com.seaflower.microcommon.rest.RestClientContext;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import com.seaflower.microcommon.rest.lb.ServiceInstanceResolver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
 import java.nio.charset.Charset;
 
 @Configuration
+@EnableConfigurationProperties(RestClientProperties.class)
 public class RestTemplateConfig {
 	@Bean
-	public RestTemplate _restTemplate(ClientHttpRequestFactory clientHttpRequestFactory) {
+	public RestTemplate _restTemplate(ClientHttpRequestFactory clientHttpRequestFactory, ObjectMapper objectMapper) {
 		RestTemplate restTemplate = new RestTemplate(clientHttpRequestFactory);
 		restTemplate.getMessageConverters().set(1,
 			new StringHttpMessageConverter(Charset.forName("UTF-8")));
+		// micro.rest-client.codec=CBOR 的微服务用 application/cbor
+		restTemplate.getMessageConverters().add(new CborHttpMessageConverter(objectMapper));
 		return restTemplate;
 	}
 
+	/**
+	 * 按微服务划分的 keep-alive 连接池, 连接数和超时时间见 RestClientProperties
+	 */
 	@Bean
-	public ClientHttpRequestFactory simpleClientFactory() {
-		SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-		factory.setConnectTimeout(5000); // 设置连接超时时间
-		factory.setReadTimeout(5000);    // 设置读取超时时间
-		return factory;
+	public ClientHttpRequestFactory pooledClientFactory(RestClientProperties properties) {
+		return new PooledClientHttpRequestFactory(properties);
+	}
+
+	/**
+	 * 不使用注册中心（ServiceRegistry）的时候, 微服务的实例只从配置中读取
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "micro.registry", name = "enabled", havingValue = "false")
+	public ServiceInstanceResolver serviceInstanceResolver(RestClientProperties properties) {
+		return new PropertiesServiceInstanceResolver(properties);
+	}
+
+	/**
+	 * 所有代理对象共用的组件
+	 */
+	@Bean
+	public RestClientContext restClientContext(RestTemplate _restTemplate, ServiceInstanceResolver resolver,
+											   RestClientProperties properties, ObjectMapper objectMapper) {
+		return new RestClientContext(_restTemplate, resolver, properties, objectMapper);
 	}
 }
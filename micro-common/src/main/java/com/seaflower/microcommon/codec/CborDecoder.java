@@ -0,0 +1,334 @@
+package com.seaflower.microcommon.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * 把 CBOR（RFC 8949）读成 Jackson 的 token 流, 写到 JsonGenerator（一般是 TokenBuffer）里面,
+ * 再由 ObjectMapper 按照目标类型反序列化。
+ * </p>
+ *
+ * <p>
+ * 定长和不定长的字符串, 字节串, 数组, 对象都支持; tag 2/3（大整数）和 tag 4（十进制小数）还原成 BigInteger 和
+ * BigDecimal, 其它的 tag 忽略。对象的 key 只能是字符串或者整数。
+ * </p>
+ */
+final class CborDecoder {
+	// 嵌套太深的输入直接拒绝, 避免栈溢出
+	private static final int MAX_DEPTH = 512;
+
+	private final InputStream in;
+	private final JsonGenerator out;
+
+	CborDecoder(InputStream in, JsonGenerator out) {
+		this.in = in;
+		this.out = out;
+	}
+
+	/**
+	 * 读一个完整的数据项, 输入是空的话什么也不写, 返回 false
+	 */
+	boolean read() throws IOException {
+		int initial = in.read();
+		if (initial < 0) {
+			return false;
+		}
+		if (item(initial, 0)) {
+			throw new IOException("CBOR 在数组或者对象之外出现了 break");
+		}
+		return true;
+	}
+
+	/**
+	 * @return 读到的是 break（0xFF）的话返回 true
+	 */
+	private boolean item(int initial, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("CBOR 嵌套超过了 " + MAX_DEPTH + " 层");
+		}
+		int major = initial >>> 5;
+		int info = initial & 0x1F;
+		switch (major) {
+			case 0:
+				unsigned(argument(info));
+				return false;
+			case 1:
+				negative(argument(info));
+				return false;
+			case 2:
+				out.writeBinary(bytes(major, info));
+				return false;
+			case 3:
+				out.writeString(new String(bytes(major, info), StandardCharsets.UTF_8));
+				return false;
+			case 4:
+				array(info, depth);
+				return false;
+			case 5:
+				map(info, depth);
+				return false;
+			case 6:
+				tag(argument(info), depth);
+				return false;
+			default:
+				return simple(info);
+		}
+	}
+
+	private void array(int info, int depth) throws IOException {
+		out.writeStartArray();
+		if (info == 31) {
+			while (!item(next(), depth + 1)) {
+				// 一直读到 break
+			}
+		} else {
+			long size = argument(info);
+			for (long i = 0; i < size; i++) {
+				valueItem(next(), depth + 1);
+			}
+		}
+		out.writeEndArray();
+	}
+
+	private void map(int info, int depth) throws IOException {
+		out.writeStartObject();
+		if (info == 31) {
+			int initial;
+			while ((initial = next()) != CborEncoder.BREAK) {
+				out.writeFieldName(key(initial));
+				valueItem(next(), depth + 1);
+			}
+		} else {
+			long size = argument(info);
+			for (long i = 0; i < size; i++) {
+				out.writeFieldName(key(next()));
+				valueItem(next(), depth + 1);
+			}
+		}
+		out.writeEndObject();
+	}
+
+	private void valueItem(int initial, int depth) throws IOException {
+		if (item(initial, depth)) {
+			throw new IOException("CBOR 在定长的数组或者对象里面出现了 break");
+		}
+	}
+
+	private String key(int initial) throws IOException {
+		int major = initial >>> 5;
+		int info = initial & 0x1F;
+		switch (major) {
+			case 0:
+				return Long.toUnsignedString(argument(info));
+			case 1:
+				return negativeValue(argument(info)).toString();
+			case 3:
+				return new String(bytes(major, info), StandardCharsets.UTF_8);
+			default:
+				throw new IOException("CBOR 对象的 key 只能是字符串或者整数, 实际的类型是 " + major);
+		}
+	}
+
+	private void tag(long tag, int depth) throws IOException {
+		if (tag == CborEncoder.TAG_POSITIVE_BIGNUM || tag == CborEncoder.TAG_NEGATIVE_BIGNUM) {
+			int initial = next();
+			BigInteger magnitude = new BigInteger(1, bytes(initial >>> 5, initial & 0x1F));
+			out.writeNumber(tag == CborEncoder.TAG_POSITIVE_BIGNUM ? magnitude
+				: magnitude.negate().subtract(BigInteger.ONE));
+		} else if (tag == CborEncoder.TAG_DECIMAL_FRACTION) {
+			if (next() != 0x82) {
+				throw new IOException("CBOR 的十进制小数必须是两个元素的数组");
+			}
+			BigInteger exponent = integer(next(), depth + 1);
+			BigInteger mantissa = integer(next(), depth + 1);
+			out.writeNumber(new BigDecimal(mantissa, -exponent.intValueExact()));
+		} else {
+			// 不认识的 tag 只保留里面的值; tag 里面套 tag 也算一层嵌套, 否则一长串 tag 会栈溢出
+			valueItem(next(), depth + 1);
+		}
+	}
+
+	/**
+	 * 整数, 或者 tag 2/3 的大整数
+	 */
+	private BigInteger integer(int initial, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("CBOR 嵌套超过了 " + MAX_DEPTH + " 层");
+		}
+		int major = initial >>> 5;
+		int info = initial & 0x1F;
+		if (major == 0) {
+			return new BigInteger(Long.toUnsignedString(argument(info)));
+		}
+		if (major == 1) {
+			return negativeValue(argument(info));
+		}
+		if (major == 6) {
+			long tag = argument(info);
+			int inner = next();
+			BigInteger magnitude = new BigInteger(1, bytes(inner >>> 5, inner & 0x1F));
+			if (tag == CborEncoder.TAG_POSITIVE_BIGNUM) {
+				return magnitude;
+			}
+			if (tag == CborEncoder.TAG_NEGATIVE_BIGNUM) {
+				return magnitude.negate().subtract(BigInteger.ONE);
+			}
+		}
+		throw new IOException("CBOR 需要一个整数, 实际的类型是 " + major);
+	}
+
+	private boolean simple(int info) throws IOException {
+		switch (info) {
+			case 20:
+				out.writeBoolean(false);
+				return false;
+			case 21:
+				out.writeBoolean(true);
+				return false;
+			case 22:
+			case 23:
+				out.writeNull();
+				return false;
+			case 25:
+				out.writeNumber(halfToFloat((int) readBytes(2)));
+				return false;
+			case 26:
+				out.writeNumber(Float.intBitsToFloat((int) readBytes(4)));
+				return false;
+			case 27:
+				out.writeNumber(Double.longBitsToDouble(readBytes(8)));
+				return false;
+			case 31:
+				return true;
+			default:
+				throw new IOException("CBOR 不支持的简单值: " + info);
+		}
+	}
+
+	private void unsigned(long value) throws IOException {
+		if (value < 0) {
+			// 超过了 long 的范围
+			out.writeNumber(new BigInteger(Long.toUnsignedString(value)));
+		} else if (value <= Integer.MAX_VALUE) {
+			out.writeNumber((int) value);
+		} else {
+			out.writeNumber(value);
+		}
+	}
+
+	private void negative(long argument) throws IOException {
+		if (argument < 0) {
+			out.writeNumber(negativeValue(argument));
+		} else if (argument < Integer.MAX_VALUE) {
+			out.writeNumber((int) (-1 - argument));
+		} else {
+			out.writeNumber(-1 - argument);
+		}
+	}
+
+	/**
+	 * 负整数的值是 -1 - argument, argument 是无符号的
+	 */
+	private static BigInteger negativeValue(long argument) {
+		return new BigInteger(Long.toUnsignedString(argument)).negate().subtract(BigInteger.ONE);
+	}
+
+	/**
+	 * 字节串或者字符串的内容, 不定长的由多个定长的片段组成
+	 */
+	private byte[] bytes(int major, int info) throws IOException {
+		if (major != 2 && major != 3) {
+			throw new IOException("CBOR 需要字节串或者字符串, 实际的类型是 " + major);
+		}
+		if (info != 31) {
+			return readFully(length(argument(info)));
+		}
+		ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+		int initial;
+		while ((initial = next()) != CborEncoder.BREAK) {
+			if (initial >>> 5 != major || (initial & 0x1F) == 31) {
+				throw new IOException("CBOR 不定长字符串的片段类型不对");
+			}
+			chunks.write(readFully(length(argument(initial & 0x1F))));
+		}
+		return chunks.toByteArray();
+	}
+
+	private static int length(long length) throws IOException {
+		if (length < 0 || length > Integer.MAX_VALUE - 8) {
+			throw new IOException("CBOR 的长度太大: " + Long.toUnsignedString(length));
+		}
+		return (int) length;
+	}
+
+	/**
+	 * 第一个字节后面的参数, 返回的是无符号的值
+	 */
+	private long argument(int info) throws IOException {
+		if (info < 24) {
+			return info;
+		}
+		switch (info) {
+			case 24:
+				return readBytes(1);
+			case 25:
+				return readBytes(2);
+			case 26:
+				return readBytes(4);
+			case 27:
+				return readBytes(8);
+			default:
+				throw new IOException("CBOR 不支持的参数: " + info);
+		}
+	}
+
+	private long readBytes(int n) throws IOException {
+		long value = 0;
+		for (int i = 0; i < n; i++) {
+			value = (value << 8) | next();
+		}
+		return value;
+	}
+
+	private byte[] readFully(int n) throws IOException {
+		byte[] bytes = in.readNBytes(n);
+		if (bytes.length != n) {
+			throw new EOFException("CBOR 数据不完整");
+		}
+		return bytes;
+	}
+
+	private int next() throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException("CBOR 数据不完整");
+		}
+		return b;
+	}
+
+	/**
+	 * IEEE 754 半精度转成单精度
+	 */
+	private static float halfToFloat(int half) {
+		int sign = (half >>> 15) & 1;
+		int exponent = (half >>> 10) & 0x1F;
+		int fraction = half & 0x3FF;
+		float value;
+		if (exponent == 0) {
+			value = (float) (fraction * Math.pow(2, -24));
+		} else if (exponent == 31) {
+			value = fraction == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+		} else {
+			value = (float) ((1 + fraction / 1024.0) * Math.pow(2, exponent - 15));
+		}
+		return sign == 0 ? value : -value;
+	}
+}
@@ -0,0 +1,199 @@
+package com.seaflower.microcommon.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * 把 Jackson 的 token 流写成 CBOR（RFC 8949）。
+ * </p>
+ *
+ * <p>
+ * token 流是一边读一边写的, 事先不知道对象和数组的大小, 所以对象和数组都用不定长的格式（0xBF/0x9F ... 0xFF）。
+ * 整数用最短的编码, BigInteger 用 tag 2/3, BigDecimal 用 tag 4, byte[] 用字节串。
+ * </p>
+ */
+final class CborEncoder {
+	private static final int MAJOR_UNSIGNED = 0;
+	private static final int MAJOR_NEGATIVE = 1;
+	private static final int MAJOR_BYTES = 2;
+	private static final int MAJOR_TEXT = 3;
+	private static final int MAJOR_ARRAY = 4;
+	private static final int MAJOR_TAG = 6;
+
+	static final int START_INDEFINITE_ARRAY = 0x9F;
+	static final int START_INDEFINITE_MAP = 0xBF;
+	static final int BREAK = 0xFF;
+	static final int FALSE = 0xF4;
+	static final int TRUE = 0xF5;
+	static final int NULL = 0xF6;
+	static final int FLOAT32 = 0xFA;
+	static final int FLOAT64 = 0xFB;
+
+	static final int TAG_POSITIVE_BIGNUM = 2;
+	static final int TAG_NEGATIVE_BIGNUM = 3;
+	static final int TAG_DECIMAL_FRACTION = 4;
+
+	private final OutputStream out;
+	// 写数字和头部用的临时空间
+	private final byte[] scratch = new byte[9];
+
+	CborEncoder(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * 写出 tokens 中的所有 token, 不关闭 out
+	 */
+	void write(JsonParser tokens) throws IOException {
+		JsonToken token;
+		while ((token = tokens.nextToken()) != null) {
+			switch (token) {
+				case START_OBJECT:
+					out.write(START_INDEFINITE_MAP);
+					break;
+				case START_ARRAY:
+					out.write(START_INDEFINITE_ARRAY);
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					out.write(BREAK);
+					break;
+				case FIELD_NAME:
+				case VALUE_STRING:
+					text(tokens.getText());
+					break;
+				case VALUE_NUMBER_INT:
+					integer(tokens);
+					break;
+				case VALUE_NUMBER_FLOAT:
+					floating(tokens);
+					break;
+				case VALUE_TRUE:
+					out.write(TRUE);
+					break;
+				case VALUE_FALSE:
+					out.write(FALSE);
+					break;
+				case VALUE_NULL:
+					out.write(NULL);
+					break;
+				case VALUE_EMBEDDED_OBJECT:
+					embedded(tokens.getEmbeddedObject());
+					break;
+				default:
+					throw new IOException("CBOR 不支持的 token: " + token);
+			}
+		}
+	}
+
+	private void integer(JsonParser tokens) throws IOException {
+		switch (tokens.getNumberType()) {
+			case INT:
+			case LONG:
+				integer(tokens.getLongValue());
+				break;
+			default:
+				bigInteger(tokens.getBigIntegerValue());
+		}
+	}
+
+	private void integer(long value) throws IOException {
+		if (value >= 0) {
+			head(MAJOR_UNSIGNED, value);
+		} else {
+			head(MAJOR_NEGATIVE, -1 - value);
+		}
+	}
+
+	private void bigInteger(BigInteger value) throws IOException {
+		if (value.bitLength() < 64) {
+			integer(value.longValue());
+			return;
+		}
+		boolean negative = value.signum() < 0;
+		byte[] magnitude = (negative ? value.negate().subtract(BigInteger.ONE) : value).toByteArray();
+		// toByteArray 可能有一个表示符号的前导 0
+		int offset = magnitude[0] == 0 ? 1 : 0;
+		head(MAJOR_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+		head(MAJOR_BYTES, magnitude.length - offset);
+		out.write(magnitude, offset, magnitude.length - offset);
+	}
+
+	private void floating(JsonParser tokens) throws IOException {
+		switch (tokens.getNumberType()) {
+			case FLOAT:
+				int bits = Float.floatToIntBits(tokens.getFloatValue());
+				out.write(FLOAT32);
+				writeBytes(bits, 4);
+				break;
+			case BIG_DECIMAL:
+				BigDecimal decimal = tokens.getDecimalValue();
+				// [指数, 尾数]: value = 尾数 * 10^指数
+				head(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+				head(MAJOR_ARRAY, 2);
+				integer(-(long) decimal.scale());
+				bigInteger(decimal.unscaledValue());
+				break;
+			default:
+				out.write(FLOAT64);
+				writeBytes(Double.doubleToLongBits(tokens.getDoubleValue()), 8);
+		}
+	}
+
+	private void embedded(Object value) throws IOException {
+		if (value == null) {
+			out.write(NULL);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			head(MAJOR_BYTES, bytes.length);
+			out.write(bytes);
+		} else {
+			throw new IOException("CBOR 不支持的对象: " + value.getClass().getName());
+		}
+	}
+
+	private void text(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		head(MAJOR_TEXT, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * 类型和参数, 参数小于 24 的直接放在第一个字节里面, 否则跟 1/2/4/8 个字节
+	 */
+	private void head(int major, long value) throws IOException {
+		int type = major << 5;
+		if (value < 24) {
+			out.write(type | (int) value);
+		} else if (value < 0x100) {
+			out.write(type | 24);
+			writeBytes(value, 1);
+		} else if (value < 0x10000) {
+			out.write(type | 25);
+			writeBytes(value, 2);
+		} else if (value < 0x100000000L) {
+			out.write(type | 26);
+			writeBytes(value, 4);
+		} else {
+			out.write(type | 27);
+			writeBytes(value, 8);
+		}
+	}
+
+	/**
+	 * 大端序写出 value 的低 n 个字节
+	 */
+	private void writeBytes(long value, int n) throws IOException {
+		for (int i = 0; i < n; i++) {
+			scratch[i] = (byte) (value >>> (8 * (n - 1 - i)));
+		}
+		out.write(scratch, 0, n);
+	}
+}
@@ -0,0 +1,93 @@
+package com.seaflower.microcommon.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * <p>
+ * application/cbor 的 HttpMessageConverter, consumer 的 RestTemplate 和 provider 的 Spring MVC 都注册了这个转换器。
+ * </p>
+ *
+ * <p>
+ * 序列化和反序列化还是由 ObjectMapper 完成, 注解和模块和 JSON 完全一样,
+ * 只是中间的 token 流经过 TokenBuffer 写成（或者读自）CBOR, 而不是 JSON 文本。
+ * </p>
+ */
+public class CborHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+	private final ObjectMapper objectMapper;
+
+	public CborHttpMessageConverter(ObjectMapper objectMapper) {
+		super(MediaType.APPLICATION_CBOR);
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return true;
+	}
+
+	@Override
+	public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+		throws IOException, HttpMessageNotReadableException {
+		JavaType javaType = objectMapper.getTypeFactory().constructType(GenericTypeResolver.resolveType(type, contextClass));
+		return read(javaType, inputMessage);
+	}
+
+	@Override
+	protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+		throws IOException, HttpMessageNotReadableException {
+		return read(objectMapper.getTypeFactory().constructType(clazz), inputMessage);
+	}
+
+	@Override
+	protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage)
+		throws IOException, HttpMessageNotWritableException {
+		ObjectWriter writer = objectMapper.writer();
+		if (type != null) {
+			JavaType javaType = objectMapper.getTypeFactory().constructType(type);
+			// 和 Jackson 的 JSON 转换器一样, 集合之类的容器类型要按声明的类型写, 否则泛型信息会丢失
+			if (javaType.isContainerType()) {
+				writer = writer.forType(javaType);
+			}
+		}
+		TokenBuffer tokens = new TokenBuffer(objectMapper, false);
+		writer.writeValue(tokens, value);
+		OutputStream body = new BufferedOutputStream(outputMessage.getBody());
+		try (JsonParser parser = tokens.asParser(objectMapper)) {
+			new CborEncoder(body).write(parser);
+		}
+		body.flush();
+	}
+
+	private Object read(JavaType javaType, HttpInputMessage inputMessage) throws IOException {
+		TokenBuffer tokens = new TokenBuffer(objectMapper, false);
+		InputStream body = new BufferedInputStream(inputMessage.getBody());
+		try {
+			if (!new CborDecoder(body, tokens).read()) {
+				throw new HttpMessageNotReadableException("CBOR 的请求体是空的", inputMessage);
+			}
+			try (JsonParser parser = tokens.asParser(objectMapper)) {
+				return objectMapper.readValue(parser, javaType);
+			}
+		} catch (IOException e) {
+			throw new HttpMessageNotReadableException("CBOR 反序列化失败: " + e.getMessage(), e, inputMessage);
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.seaflower.microcommon.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * provider 端的 controller 也能读写 application/cbor, 没有要求 CBOR 的请求还是 JSON;
+ * 返回 Stream 或者 Iterator 的 controller 可以写 application/x-ndjson
+ */
+@Configuration
+public class CodecWebConfig implements WebMvcConfigurer {
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		converters.add(new CborHttpMessageConverter(objectMapper));
+		converters.add(new NdjsonHttpMessageConverter(objectMapper));
+	}
+}
@@ -0,0 +1,111 @@
+package com.seaflower.microcommon.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * provider 端把 controller 返回的 Stream 或者 Iterator 写成 NDJSON（每行一个 JSON）。
+ * </p>
+ *
+ * <p>
+ * 一边遍历一边写, 每 FLUSH_EVERY 个元素 flush 一次, consumer 不用等到最后一个字节就可以开始处理,
+ * provider 也不需要把整个结果放在内存里面。写完以后关闭 Stream。
+ * </p>
+ */
+public class NdjsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+	private static final int FLUSH_EVERY = 64;
+
+	private final ObjectMapper objectMapper;
+
+	public NdjsonHttpMessageConverter(ObjectMapper objectMapper) {
+		super(MediaType.APPLICATION_NDJSON);
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return Stream.class.isAssignableFrom(clazz) || Iterator.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected boolean canRead(MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+		throws IOException, HttpMessageNotReadableException {
+		throw new HttpMessageNotReadableException("NDJSON 只用来写流式的响应", inputMessage);
+	}
+
+	@Override
+	protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+		throws IOException, HttpMessageNotReadableException {
+		throw new HttpMessageNotReadableException("NDJSON 只用来写流式的响应", inputMessage);
+	}
+
+	@Override
+	protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage)
+		throws IOException, HttpMessageNotWritableException {
+		Stream<?> stream = value instanceof Stream ? (Stream<?>) value : null;
+		Iterator<?> iterator = stream != null ? stream.iterator() : (Iterator<?>) value;
+		ObjectWriter writer = elementWriter(type);
+		try (JsonGenerator generator = objectMapper.getFactory()
+			.createGenerator(StreamUtils.nonClosing(outputMessage.getBody()))) {
+			generator.setRootValueSeparator(null);
+			int count = 0;
+			while (iterator.hasNext()) {
+				writer.writeValue(generator, iterator.next());
+				generator.writeRaw('\n');
+				if (++count % FLUSH_EVERY == 0) {
+					generator.flush();
+				}
+			}
+			generator.flush();
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+	/**
+	 * 元素是集合之类的容器类型的话, 按声明的泛型写
+	 */
+	private ObjectWriter elementWriter(Type type) {
+		ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		if (type == null) {
+			return writer;
+		}
+		ResolvableType resolvable = ResolvableType.forType(type);
+		ResolvableType element = Stream.class.isAssignableFrom(resolvable.toClass())
+			? resolvable.as(Stream.class).getGeneric(0) : resolvable.as(Iterator.class).getGeneric(0);
+		if (element == ResolvableType.NONE || element.resolve() == null) {
+			return writer;
+		}
+		JavaType javaType = objectMapper.getTypeFactory().constructType(element.getType());
+		return javaType.isContainerType() ? writer.forType(javaType) : writer;
+	}
+}
@@ -0,0 +1,38 @@
+package com.seaflower.microcommon.codec;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * <p>
+ * consumer 和 provider 之间的编码格式, 可以在 micro.rest-client.codec 中按微服务配置。
+ * </p>
+ *
+ * <p>
+ * 请求体用配置的格式编码; Accept 里面配置的格式优先, JSON 兜底,
+ * 还不支持 CBOR 的 provider 会返回 JSON, consumer 照样可以解析。
+ * provider 端两种格式都能处理, 按请求的 Content-Type 和 Accept 选择。
+ * </p>
+ */
+public enum RestCodec {
+	JSON(MediaType.APPLICATION_JSON, List.of(MediaType.APPLICATION_JSON_UTF8)),
+	CBOR(MediaType.APPLICATION_CBOR, List.of(MediaType.APPLICATION_CBOR, MediaType.valueOf("application/json;q=0.9")));
+
+	private final HttpHeaders headers;
+
+	RestCodec(MediaType contentType, List<MediaType> accept) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(accept);
+		headers.setContentType(contentType);
+		this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+	}
+
+	/**
+	 * 每次请求的头都是一样的, 只读共享
+	 */
+	public HttpHeaders headers() {
+		return headers;
+	}
+}
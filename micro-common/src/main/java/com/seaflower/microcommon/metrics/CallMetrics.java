@@ -0,0 +1,66 @@
+package com.seaflower.microcommon.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个微服务上一个契约方法的调用统计: 调用次数, 失败次数, 正在进行的调用数, 延迟直方图
+ */
+public final class CallMetrics {
+	private final String microServiceName;
+	private final String method;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder inFlight = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram(1, TimeUnit.MINUTES);
+
+	CallMetrics(String microServiceName, String method) {
+		this.microServiceName = microServiceName;
+		this.method = method;
+	}
+
+	/**
+	 * 调用开始
+	 * @return 开始的时间, 结束的时候传给 stop
+	 */
+	public long start() {
+		inFlight.increment();
+		return System.nanoTime();
+	}
+
+	/**
+	 * 调用结束
+	 */
+	public void stop(long start, boolean error) {
+		latency.record(System.nanoTime() - start);
+		inFlight.decrement();
+		calls.increment();
+		if (error) {
+			errors.increment();
+		}
+	}
+
+	public String getMicroServiceName() {
+		return microServiceName;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	public long getInFlight() {
+		return inFlight.sum();
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+}
@@ -0,0 +1,212 @@
+package com.seaflower.microcommon.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * 无锁的对数线性（log-linear）延迟直方图, 单位是纳秒。
+ * </p>
+ *
+ * <p>
+ * 小于 32ns 的每个值一个桶; 之后每个 2 的幂次区间平均分成 32 个桶, 相对误差不超过 1/32（约 3%）,
+ * 一共 1920 个桶就可以覆盖 long 的全部范围。记录一次只是一次 AtomicLongArray 的自增和两次 LongAdder 的累加。
+ * </p>
+ *
+ * <p>
+ * 百分位数只统计最近一段时间: 有当前和上一个两个窗口, 记录或者取快照的时候当前窗口超过 window 就轮换,
+ * 百分位数按两个窗口合并计算（也就是最近 window 到 2 * window 的数据）, 和多久取一次快照无关。
+ * 超过两个窗口没有轮换的话（一直没有调用）两个窗口都清空。count 和 sum 是累计的。
+ * </p>
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BITS = 5;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+	private final long windowNanos;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicBoolean rotating = new AtomicBoolean();
+	private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+	private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+	private volatile long rotatedAt = System.nanoTime();
+
+	public LatencyHistogram(long window, TimeUnit unit) {
+		this.windowNanos = unit.toNanos(window);
+	}
+
+	public void record(long nanos) {
+		long now = System.nanoTime();
+		if (now - rotatedAt > windowNanos) {
+			rotate(now);
+		}
+		current.incrementAndGet(index(Math.max(0, nanos)));
+		count.increment();
+		sum.add(nanos);
+	}
+
+	/**
+	 * 累计的记录次数
+	 */
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	 * 累计的总耗时
+	 */
+	public long sumNanos() {
+		return sum.sum();
+	}
+
+	/**
+	 * 最近一到两个窗口的快照
+	 */
+	public Snapshot snapshot() {
+		long now = System.nanoTime();
+		if (now - rotatedAt > windowNanos) {
+			rotate(now);
+		}
+		Snapshot snapshot = new Snapshot();
+		snapshot.add(previous);
+		snapshot.add(current);
+		return snapshot;
+	}
+
+	/**
+	 * 只有一个线程轮换, 其它线程不等待, 继续写当前的数组
+	 */
+	private void rotate(long now) {
+		if (!rotating.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			long elapsed = now - rotatedAt;
+			if (elapsed > windowNanos) {
+				// 轮换的时候还在写旧数组的线程, 数据算进上一个窗口, 不会丢
+				previous = elapsed > 2 * windowNanos ? new AtomicLongArray(BUCKETS) : current;
+				current = new AtomicLongArray(BUCKETS);
+				rotatedAt = now;
+			}
+		} finally {
+			rotating.set(false);
+		}
+	}
+
+	static int index(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		return ((exp - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+	}
+
+	/**
+	 * 桶里面最小的值
+	 */
+	static long lowerBound(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int exp = (index >> SUB_BITS) + SUB_BITS - 1;
+		long sub = index & (SUB_COUNT - 1);
+		return (1L << exp) + (sub << (exp - SUB_BITS));
+	}
+
+	/**
+	 * 桶里面最大的值
+	 */
+	static long upperBound(int index) {
+		return index + 1 >= BUCKETS ? Long.MAX_VALUE : lowerBound(index + 1) - 1;
+	}
+
+	/**
+	 * 某一时刻各个桶的计数, 可以合并多个直方图（比如同一个微服务的所有方法）
+	 */
+	public static final class Snapshot {
+		private final long[] counts = new long[BUCKETS];
+		private long total;
+
+		void add(AtomicLongArray buckets) {
+			for (int i = 0; i < BUCKETS; i++) {
+				long c = buckets.get(i);
+				counts[i] += c;
+				total += c;
+			}
+		}
+
+		public void merge(Snapshot other) {
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] += other.counts[i];
+			}
+			total += other.total;
+		}
+
+		public long total() {
+			return total;
+		}
+
+		/**
+		 * @param quantile 0 到 1 之间, 比如 0.99
+		 * @return 纳秒, 是所在桶的上界, 没有数据的时候是 0
+		 */
+		public long valueAt(double quantile) {
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * total));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return upperBound(i);
+				}
+			}
+			return max();
+		}
+
+		/**
+		 * <p>
+		 * 修正 coordinated omission 以后的副本（和 HdrHistogram 的 copyCorrectedForCoordinatedOmission 一样）。
+		 * </p>
+		 *
+		 * <p>
+		 * 闭环压测的时候一个慢请求会推迟后面的请求, 这段时间里本来应该发出的请求没有被记录。
+		 * 每个大于 expectedIntervalNanos 的值 v, 补上 v - interval, v - 2 * interval, ... 这些本来应该看到的延迟
+		 * </p>
+		 *
+		 * @param expectedIntervalNanos 没有停顿的时候两次请求之间的间隔
+		 */
+		public Snapshot correctedForCoordinatedOmission(long expectedIntervalNanos) {
+			Snapshot corrected = new Snapshot();
+			corrected.merge(this);
+			if (expectedIntervalNanos <= 0) {
+				return corrected;
+			}
+			for (int i = 0; i < BUCKETS; i++) {
+				long c = counts[i];
+				if (c == 0) {
+					continue;
+				}
+				for (long missing = upperBound(i) - expectedIntervalNanos; missing >= expectedIntervalNanos;
+					 missing -= expectedIntervalNanos) {
+					corrected.counts[index(missing)] += c;
+					corrected.total += c;
+				}
+			}
+			return corrected;
+		}
+
+		public long max() {
+			for (int i = BUCKETS - 1; i >= 0; i--) {
+				if (counts[i] > 0) {
+					return upperBound(i);
+				}
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.seaflower.microcommon.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 所有代理调用的统计, 按 (微服务, 契约方法) 区分。
+ * </p>
+ *
+ * <p>
+ * 代理对象创建的时候就拿到自己每个方法的 CallMetrics, 调用的时候不再查找;
+ * 按微服务汇总的延迟在输出的时候合并各个方法的直方图, 不在热路径上重复记录。
+ * </p>
+ */
+public class RestClientMetrics {
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final Map<String, CallMetrics> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * @param method 契约方法, 比如 HelloInterface.hello
+	 */
+	public CallMetrics of(String microServiceName, String method) {
+		return metrics.computeIfAbsent(microServiceName + " " + method, k -> new CallMetrics(microServiceName, method));
+	}
+
+	public List<CallMetrics> all() {
+		List<CallMetrics> all = new ArrayList<>(metrics.values());
+		all.sort(Comparator.comparing(CallMetrics::getMicroServiceName).thenComparing(CallMetrics::getMethod));
+		return all;
+	}
+
+	/**
+	 * 按照 Prometheus 的文本格式输出
+	 */
+	public void writePrometheus(StringBuilder out) {
+		List<CallMetrics> all = all();
+
+		type(out, "micro_rest_client_calls_total", "counter", "代理调用的次数");
+		for (CallMetrics m : all) {
+			sample(out, "micro_rest_client_calls_total", labels(m), m.getCalls());
+		}
+		type(out, "micro_rest_client_errors_total", "counter", "失败的代理调用次数");
+		for (CallMetrics m : all) {
+			sample(out, "micro_rest_client_errors_total", labels(m), m.getErrors());
+		}
+		type(out, "micro_rest_client_in_flight", "gauge", "正在进行的代理调用数");
+		for (CallMetrics m : all) {
+			sample(out, "micro_rest_client_in_flight", labels(m), m.getInFlight());
+		}
+
+		type(out, "micro_rest_client_latency_seconds", "summary", "代理调用的延迟, 百分位数是最近 1 到 2 分钟的");
+		List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>(all.size());
+		Map<String, LatencyHistogram.Snapshot> services = new LinkedHashMap<>();
+		Map<String, long[]> serviceTotals = new LinkedHashMap<>();
+		for (CallMetrics m : all) {
+			LatencyHistogram.Snapshot snapshot = m.getLatency().snapshot();
+			snapshots.add(snapshot);
+			summary(out, "micro_rest_client_latency_seconds", labels(m), snapshot, m.getLatency().count(),
+				m.getLatency().sumNanos());
+			services.computeIfAbsent(m.getMicroServiceName(), k -> new LatencyHistogram.Snapshot()).merge(snapshot);
+			long[] totals = serviceTotals.computeIfAbsent(m.getMicroServiceName(), k -> new long[2]);
+			totals[0] += m.getLatency().count();
+			totals[1] += m.getLatency().sumNanos();
+		}
+		// summary 的 TYPE 下面只能有分位数, _sum 和 _count, 最大值单独一个 gauge
+		type(out, "micro_rest_client_latency_max_seconds", "gauge", "最近 1 到 2 分钟最慢的一次代理调用");
+		for (int i = 0; i < all.size(); i++) {
+			sample(out, "micro_rest_client_latency_max_seconds", labels(all.get(i)), seconds(snapshots.get(i).max()));
+		}
+
+		type(out, "micro_rest_client_service_latency_seconds", "summary", "按微服务汇总的代理调用延迟");
+		for (Map.Entry<String, LatencyHistogram.Snapshot> e : services.entrySet()) {
+			long[] totals = serviceTotals.get(e.getKey());
+			summary(out, "micro_rest_client_service_latency_seconds", "service=\"" + escape(e.getKey()) + "\"",
+				e.getValue(), totals[0], totals[1]);
+		}
+		type(out, "micro_rest_client_service_latency_max_seconds", "gauge", "按微服务汇总, 最近 1 到 2 分钟最慢的一次代理调用");
+		for (Map.Entry<String, LatencyHistogram.Snapshot> e : services.entrySet()) {
+			sample(out, "micro_rest_client_service_latency_max_seconds", "service=\"" + escape(e.getKey()) + "\"",
+				seconds(e.getValue().max()));
+		}
+	}
+
+	private static void summary(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot,
+								long count, long sumNanos) {
+		for (double q : QUANTILES) {
+			sample(out, name, labels + ",quantile=\"" + q + "\"", seconds(snapshot.valueAt(q)));
+		}
+		sample(out, name + "_sum", labels, seconds(sumNanos));
+		sample(out, name + "_count", labels, count);
+	}
+
+	public static void type(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	public static void sample(StringBuilder out, String name, String labels, double value) {
+		out.append(name).append('{').append(labels).append("} ");
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	public static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static String labels(CallMetrics m) {
+		return "service=\"" + escape(m.getMicroServiceName()) + "\",method=\"" + escape(m.getMethod()) + "\"";
+	}
+
+	private static double seconds(long nanos) {
+		return nanos / 1e9;
+	}
+}
@@ -0,0 +1,52 @@
+package com.seaflower.microcommon.metrics;
+
+import com.seaflower.microcommon.rest.RestClientContext;
+import com.seaflower.microcommon.rest.guard.Bulkhead;
+import com.seaflower.microcommon.rest.guard.CircuitBreaker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 代理调用的统计, Prometheus 的文本格式, 另外带上每个微服务的熔断器状态和舱壁的占用
+ */
+@RestController
+public class RestClientMetricsController {
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	@Autowired
+	private RestClientContext restClientContext;
+
+	@GetMapping(value = "/micro-metrics", produces = CONTENT_TYPE)
+	public String metrics() {
+		StringBuilder out = new StringBuilder(4096);
+		restClientContext.metrics().writePrometheus(out);
+
+		RestClientMetrics.type(out, "micro_rest_client_circuit_breaker_state", "gauge",
+			"熔断器的状态, 当前状态是 1, 其余是 0");
+		for (Map.Entry<String, CircuitBreaker> e : new TreeMap<>(restClientContext.circuitBreakers()).entrySet()) {
+			CircuitBreaker.State current = e.getValue().getState();
+			for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+				RestClientMetrics.sample(out, "micro_rest_client_circuit_breaker_state",
+					"service=\"" + RestClientMetrics.escape(e.getKey()) + "\",state=\"" + state.name().toLowerCase() + "\"",
+					state == current ? 1 : 0);
+			}
+		}
+
+		RestClientMetrics.type(out, "micro_rest_client_bulkhead_active_calls", "gauge", "舱壁里面正在进行的调用数");
+		for (Map.Entry<String, Bulkhead> e : new TreeMap<>(restClientContext.bulkheads()).entrySet()) {
+			RestClientMetrics.sample(out, "micro_rest_client_bulkhead_active_calls",
+				"service=\"" + RestClientMetrics.escape(e.getKey()) + "\"", e.getValue().getActiveCalls());
+		}
+
+		RestClientMetrics.type(out, "micro_rest_client_bulkhead_limit", "gauge", "舱壁当前的上限, 自适应的上限会跟着往返时间变化");
+		for (Map.Entry<String, Bulkhead> e : new TreeMap<>(restClientContext.bulkheads()).entrySet()) {
+			RestClientMetrics.sample(out, "micro_rest_client_bulkhead_limit",
+				"service=\"" + RestClientMetrics.escape(e.getKey()) + "\"", e.getValue().getLimit());
+		}
+		return out.toString();
+	}
+}
@@ -0,0 +1,28 @@
+package com.seaflower.microcommon.registry;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * <p>
+ * 注册中心从某个版本以来的变化。
+ * </p>
+ *
+ * <p>
+ * full 是 true 的时候 endpoints 是完整的实例表（客户端的版本太旧, 变化的记录已经没有了）,
+ * 否则 endpoints 是按顺序的增量变化
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistryChanges {
+	private long version;
+
+	private boolean full;
+
+	private List<RegistryEndpoint> endpoints;
+}
@@ -0,0 +1,41 @@
+package com.seaflower.microcommon.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 注册中心, micro.registry.enabled=false 的时候实例只从 micro.rest-client 的配置中读取
+ */
+@Configuration
+@EnableConfigurationProperties(RegistryProperties.class)
+@ConditionalOnProperty(prefix = "micro.registry", name = "enabled", matchIfMissing = true)
+public class RegistryConfig {
+
+	@Bean
+	public ServiceRegistry serviceRegistry(RegistryProperties properties, RestClientProperties clientProperties) {
+		return new ServiceRegistry(properties, clientProperties);
+	}
+
+	/**
+	 * 配置了远端注册中心的时候, 增量同步远端的实例表
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "micro.registry", name = "address")
+	public RemoteRegistrySync remoteRegistrySync(ServiceRegistry serviceRegistry, RegistryProperties properties,
+												 ObjectMapper objectMapper) {
+		return new RemoteRegistrySync(serviceRegistry, properties, objectMapper);
+	}
+
+	/**
+	 * 配置了远端注册中心和自己的微服务名称的时候, 把自己注册上去
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "micro.registry", name = {"address", "service-name"})
+	public RegistryRegistrar registryRegistrar(RegistryProperties properties, ObjectMapper objectMapper) {
+		return new RegistryRegistrar(properties, objectMapper);
+	}
+}
@@ -0,0 +1,122 @@
+package com.seaflower.microcommon.registry;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * 注册中心的 http 接口, provider 启动以后调用 register 注册自己, 其它注册中心调用 changes 增量同步。
+ * </p>
+ *
+ * <p>
+ * 注册上来的地址会直接收到 consumer 的流量, 所以 register 和 deregister 默认关闭,
+ * 只有 micro.registry.accept-registrations=true 的进程（注册中心）接受, 而且请求头要带上相同的 token;
+ * 打开了 accept-registrations 但是没有配置 token 的话启动失败, 不会有谁都可以注册的注册中心。
+ * 微服务名称和地址都要检查, 地址只能是 http(s)://host[:port][/path], 不能带 query 和用户信息
+ * </p>
+ */
+@RestController
+@RequestMapping("/micro-registry")
+@ConditionalOnProperty(prefix = "micro.registry", name = "enabled", matchIfMissing = true)
+public class RegistryController {
+	/**
+	 * 注册和注销带上的共享密钥
+	 */
+	public static final String TOKEN_HEADER = "X-Micro-Registry-Token";
+
+	private static final Pattern SERVICE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,127}");
+
+	@Autowired
+	private ServiceRegistry serviceRegistry;
+
+	@Autowired
+	private RegistryProperties properties;
+
+	@PostConstruct
+	void checkToken() {
+		if (properties.isAcceptRegistrations() && !StringUtils.hasText(properties.getToken())) {
+			throw new IllegalStateException("micro.registry.accept-registrations=true 的时候必须配置 micro.registry.token");
+		}
+	}
+
+	@PostMapping("/register")
+	public void register(@RequestBody RegistryEndpoint endpoint,
+						 @RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+		checkWritable(token);
+		serviceRegistry.register(checkService(endpoint), checkUrl(endpoint));
+	}
+
+	@PostMapping("/deregister")
+	public void deregister(@RequestBody RegistryEndpoint endpoint,
+						   @RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+		checkWritable(token);
+		serviceRegistry.deregister(checkService(endpoint), checkUrl(endpoint));
+	}
+
+	/**
+	 * @param since 客户端当前的版本, 不传的话返回完整的实例表
+	 */
+	@GetMapping("/changes")
+	public RegistryChanges changes(@RequestParam(value = "since", defaultValue = "-1") long since) {
+		return serviceRegistry.changesSince(since);
+	}
+
+	private void checkWritable(String token) {
+		if (!properties.isAcceptRegistrations()) {
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN, "这个进程不接受注册, 见 micro.registry.accept-registrations");
+		}
+		String expected = properties.getToken();
+		if (!StringUtils.hasText(expected)) {
+			// checkToken 已经保证了不会走到这里, 运行的时候改了配置也不接受
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN, "没有配置 micro.registry.token, 不接受注册");
+		}
+		if (token == null || !MessageDigest.isEqual(
+			expected.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, TOKEN_HEADER + " 不正确");
+		}
+	}
+
+	private static String checkService(RegistryEndpoint endpoint) {
+		String service = endpoint.getService();
+		if (service == null || !SERVICE_NAME.matcher(service).matches()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "微服务名称不正确: " + service);
+		}
+		return service;
+	}
+
+	private static String checkUrl(RegistryEndpoint endpoint) {
+		String url = endpoint.getUrl();
+		if (url == null) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "实例地址不能为空");
+		}
+		URI uri;
+		try {
+			uri = new URI(url);
+		} catch (URISyntaxException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "实例地址不正确: " + url);
+		}
+		if (!("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) || uri.getHost() == null
+			|| uri.getRawUserInfo() != null || uri.getRawQuery() != null || uri.getRawFragment() != null
+			|| uri.getPort() == 0 || uri.getPort() > 65535) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "实例地址只能是 http(s)://host[:port][/path]: " + url);
+		}
+		return url;
+	}
+}
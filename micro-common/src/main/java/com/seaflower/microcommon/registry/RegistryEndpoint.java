@@ -0,0 +1,22 @@
+package com.seaflower.microcommon.registry;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 注册中心中的一个实例, 注册、注销的请求体, 也是增量同步中的一条变化
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistryEndpoint {
+	// 微服务名称, 和 RestClientReference 中的 microServiceNames 一致
+	private String service;
+
+	// http://host:port
+	private String url;
+
+	// 增量同步的时候 true 是上线, false 是下线
+	private boolean up = true;
+}
@@ -0,0 +1,60 @@
+package com.seaflower.microcommon.registry;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * <p>
+ * 注册中心的配置, 前缀是 micro.registry。
+ * </p>
+ *
+ * <p>
+ * 默认每个进程自己就是注册中心（/micro-registry 接口）。配置了 address 的话,
+ * 这个进程把自己注册到 address 上（需要 service-name），同时增量同步 address 上的实例表
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "micro.registry")
+public class RegistryProperties {
+	// 是否启用注册中心, 不启用的话实例只从 micro.rest-client 的配置中读取
+	private boolean enabled = true;
+
+	// 是否接受其它进程通过 /micro-registry/register 和 deregister 注册、注销实例, 只有作为注册中心的进程需要打开
+	private boolean acceptRegistrations = false;
+
+	// 注册和注销要带上的共享密钥（请求头 X-Micro-Registry-Token）, 注册中心和注册上来的进程配置成一样的。
+	// acceptRegistrations 打开的时候必须配置, 否则启动失败
+	private String token;
+
+	// 远端注册中心的地址, 比如 http://localhost:8088
+	private String address;
+
+	// 把自己注册成哪个微服务, 不配置就不注册
+	private String serviceName;
+
+	// 注册的实例地址, 不配置就是 http://localhost:${server.port}
+	private String instanceUrl;
+
+	// 重复注册的间隔, 注册中心重启以后也能恢复
+	private Duration heartbeatInterval = Duration.ofSeconds(30);
+
+	// 从远端注册中心增量同步的间隔
+	private Duration refreshInterval = Duration.ofSeconds(5);
+
+	// 健康检查的间隔
+	private Duration healthCheckInterval = Duration.ofSeconds(10);
+
+	// 同时进行的健康检查数, 一轮检查全部结束以后才开始计时下一轮
+	private int healthCheckThreads = 4;
+
+	// 健康检查建立 TCP 连接的超时时间
+	private Duration healthCheckTimeout = Duration.ofSeconds(1);
+
+	// 连续失败几次认为实例不健康
+	private int unhealthyThreshold = 2;
+
+	// 注册上来的实例不健康超过这个时间就从注册中心中删除
+	private Duration evictAfter = Duration.ofMinutes(1);
+}
@@ -0,0 +1,95 @@
+package com.seaflower.microcommon.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * provider 这一侧: web 服务启动以后把自己注册到 micro.registry.address 上, 之后按 heartbeat-interval 重复注册,
+ * 关闭的时候注销。
+ * </p>
+ *
+ * <p>
+ * 自己有一个定时的线程, 不依赖 ServiceRegistry, provider 只引入 MicroProviderConfig 的时候也能注册
+ * </p>
+ */
+@Slf4j
+public class RegistryRegistrar implements ApplicationListener<WebServerInitializedEvent> {
+	private final RegistryProperties properties;
+	private final ObjectMapper objectMapper;
+	private final HttpClient httpClient;
+	private final ScheduledExecutorService scheduler;
+	private volatile RegistryEndpoint self;
+
+	public RegistryRegistrar(RegistryProperties properties, ObjectMapper objectMapper) {
+		this.properties = properties;
+		this.objectMapper = objectMapper;
+		this.httpClient = HttpClient.newBuilder().connectTimeout(properties.getHealthCheckTimeout()).build();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "micro-registry-registrar");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@Override
+	public void onApplicationEvent(WebServerInitializedEvent event) {
+		// management 之类的其它 web 服务不注册
+		if (self != null) {
+			return;
+		}
+		String url = StringUtils.hasText(properties.getInstanceUrl()) ? properties.getInstanceUrl()
+			: "http://localhost:" + event.getWebServer().getPort();
+		self = new RegistryEndpoint(properties.getServiceName(), url, true);
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				post("/micro-registry/register");
+			} catch (Exception e) {
+				log.warn("注册失败: {}", e.toString());
+			}
+		}, 0, properties.getHeartbeatInterval().toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void deregister() {
+		scheduler.shutdownNow();
+		if (self != null) {
+			post("/micro-registry/deregister");
+		}
+	}
+
+	private void post(String path) {
+		URI uri = URI.create(properties.getAddress() + path);
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+				.timeout(properties.getHealthCheckTimeout())
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(self)));
+			if (StringUtils.hasText(properties.getToken())) {
+				builder.header(RegistryController.TOKEN_HEADER, properties.getToken());
+			}
+			HttpRequest request = builder.build();
+			HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+			if (response.statusCode() != 200) {
+				log.warn("{} {} 失败, status {}", uri, self, response.statusCode());
+			}
+		} catch (IOException e) {
+			log.warn("{} {} 失败: {}", uri, self, e.toString());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
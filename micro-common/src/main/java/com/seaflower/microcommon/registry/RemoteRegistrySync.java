@@ -0,0 +1,59 @@
+package com.seaflower.microcommon.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * <p>
+ * 配置了 micro.registry.address 的时候, 定时从远端注册中心增量同步实例表到本地的 ServiceRegistry。
+ * </p>
+ *
+ * <p>
+ * 每次只带上本地的版本号, 远端只返回这个版本以来的变化, 没有变化的时候响应几乎是空的
+ * </p>
+ */
+@Slf4j
+public class RemoteRegistrySync {
+	private final ServiceRegistry serviceRegistry;
+	private final RegistryProperties properties;
+	private final ObjectMapper objectMapper;
+	private final HttpClient httpClient;
+	// 只在后台线程中访问
+	private long version = -1;
+
+	public RemoteRegistrySync(ServiceRegistry serviceRegistry, RegistryProperties properties,
+							  ObjectMapper objectMapper) {
+		this.serviceRegistry = serviceRegistry;
+		this.properties = properties;
+		this.objectMapper = objectMapper;
+		this.httpClient = HttpClient.newBuilder().connectTimeout(properties.getHealthCheckTimeout()).build();
+		serviceRegistry.schedule(this::refresh, properties.getRefreshInterval());
+	}
+
+	void refresh() {
+		URI uri = URI.create(properties.getAddress() + "/micro-registry/changes?since=" + version);
+		HttpRequest request = HttpRequest.newBuilder(uri).timeout(properties.getRefreshInterval()).GET().build();
+		try {
+			HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+			if (response.statusCode() != 200) {
+				log.warn("从 {} 同步实例失败, status {}", uri, response.statusCode());
+				return;
+			}
+			RegistryChanges changes = objectMapper.readValue(response.body(), RegistryChanges.class);
+			if (changes.isFull() || !changes.getEndpoints().isEmpty()) {
+				serviceRegistry.applyRemote(changes);
+			}
+			version = changes.getVersion();
+		} catch (IOException e) {
+			log.warn("从 {} 同步实例失败: {}", uri, e.toString());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
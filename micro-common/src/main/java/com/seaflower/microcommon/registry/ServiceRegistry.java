@@ -0,0 +1,404 @@
+package com.seaflower.microcommon.registry;
+
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.ServiceInstance;
+import com.seaflower.microcommon.rest.lb.ServiceInstanceResolver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * 进程内的注册中心, 同时也是 RestClient 查找实例用的 ServiceInstanceResolver。
+ * </p>
+ *
+ * <p>
+ * 实例有三个来源:
+ * <ul>
+ *     <li>配置: micro.rest-client 中的 instances, 第一次用到这个微服务的时候加载</li>
+ *     <li>注册: provider 启动以后调用 /micro-registry/register 注册上来的</li>
+ *     <li>远端: 配置了 micro.registry.address 的时候, 从远端注册中心增量同步过来的</li>
+ * </ul>
+ * 后台定时对所有的实例做 TCP 健康检查, 连续失败的实例不再参与负载均衡,
+ * 注册上来的实例不健康太久就直接删除。
+ * </p>
+ *
+ * <p>
+ * 所有的修改都在锁里面进行, 修改完以后发布一个新的不可变的 EndpointTable。
+ * 调用的热路径（instances）只读 volatile 的 EndpointTable, 没有锁, 也没有竞争。
+ * </p>
+ */
+@Slf4j
+public class ServiceRegistry implements ServiceInstanceResolver, DisposableBean {
+	// 最多保留的变化记录, 客户端的版本比这个还旧的话就全量同步
+	private static final int MAX_CHANGES = 1024;
+
+	private final RegistryProperties properties;
+	private final RestClientProperties clientProperties;
+	private final ScheduledExecutorService scheduler;
+	// 健康检查单独一个线程计时, 阻塞的 TCP 连接在 probes 上进行, 不影响同步和注册的后台任务
+	private final ScheduledExecutorService healthChecker;
+	private final ExecutorService probes;
+
+	// 下面的字段只在 lock 里面访问
+	private final Object lock = new Object();
+	private final Map<String, Map<String, Record>> records = new HashMap<>();
+	private final ArrayDeque<Change> changes = new ArrayDeque<>();
+
+	private volatile EndpointTable table = new EndpointTable(0, Map.of());
+
+	public ServiceRegistry(RegistryProperties properties, RestClientProperties clientProperties) {
+		this.properties = properties;
+		this.clientProperties = clientProperties;
+		AtomicInteger index = new AtomicInteger();
+		this.scheduler = Executors.newScheduledThreadPool(2, r -> {
+			Thread t = new Thread(r, "micro-registry-" + index.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "micro-registry-health");
+			t.setDaemon(true);
+			return t;
+		});
+		AtomicInteger probeIndex = new AtomicInteger();
+		this.probes = Executors.newFixedThreadPool(Math.max(1, properties.getHealthCheckThreads()), r -> {
+			Thread t = new Thread(r, "micro-registry-probe-" + probeIndex.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		healthChecker.scheduleWithFixedDelay(() -> {
+			try {
+				healthCheck();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (Exception e) {
+				log.warn("健康检查失败: {}", e.toString());
+			}
+		}, 0, properties.getHealthCheckInterval().toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 热路径, 只读不可变的快照
+	 */
+	@Override
+	public List<ServiceInstance> instances(String microServiceName) {
+		List<ServiceInstance> instances = table.services.get(microServiceName);
+		if (instances != null) {
+			return instances;
+		}
+		// 第一次用到的微服务, 从配置中加载
+		synchronized (lock) {
+			if (!table.services.containsKey(microServiceName)) {
+				Map<String, Record> service = records.computeIfAbsent(microServiceName, k -> new LinkedHashMap<>());
+				for (String url : clientProperties.instances(microServiceName)) {
+					record(service, microServiceName, url.trim()).seeded = true;
+				}
+				publish(microServiceName);
+			}
+		}
+		return table.services.getOrDefault(microServiceName, List.of());
+	}
+
+	/**
+	 * 注册一个实例, 重复注册没有影响
+	 */
+	public void register(String service, String url) {
+		synchronized (lock) {
+			Record record = record(records.computeIfAbsent(service, k -> new LinkedHashMap<>()), service, url);
+			if (!record.registered) {
+				log.info("注册实例 {}", record.instance);
+			}
+			record.registered = true;
+			publish(service);
+		}
+	}
+
+	/**
+	 * 注销一个实例, 配置中的实例不会删除, 只是先标记成不健康, 等健康检查恢复
+	 */
+	public void deregister(String service, String url) {
+		synchronized (lock) {
+			Map<String, Record> service0 = records.get(service);
+			Record record = service0 == null ? null : service0.get(normalize(url));
+			if (record == null) {
+				return;
+			}
+			log.info("注销实例 {}", record.instance);
+			record.registered = false;
+			record.healthy = false;
+			record.failures = properties.getUnhealthyThreshold();
+			record.unhealthySince = System.nanoTime();
+			removeIfOrphan(service0, record);
+			publish(service);
+		}
+	}
+
+	/**
+	 * 从某个版本以来的变化, 给远端同步用
+	 */
+	public RegistryChanges changesSince(long version) {
+		synchronized (lock) {
+			EndpointTable current = table;
+			if (version == current.version) {
+				return new RegistryChanges(current.version, false, List.of());
+			}
+			if (version < 0 || version > current.version || changes.isEmpty()
+				|| version < changes.peekFirst().version) {
+				List<RegistryEndpoint> all = new ArrayList<>();
+				current.services.forEach((service, instances) -> instances.forEach(
+					i -> all.add(new RegistryEndpoint(service, i.getBaseUrl(), true))));
+				return new RegistryChanges(current.version, true, all);
+			}
+			List<RegistryEndpoint> delta = new ArrayList<>();
+			for (Change change : changes) {
+				if (change.version > version) {
+					delta.add(change.endpoint);
+				}
+			}
+			return new RegistryChanges(current.version, false, delta);
+		}
+	}
+
+	/**
+	 * 应用从远端注册中心同步过来的变化
+	 */
+	void applyRemote(RegistryChanges remote) {
+		synchronized (lock) {
+			Set<String> touched = new HashSet<>();
+			if (remote.isFull()) {
+				Set<String> alive = new HashSet<>();
+				for (RegistryEndpoint e : remote.getEndpoints()) {
+					alive.add(e.getService() + " " + normalize(e.getUrl()));
+				}
+				for (Map.Entry<String, Map<String, Record>> service : records.entrySet()) {
+					for (Record record : new ArrayList<>(service.getValue().values())) {
+						if (record.remote && !alive.contains(service.getKey() + " " + record.instance.getBaseUrl())) {
+							record.remote = false;
+							removeIfOrphan(service.getValue(), record);
+							touched.add(service.getKey());
+						}
+					}
+				}
+			}
+			for (RegistryEndpoint e : remote.getEndpoints()) {
+				Map<String, Record> service = records.computeIfAbsent(e.getService(), k -> new LinkedHashMap<>());
+				if (e.isUp()) {
+					record(service, e.getService(), e.getUrl()).remote = true;
+				} else {
+					Record record = service.get(normalize(e.getUrl()));
+					if (record != null) {
+						record.remote = false;
+						removeIfOrphan(service, record);
+					}
+				}
+				touched.add(e.getService());
+			}
+			for (String service : touched) {
+				publish(service);
+			}
+		}
+	}
+
+	/**
+	 * 注册相关的后台任务共用这个线程池
+	 */
+	void schedule(Runnable task, Duration interval) {
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				task.run();
+			} catch (Exception e) {
+				log.warn("注册中心的后台任务失败: {}", e.toString());
+			}
+		}, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy() {
+		scheduler.shutdownNow();
+		healthChecker.shutdownNow();
+		probes.shutdownNow();
+	}
+
+	/**
+	 * 一轮健康检查, 等所有的实例都检查完才返回, scheduleWithFixedDelay 从返回的时候开始计时下一轮,
+	 * 实例连不上的时候任务也不会越积越多
+	 */
+	void healthCheck() throws InterruptedException {
+		List<Record> all = new ArrayList<>();
+		synchronized (lock) {
+			records.values().forEach(service -> all.addAll(service.values()));
+		}
+		List<Callable<Void>> round = new ArrayList<>(all.size());
+		for (Record record : all) {
+			round.add(() -> {
+				boolean ok = probe(record.instance);
+				synchronized (lock) {
+					onHealthResult(record, ok);
+				}
+				return null;
+			});
+		}
+		probes.invokeAll(round);
+	}
+
+	/**
+	 * TCP 能连上就认为是健康的
+	 */
+	private boolean probe(ServiceInstance instance) {
+		URI uri = URI.create(instance.getBaseUrl());
+		int port = uri.getPort() > 0 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(uri.getHost(), port),
+				(int) properties.getHealthCheckTimeout().toMillis());
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void onHealthResult(Record record, boolean ok) {
+		String service = record.instance.getMicroServiceName();
+		Map<String, Record> service0 = records.get(service);
+		// 检查的过程中已经被删除了
+		if (service0 == null || service0.get(record.instance.getBaseUrl()) != record) {
+			return;
+		}
+		if (ok) {
+			record.failures = 0;
+			if (!record.healthy) {
+				log.info("实例恢复健康 {}", record.instance);
+				record.healthy = true;
+				publish(service);
+			}
+			return;
+		}
+
+		record.failures++;
+		if (record.healthy && record.failures >= properties.getUnhealthyThreshold()) {
+			log.warn("实例不健康 {}", record.instance);
+			record.healthy = false;
+			record.unhealthySince = System.nanoTime();
+			publish(service);
+		} else if (!record.healthy && !record.seeded
+			&& System.nanoTime() - record.unhealthySince > properties.getEvictAfter().toNanos()) {
+			log.warn("删除不健康的实例 {}", record.instance);
+			service0.remove(record.instance.getBaseUrl());
+			publish(service);
+		}
+	}
+
+	private Record record(Map<String, Record> service, String serviceName, String url) {
+		return service.computeIfAbsent(normalize(url), k -> new Record(new ServiceInstance(serviceName, k)));
+	}
+
+	private void removeIfOrphan(Map<String, Record> service, Record record) {
+		if (!record.seeded && !record.registered && !record.remote) {
+			service.remove(record.instance.getBaseUrl());
+		}
+	}
+
+	private static String normalize(String url) {
+		return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+	}
+
+	/**
+	 * 重新生成这个微服务的实例列表, 和旧的比较, 有变化的话发布新的快照并记录变化
+	 */
+	private void publish(String service) {
+		EndpointTable old = table;
+		List<ServiceInstance> before = old.services.getOrDefault(service, List.of());
+		List<ServiceInstance> after = new ArrayList<>();
+		Map<String, Record> service0 = records.getOrDefault(service, Map.of());
+		for (Record record : service0.values()) {
+			if (record.healthy) {
+				after.add(record.instance);
+			}
+		}
+
+		long version = old.version + 1;
+		List<Change> delta = new ArrayList<>();
+		for (ServiceInstance i : after) {
+			if (!before.contains(i)) {
+				delta.add(new Change(version, new RegistryEndpoint(service, i.getBaseUrl(), true)));
+			}
+		}
+		for (ServiceInstance i : before) {
+			if (!after.contains(i)) {
+				delta.add(new Change(version, new RegistryEndpoint(service, i.getBaseUrl(), false)));
+			}
+		}
+		if (delta.isEmpty() && old.services.containsKey(service)) {
+			return;
+		}
+
+		Map<String, List<ServiceInstance>> services = new HashMap<>(old.services);
+		services.put(service, List.copyOf(after));
+		table = new EndpointTable(delta.isEmpty() ? old.version : version, Map.copyOf(services));
+		for (Change change : delta) {
+			changes.addLast(change);
+			if (changes.size() > MAX_CHANGES) {
+				changes.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * 不可变的实例表
+	 */
+	private static final class EndpointTable {
+		final long version;
+		final Map<String, List<ServiceInstance>> services;
+
+		EndpointTable(long version, Map<String, List<ServiceInstance>> services) {
+			this.version = version;
+			this.services = services;
+		}
+	}
+
+	private static final class Change {
+		final long version;
+		final RegistryEndpoint endpoint;
+
+		Change(long version, RegistryEndpoint endpoint) {
+			this.version = version;
+			this.endpoint = endpoint;
+		}
+	}
+
+	/**
+	 * 一个实例在注册中心中的状态, 只在 lock 里面访问
+	 */
+	private static final class Record {
+		final ServiceInstance instance;
+		boolean seeded;
+		boolean registered;
+		boolean remote;
+		boolean healthy = true;
+		int failures;
+		long unhealthySince;
+
+		Record(ServiceInstance instance) {
+			this.instance = instance;
+		}
+	}
+}
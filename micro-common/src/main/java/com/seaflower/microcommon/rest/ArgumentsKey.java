@@ -0,0 +1,27 @@
+package com.seaflower.microcommon.rest;
+
+import java.util.Arrays;
+
+/**
+ * 方法参数组成的 key, 数组参数按内容比较。缓存、合并请求都用它来判断是不是"相同的调用"
+ */
+final class ArgumentsKey {
+	private final Object[] args;
+	private final int hash;
+
+	ArgumentsKey(Object[] args) {
+		this.args = args == null ? new Object[0] : args.clone();
+		this.hash = Arrays.deepHashCode(this.args);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ArgumentsKey && hash == ((ArgumentsKey) o).hash
+			&& Arrays.deepEquals(args, ((ArgumentsKey) o).args);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+}
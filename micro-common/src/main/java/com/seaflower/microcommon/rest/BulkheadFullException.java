@@ -0,0 +1,11 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * 微服务同时进行的调用数已经达到上限, 调用没有发出去就直接失败了
+ */
+public class BulkheadFullException extends RemoteCallException {
+
+	public BulkheadFullException(String microServiceName, int maxConcurrentCalls) {
+		super(microServiceName, microServiceName + " 同时进行的调用数已经达到上限 " + maxConcurrentCalls);
+	}
+}
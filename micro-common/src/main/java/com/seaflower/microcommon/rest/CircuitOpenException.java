@@ -0,0 +1,11 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * 微服务已经熔断, 调用没有发出去就直接失败了
+ */
+public class CircuitOpenException extends RemoteCallException {
+
+	public CircuitOpenException(String microServiceName) {
+		super(microServiceName, microServiceName + " 已经熔断");
+	}
+}
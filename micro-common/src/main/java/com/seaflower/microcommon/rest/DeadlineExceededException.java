@@ -0,0 +1,15 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * 调用的 deadline 已经到了, 剩下的调用（包括重试）不会再发出去
+ */
+public class DeadlineExceededException extends RemoteCallException {
+
+	public DeadlineExceededException(String microServiceName, String message) {
+		super(microServiceName, message);
+	}
+
+	public DeadlineExceededException(String microServiceName, String message, Throwable cause) {
+		super(microServiceName, message, cause);
+	}
+}
@@ -0,0 +1,39 @@
+package com.seaflower.microcommon.rest;
+
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * <p>
+ * provider 端的 h2c: server.http2.enabled=true 并且没有配置 SSL 的时候, Spring Boot 会给 Tomcat 加上 Http2Protocol,
+ * consumer 配置了 micro.rest-client.protocol=H2C 的请求就会升级成 HTTP/2。HTTP/1.1 的请求不受影响。
+ * </p>
+ *
+ * <p>
+ * Tomcat 默认每个连接最多同时执行 20 个流, 多出来的排队。consumer 对一个实例只用一个连接,
+ * 所以这里改成和 maxConcurrentStreams（默认 100）一样。
+ * </p>
+ */
+@Configuration
+@ConditionalOnClass(Http2Protocol.class)
+@ConditionalOnProperty(prefix = "server.http2", name = "enabled", havingValue = "true")
+public class H2cServerConfig {
+
+	@Bean
+	public TomcatConnectorCustomizer h2cStreamExecutionCustomizer() {
+		return connector -> {
+			for (UpgradeProtocol upgrade : connector.findUpgradeProtocols()) {
+				if (upgrade instanceof Http2Protocol) {
+					Http2Protocol http2 = (Http2Protocol) upgrade;
+					http2.setMaxConcurrentStreamExecution((int) Math.min(Integer.MAX_VALUE,
+						http2.getMaxConcurrentStreams()));
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,126 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microcommon.rest.guard.RateBudget;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * RestclientHedging 方法的对冲请求, 每个代理对象的每个方法一个。
+ * </p>
+ *
+ * <p>
+ * 第一个请求在线程池上执行, 调用方最多等待对冲的延迟; 还没有返回并且预算够的话, 再发第二个请求,
+ * 先成功的结果返回给调用方, 两个都失败的时候抛出最后一个异常。
+ * 当前线程有 RestDeadline 的时候最多等到 deadline, 超过了抛出 DeadlineExceededException。
+ * 返回以后没有结束的请求全部取消（中断执行的线程, JDK HttpClient 的请求会跟着取消）。
+ * </p>
+ */
+final class Hedger {
+	private final String microServiceName;
+	private final String methodName;
+	private final long delayNanos;
+	private final long minDelayNanos;
+	private final ExecutorService executor;
+	private final RateBudget budget;
+	private final LatencyTracker latency = new LatencyTracker(95);
+	private final LongAdder hedged = new LongAdder();
+
+	/**
+	 * @param methodName 契约方法, 用在异常信息里面
+	 */
+	Hedger(String microServiceName, String methodName, RestclientHedging hedging, ExecutorService executor) {
+		this.microServiceName = microServiceName;
+		this.methodName = methodName;
+		this.delayNanos = TimeUnit.MILLISECONDS.toNanos(hedging.delayMillis());
+		this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedging.minDelayMillis());
+		this.executor = executor;
+		this.budget = new RateBudget(hedging.maxHedgePercent(), 10);
+	}
+
+	/**
+	 * @param primary 第一个请求
+	 * @param backup 对冲的请求, 应该发到另外一个实例
+	 */
+	Object call(Supplier<Object> primary, Supplier<Object> backup) {
+		budget.deposit();
+		long start = System.nanoTime();
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		AtomicInteger running = new AtomicInteger(1);
+		Future<?> first = executor.submit(() -> attempt(primary, result, running));
+		Future<?> second = null;
+		try {
+			long delay = delayNanos();
+			// deadline 比对冲的延迟还早的话, 不用发对冲请求了
+			if (delay >= 0 && delay < RestDeadline.remainingNanos()) {
+				try {
+					return result.get(delay, TimeUnit.NANOSECONDS);
+				} catch (TimeoutException e) {
+					if (!result.isDone() && budget.tryWithdraw()) {
+						running.incrementAndGet();
+						hedged.increment();
+						second = executor.submit(() -> attempt(backup, result, running));
+					}
+				}
+			}
+			long remaining = RestDeadline.remainingNanos();
+			Object value = remaining == Long.MAX_VALUE ? result.get()
+				: result.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+			latency.record(System.nanoTime() - start);
+			return value;
+		} catch (TimeoutException e) {
+			// finally 里面取消两个请求
+			throw new DeadlineExceededException(microServiceName, methodName + " 等待对冲请求超过了 deadline", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("对冲请求的等待被中断", e);
+		} finally {
+			first.cancel(true);
+			if (second != null) {
+				second.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * 发出去的对冲请求数
+	 */
+	long hedged() {
+		return hedged.sum();
+	}
+
+	/**
+	 * 配置的延迟, 或者最近的 p95; 还没有足够的样本的时候是 -1, 不发对冲请求
+	 */
+	private long delayNanos() {
+		if (delayNanos > 0) {
+			return delayNanos;
+		}
+		long p95 = latency.estimateNanos();
+		return p95 < 0 ? -1 : Math.max(minDelayNanos, p95);
+	}
+
+	private static void attempt(Supplier<Object> call, CompletableFuture<Object> result, AtomicInteger running) {
+		try {
+			result.complete(call.get());
+		} catch (Throwable e) {
+			// 最后一个请求也失败了才算失败
+			if (running.decrementAndGet() == 0) {
+				result.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.seaflower.microcommon.rest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * 记录最近 SIZE 次调用的耗时, 估算百分位数。
+ * </p>
+ *
+ * <p>
+ * 写入只是一次原子的自增和一次数组写入; 每 RECOMPUTE 次写入由写入的线程重新排序计算一次,
+ * 读取的是上一次计算的结果, 只是一个估算值。
+ * </p>
+ */
+final class LatencyTracker {
+	private static final int SIZE = 512;
+	private static final int RECOMPUTE = 64;
+	// 样本太少的时候不估算
+	private static final int MIN_SAMPLES = 20;
+
+	private final int percentile;
+	private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+	private final AtomicInteger count = new AtomicInteger();
+	private volatile long estimate = -1;
+
+	LatencyTracker(int percentile) {
+		this.percentile = percentile;
+	}
+
+	void record(long nanos) {
+		int n = count.getAndIncrement() & Integer.MAX_VALUE;
+		samples.lazySet(n % SIZE, nanos);
+		if (n + 1 == MIN_SAMPLES || (n + 1) % RECOMPUTE == 0) {
+			int size = Math.min(n + 1, SIZE);
+			long[] sorted = new long[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = samples.get(i);
+			}
+			Arrays.sort(sorted);
+			estimate = sorted[Math.min(size - 1, size * percentile / 100)];
+		}
+	}
+
+	/**
+	 * @return 百分位数的估算值, 样本太少的时候是 -1
+	 */
+	long estimateNanos() {
+		return estimate;
+	}
+}
@@ -0,0 +1,150 @@
+package com.seaflower.microcommon.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * RestclientBatch 方法的批量收集器, 每个代理对象的每个方法一个。
+ * </p>
+ *
+ * <p>
+ * 第一个调用进来的时候开始计时, windowMillis 到了或者攒够 maxSize 个就发送, 发送在 RestClientContext 的线程池上执行。
+ * 每一批有一个编号, 定时器只发送自己那一批, 已经因为攒满提前发送的批次不会被重复发送。
+ * 批量请求带着这一批里面最早的 RestDeadline, 单个调用失败的时候是 RemoteCallException, 和不批量的调用一样。
+ * </p>
+ */
+class MicroBatcher {
+	private final String microServiceName;
+	private final RestMethodPlan plan;
+	private final int maxSize;
+	private final long windowMillis;
+	private final ScheduledExecutorService scheduler;
+	private final Executor executor;
+	// 发送一批调用的参数, 按顺序返回每一个调用的结果
+	private final Function<List<List<Object>>, List<RestBatchResult>> sender;
+	// 把结果中的 value 转换成方法的返回值类型
+	private final Function<Object, Object> decoder;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private List<Pending> pending = new ArrayList<>();
+	private long generation;
+
+	MicroBatcher(String microServiceName, RestMethodPlan plan, RestclientBatch batch, ScheduledExecutorService scheduler, Executor executor,
+				 Function<List<List<Object>>, List<RestBatchResult>> sender, Function<Object, Object> decoder) {
+		this.microServiceName = microServiceName;
+		this.plan = plan;
+		this.maxSize = Math.max(1, batch.maxSize());
+		this.windowMillis = Math.max(0, batch.windowMillis());
+		this.scheduler = scheduler;
+		this.executor = executor;
+		this.sender = sender;
+		this.decoder = decoder;
+	}
+
+	CompletableFuture<Object> submit(Object[] args) {
+		Pending call = new Pending(args == null ? List.of() : Arrays.asList(args), RestDeadline.current());
+		List<Pending> full = null;
+		long scheduleGeneration = -1;
+		lock.lock();
+		try {
+			pending.add(call);
+			if (pending.size() >= maxSize) {
+				full = pending;
+				pending = new ArrayList<>();
+				generation++;
+			} else if (pending.size() == 1) {
+				scheduleGeneration = generation;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (full != null) {
+			List<Pending> batch = full;
+			execute(batch);
+		} else if (scheduleGeneration >= 0) {
+			long g = scheduleGeneration;
+			scheduler.schedule(() -> flush(g), windowMillis, TimeUnit.MILLISECONDS);
+		}
+		return call.future;
+	}
+
+	private void flush(long expectedGeneration) {
+		List<Pending> batch;
+		lock.lock();
+		try {
+			if (generation != expectedGeneration || pending.isEmpty()) {
+				return;
+			}
+			batch = pending;
+			pending = new ArrayList<>();
+			generation++;
+		} finally {
+			lock.unlock();
+		}
+		execute(batch);
+	}
+
+	/**
+	 * 在线程池上发送这一批, 用这一批里面最早的 deadline: 最急的调用等不到结果的话, 这个批量请求也没有必要继续了
+	 */
+	private void execute(List<Pending> batch) {
+		Long deadline = null;
+		for (Pending p : batch) {
+			if (p.deadline != null && (deadline == null || p.deadline - deadline < 0)) {
+				deadline = p.deadline;
+			}
+		}
+		Long batchDeadline = deadline;
+		executor.execute(() -> RestDeadline.call(batchDeadline, () -> {
+			send(batch);
+			return null;
+		}));
+	}
+
+	private void send(List<Pending> batch) {
+		List<List<Object>> calls = new ArrayList<>(batch.size());
+		for (Pending p : batch) {
+			calls.add(p.args);
+		}
+		try {
+			List<RestBatchResult> results = sender.apply(calls);
+			if (results == null || results.size() != batch.size()) {
+				throw new RemoteCallException(microServiceName, plan.methodFullPath() + " 批量请求返回的结果数量不对");
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				RestBatchResult result = results.get(i);
+				if (result.getError() != null) {
+					batch.get(i).future.completeExceptionally(
+						new RemoteCallException(microServiceName, plan.methodFullPath() + " 调用失败: " + result.getError()));
+				} else {
+					batch.get(i).future.complete(decoder.apply(result.getValue()));
+				}
+			}
+		} catch (RuntimeException e) {
+			for (Pending p : batch) {
+				p.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private static final class Pending {
+		final List<Object> args;
+		// 调用方的 RestDeadline, 没有的话是 null
+		final Long deadline;
+		final CompletableFuture<Object> future = new CompletableFuture<>();
+
+		Pending(List<Object> args, Long deadline) {
+			this.args = args;
+			this.deadline = deadline;
+		}
+	}
+}
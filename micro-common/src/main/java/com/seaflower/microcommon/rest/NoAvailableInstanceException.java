@@ -0,0 +1,11 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * 微服务没有可用的实例（没有配置, 或者健康检查认为全部不健康）, 调用没有发出去就直接失败了
+ */
+public class NoAvailableInstanceException extends RemoteCallException {
+
+	public NoAvailableInstanceException(String microServiceName) {
+		super(microServiceName, microServiceName + " 没有可用的实例");
+	}
+}
@@ -0,0 +1,323 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.trace.CallTrace;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * 带连接池的 ClientHttpRequestFactory, 用来替换 SimpleClientHttpRequestFactory。
+ * </p>
+ *
+ * <p>
+ * 底层是 JDK 的 HttpClient, 它会复用 keep-alive 的连接。我们按微服务划分连接池, 每个微服务一个 HttpClient。
+ * 微服务名称由 RestClientInvoker 通过 forMicroService 传进来, 实例地址带有 context path 也不影响;
+ * 直接用 RestTemplate 发起的请求没有传的话, 才用 URL 的第一段作为微服务名称：
+ * <ul>
+ *     <li>同时占用的连接数不超过 maxConnections, 超过的请求最多等待 connectTimeout</li>
+ *     <li>空闲连接的存活时间是 JDK 的系统属性 jdk.httpclient.keepalive.timeout（秒）, 对整个 JVM 的 HttpClient 生效,
+ *     这里不设置, 需要的话在启动参数里面加上 -Djdk.httpclient.keepalive.timeout=30</li>
+ *     <li>HttpClient 创建超过 connectionTtl 以后, 新的请求换一个新的 HttpClient, 旧的连接用完就释放</li>
+ *     <li>连接超时和读取超时可以按微服务配置</li>
+ *     <li>读取超时是等到响应头的时间, 当前线程有 RestDeadline 的时候, 读取超时和等待连接的时间都不超过剩下的时间</li>
+ *     <li>被采样的调用（CallTrace）记录序列化, 等待连接, 等待响应和读取响应的时间</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * 协议是 H2C 的微服务, HttpClient 使用 HTTP/2: 所有进行中的请求在同一个连接上多路复用,
+ * 不会因为一个慢请求占着连接让后面的请求排队; 同时进行的请求数的上限是 maxConcurrentStreams, 不再是 maxConnections。
+ * </p>
+ */
+public class PooledClientHttpRequestFactory implements ClientHttpRequestFactory {
+	// 当前线程正在调用的微服务名称, 见 forMicroService
+	private static final ThreadLocal<String> MICRO_SERVICE = new ThreadLocal<>();
+
+	private final RestClientProperties properties;
+
+	// 微服务名称 -> 连接池
+	private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+	public PooledClientHttpRequestFactory(RestClientProperties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * 在 call 里面当前线程创建的请求都用 microServiceName 的连接池
+	 */
+	static <R> R forMicroService(String microServiceName, Supplier<R> call) {
+		String previous = MICRO_SERVICE.get();
+		MICRO_SERVICE.set(microServiceName);
+		try {
+			return call.get();
+		} finally {
+			if (previous == null) {
+				MICRO_SERVICE.remove();
+			} else {
+				MICRO_SERVICE.set(previous);
+			}
+		}
+	}
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		String microServiceName = MICRO_SERVICE.get();
+		return createRequest(uri, httpMethod, microServiceName != null ? microServiceName : microServiceName(uri));
+	}
+
+	/**
+	 * @param microServiceName 用这个微服务的连接池
+	 */
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, String microServiceName) throws IOException {
+		Pool pool = pools.computeIfAbsent(microServiceName, Pool::new);
+		return new PooledRequest(pool, pool.client(), uri, httpMethod, pool.readTimeout(RestDeadline.remainingNanos()));
+	}
+
+	/**
+	 * 没有通过 forMicroService 传进来的时候, 按 URL 的第一段: http://host:port/微服务名称/具体的请求地址
+	 */
+	static String microServiceName(URI uri) {
+		String path = uri.getRawPath();
+		if (path == null || path.length() < 2) {
+			return "";
+		}
+		int end = path.indexOf('/', 1);
+		return end < 0 ? path.substring(1) : path.substring(1, end);
+	}
+
+	/**
+	 * 一个微服务的连接池
+	 */
+	private class Pool {
+		private final String microServiceName;
+		private final HttpClient.Version version;
+		private final Semaphore permits;
+		private final long ttlNanos;
+		private final long readTimeoutNanos;
+		private volatile HttpClient client;
+		private volatile long createdAt;
+		private final ReentrantLock renewLock = new ReentrantLock();
+
+		Pool(String microServiceName) {
+			this.microServiceName = microServiceName;
+			boolean h2c = properties.protocol(microServiceName) == RestClientProperties.Protocol.H2C;
+			this.version = h2c ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+			this.permits = new Semaphore(h2c ? properties.getMaxConcurrentStreams()
+				: properties.maxConnections(microServiceName));
+			this.ttlNanos = properties.getConnectionTtl().toNanos();
+			this.readTimeoutNanos = properties.readTimeout(microServiceName).toNanos();
+			renew();
+		}
+
+		/**
+		 * @param remainingNanos deadline 剩下的时间, 比读取超时短的话用剩下的时间作为这个请求的读取超时
+		 */
+		Duration readTimeout(long remainingNanos) {
+			return Duration.ofNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), Math.min(readTimeoutNanos, remainingNanos)));
+		}
+
+		HttpClient client() {
+			if (System.nanoTime() - createdAt > ttlNanos) {
+				// 不用 synchronized: 虚拟线程在 synchronized 里面阻塞会占住底层的平台线程
+				renewLock.lock();
+				try {
+					if (System.nanoTime() - createdAt > ttlNanos) {
+						renew();
+					}
+				} finally {
+					renewLock.unlock();
+				}
+			}
+			return client;
+		}
+
+		private void renew() {
+			client = HttpClient.newBuilder()
+				.version(version)
+				.connectTimeout(properties.connectTimeout(microServiceName))
+				.build();
+			createdAt = System.nanoTime();
+		}
+
+		void acquire() throws IOException {
+			try {
+				long waitMillis = Math.min(properties.connectTimeout(microServiceName).toMillis(),
+					TimeUnit.NANOSECONDS.toMillis(Math.max(0, RestDeadline.remainingNanos())));
+				if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+					throw new IOException(microServiceName + " 的连接池已满, 等待 " + waitMillis + "ms 超时");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(microServiceName + " 等待连接时被中断", e);
+			}
+		}
+
+		void release() {
+			permits.release();
+		}
+	}
+
+	/**
+	 * 执行的时候占用一个连接, 响应关闭的时候归还。
+	 * 直接用 java.net.http 发送, 读取超时放在每个请求上, 不用为了不同的超时创建 JdkClientHttpRequestFactory
+	 */
+	private static class PooledRequest extends AbstractClientHttpRequest {
+		// HttpClient 自己设置的请求头, 不允许调用方设置
+		private static final Set<String> DISALLOWED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+		static {
+			DISALLOWED_HEADERS.addAll(Set.of("Connection", "Content-Length", "Expect", "Host", "Upgrade"));
+		}
+
+		private final Pool pool;
+		private final HttpClient client;
+		private final URI uri;
+		private final HttpMethod method;
+		private final Duration timeout;
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+		PooledRequest(Pool pool, HttpClient client, URI uri, HttpMethod method, Duration timeout) {
+			this.pool = pool;
+			this.client = client;
+			this.uri = uri;
+			this.method = method;
+			this.timeout = timeout;
+		}
+
+		@Override
+		protected OutputStream getBodyInternal(HttpHeaders headers) {
+			return body;
+		}
+
+		@Override
+		protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+			// RestTemplate 在 execute 之前已经写好了请求头和请求体
+			CallTrace trace = CallTrace.current();
+			if (trace != null) {
+				trace.end(CallTrace.Phase.SERIALIZE);
+			}
+			HttpRequest request = buildRequest(headers);
+			pool.acquire();
+			if (trace != null) {
+				trace.end(CallTrace.Phase.ACQUIRE);
+			}
+			try {
+				HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+				if (trace != null) {
+					trace.end(CallTrace.Phase.WAIT);
+				}
+				return new PooledResponse(pool, response, trace);
+			} catch (IOException | RuntimeException e) {
+				pool.release();
+				throw e;
+			} catch (InterruptedException e) {
+				pool.release();
+				Thread.currentThread().interrupt();
+				throw new IOException(uri + " 等待响应时被中断", e);
+			}
+		}
+
+		private HttpRequest buildRequest(HttpHeaders headers) {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(timeout);
+			headers.forEach((name, values) -> {
+				if (!DISALLOWED_HEADERS.contains(name)) {
+					values.forEach(value -> builder.header(name, value));
+				}
+			});
+			byte[] bytes = body.toByteArray();
+			return builder.method(method.name(), bytes.length == 0 ? HttpRequest.BodyPublishers.noBody()
+				: HttpRequest.BodyPublishers.ofByteArray(bytes)).build();
+		}
+
+		@Override
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+	}
+
+	private static class PooledResponse implements ClientHttpResponse {
+		private final Pool pool;
+		private final HttpResponse<InputStream> response;
+		private final HttpHeaders headers;
+		// 流式的响应可能在别的线程上关闭, 所以不从 ThreadLocal 取; 调用已经结束的话不再记录
+		private final CallTrace trace;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		PooledResponse(Pool pool, HttpResponse<InputStream> response, CallTrace trace) {
+			this.pool = pool;
+			this.response = response;
+			this.trace = trace;
+			HttpHeaders headers = new HttpHeaders();
+			response.headers().map().forEach(headers::addAll);
+			this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() {
+			return HttpStatusCode.valueOf(response.statusCode());
+		}
+
+		@Override
+		public String getStatusText() {
+			HttpStatus status = HttpStatus.resolve(response.statusCode());
+			return status != null ? status.getReasonPhrase() : "";
+		}
+
+		@Override
+		public InputStream getBody() {
+			return response.body();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				if (trace != null) {
+					trace.end(CallTrace.Phase.DECODE);
+				}
+				try {
+					response.body().close();
+				} catch (IOException ignored) {
+					// 连接已经断开了, 不影响归还
+				} finally {
+					pool.release();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.seaflower.microcommon.rest;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 把参数写成 query: RequestParam 的参数, 和没有注解的对象参数（展开成它的属性, 和 Spring MVC 绑定对象参数的方式对应）。
+ * </p>
+ *
+ * <ul>
+ *     <li>null 和空字符串不写</li>
+ *     <li>集合和数组写成重复的参数 a=1&amp;a=2</li>
+ *     <li>对象参数是 Map 的话每个 entry 是一个参数, 否则是 getter（record 是 component）, 按名称排序</li>
+ *     <li>每个类的属性只反射一次, 缓存在 ClassValue 里面</li>
+ * </ul>
+ */
+final class QueryBinder {
+	private static final ClassValue<Property[]> PROPERTIES = new ClassValue<>() {
+		@Override
+		protected Property[] computeValue(Class<?> type) {
+			return introspect(type);
+		}
+	};
+
+	private QueryBinder() {
+	}
+
+	/**
+	 * @param out 已经写好 path 的缓冲区
+	 * @param separator 下一个参数前面的分隔符, '?' 或者 '&amp;'
+	 * @param encodedName 已经编码过的参数名称
+	 * @return 再下一个参数前面的分隔符
+	 */
+	static char appendParam(StringBuilder out, char separator, String encodedName, Object value) {
+		if (value == null) {
+			return separator;
+		}
+		if (value instanceof Iterable) {
+			for (Object element : (Iterable<?>) value) {
+				separator = appendParam(out, separator, encodedName, element);
+			}
+			return separator;
+		}
+		if (value.getClass().isArray()) {
+			for (int i = 0, n = Array.getLength(value); i < n; i++) {
+				separator = appendParam(out, separator, encodedName, Array.get(value, i));
+			}
+			return separator;
+		}
+		String str = value.toString();
+		if (str.isEmpty()) {
+			return separator;
+		}
+		out.append(separator).append(encodedName).append('=');
+		UriEncoder.appendQuery(out, str);
+		return '&';
+	}
+
+	/**
+	 * 没有注解的对象参数, 每个属性是一个 query 参数
+	 */
+	static char appendObject(StringBuilder out, char separator, Object value) {
+		if (value instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (entry.getKey() != null) {
+					separator = appendParam(out, separator, encodeName(entry.getKey().toString()), entry.getValue());
+				}
+			}
+			return separator;
+		}
+		if (BeanUtils.isSimpleValueType(value.getClass())) {
+			throw new IllegalArgumentException(
+				"没有注解的参数 " + value.getClass().getName() + " 不能展开成 query, 需要加上 RequestParam");
+		}
+		for (Property property : PROPERTIES.get(value.getClass())) {
+			separator = appendParam(out, separator, property.encodedName,
+				ReflectionUtils.invokeMethod(property.getter, value));
+		}
+		return separator;
+	}
+
+	static String encodeName(String name) {
+		StringBuilder encoded = new StringBuilder(name.length() + 8);
+		UriEncoder.appendQuery(encoded, name);
+		return encoded.toString();
+	}
+
+	private static Property[] introspect(Class<?> type) {
+		List<Property> properties = new ArrayList<>();
+		if (type.isRecord()) {
+			for (RecordComponent component : type.getRecordComponents()) {
+				properties.add(new Property(component.getName(), component.getAccessor()));
+			}
+		} else {
+			for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(type)) {
+				Method getter = descriptor.getReadMethod();
+				if (getter != null && getter.getDeclaringClass() != Object.class) {
+					properties.add(new Property(descriptor.getName(), getter));
+				}
+			}
+		}
+		properties.sort(Comparator.comparing(p -> p.name));
+		return properties.toArray(new Property[0]);
+	}
+
+	private static final class Property {
+		final String name;
+		final String encodedName;
+		final Method getter;
+
+		Property(String name, Method getter) {
+			ReflectionUtils.makeAccessible(getter);
+			this.name = name;
+			this.encodedName = encodeName(name);
+			this.getter = getter;
+		}
+	}
+}
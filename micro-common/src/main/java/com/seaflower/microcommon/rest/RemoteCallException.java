@@ -0,0 +1,22 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * 远程调用失败: 连接失败, 超时, 响应的状态不是 2xx 等。cause 是底层的异常
+ */
+public class RemoteCallException extends RuntimeException {
+	private final String microServiceName;
+
+	public RemoteCallException(String microServiceName, String message) {
+		super(message);
+		this.microServiceName = microServiceName;
+	}
+
+	public RemoteCallException(String microServiceName, String message, Throwable cause) {
+		super(message, cause);
+		this.microServiceName = microServiceName;
+	}
+
+	public String getMicroServiceName() {
+		return microServiceName;
+	}
+}
@@ -0,0 +1,119 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * provider 端的批量请求分发: 找到契约接口在本地的实现（比如 HelloService）, 按顺序执行每一个调用。
+ * provider 的 controller 只需要把 /micro-batch 的请求体交给 dispatch。
+ * </p>
+ *
+ * <p>
+ * 只会执行契约接口上同时带有 RestclientMapping 和 RestclientBatch 的方法。
+ * 一个调用失败不影响同一批里面的其它调用, 失败的原因放在 RestBatchResult 的 error 中。
+ * </p>
+ */
+@Component
+public class RestBatchDispatcher {
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	// "契约接口#方法签名" -> 解析好的目标
+	private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+	public List<RestBatchResult> dispatch(RestBatchRequest request) {
+		Target target = targets.computeIfAbsent(request.getContract() + "#" + request.getMethod(),
+			k -> resolve(request.getContract(), request.getMethod()));
+
+		List<RestBatchResult> results = new ArrayList<>(request.getCalls().size());
+		for (List<Object> call : request.getCalls()) {
+			try {
+				results.add(new RestBatchResult(target.invoke(call, objectMapper), null));
+			} catch (InvocationTargetException e) {
+				results.add(new RestBatchResult(null, String.valueOf(e.getTargetException())));
+			} catch (Exception e) {
+				results.add(new RestBatchResult(null, e.toString()));
+			}
+		}
+		return results;
+	}
+
+	private Target resolve(String contractName, String signature) {
+		Class<?> contract;
+		try {
+			contract = ClassUtils.forName(contractName, applicationContext.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("找不到契约接口 " + contractName);
+		}
+		if (!contract.isInterface()) {
+			throw new IllegalArgumentException(contractName + " 不是接口");
+		}
+		for (Method method : contract.getMethods()) {
+			if (signature.equals(signatureOf(method))
+				&& method.isAnnotationPresent(RestclientMapping.class)
+				&& method.isAnnotationPresent(RestclientBatch.class)) {
+				Type[] types = method.getGenericParameterTypes();
+				JavaType[] params = new JavaType[types.length];
+				for (int i = 0; i < types.length; i++) {
+					params[i] = objectMapper.getTypeFactory().constructType(types[i]);
+				}
+				return new Target(applicationContext.getBean(contract), method, params);
+			}
+		}
+		throw new IllegalArgumentException(contractName + "." + signature + " 不支持批量调用");
+	}
+
+	/**
+	 * 方法的签名, 例如 hello(java.lang.String), consumer 和 provider 用同一个规则
+	 */
+	static String signatureOf(Method method) {
+		StringBuilder sb = new StringBuilder(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(types[i].getTypeName());
+		}
+		return sb.append(')').toString();
+	}
+
+	private static final class Target {
+		final Object bean;
+		final Method method;
+		final JavaType[] params;
+
+		Target(Object bean, Method method, JavaType[] params) {
+			this.bean = bean;
+			this.method = method;
+			this.params = params;
+		}
+
+		Object invoke(List<Object> call, ObjectMapper objectMapper) throws Exception {
+			if (call.size() != params.length) {
+				throw new IllegalArgumentException(method.getName() + " 需要 " + params.length + " 个参数");
+			}
+			Object[] args = new Object[params.length];
+			for (int i = 0; i < params.length; i++) {
+				args[i] = objectMapper.convertValue(call.get(i), params[i]);
+			}
+			return method.invoke(bean, args);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.seaflower.microcommon.rest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量请求的请求体
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RestBatchRequest {
+	// 契约接口的全限定名
+	private String contract;
+
+	// 方法的签名, 例如 hello(java.lang.String)
+	private String method;
+
+	// 每一次调用的参数
+	private List<List<Object>> calls;
+}
@@ -0,0 +1,17 @@
+package com.seaflower.microcommon.rest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量请求中一次调用的结果, error 不为空的时候表示这次调用失败了
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RestBatchResult {
+	private Object value;
+
+	private String error;
+}
@@ -0,0 +1,33 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microcommon.metrics.CallMetrics;
+
+/**
+ * <p>
+ * 契约接口上一个方法的调用入口, 给 RestClientStubGenerator 生成的客户端类使用。
+ * </p>
+ *
+ * <p>
+ * 生成的类在构造的时候为每个方法拿到一个 RestClientCall, 调用的时候直接用它,
+ * 不经过 Proxy 的 InvocationHandler, 也不用按 Method 查找调用计划。缓存, 合并, 批量, 熔断, 统计等和代理对象完全一样
+ * </p>
+ */
+public final class RestClientCall {
+	private final RestClientInvoker invoker;
+	private final RestMethodPlan plan;
+	private final CallMetrics metrics;
+
+	RestClientCall(RestClientInvoker invoker, RestMethodPlan plan, CallMetrics metrics) {
+		this.invoker = invoker;
+		this.plan = plan;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param args 方法的参数, 和 InvocationHandler.invoke 的 args 一样
+	 * @return 方法的返回值
+	 */
+	public Object invoke(Object[] args) {
+		return invoker.invoke(plan, plan.method(), metrics, args);
+	}
+}
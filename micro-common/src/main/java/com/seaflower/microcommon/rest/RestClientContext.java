@@ -0,0 +1,227 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.metrics.RestClientMetrics;
+import com.seaflower.microcommon.rest.guard.AdaptiveLimit;
+import com.seaflower.microcommon.rest.guard.Bulkhead;
+import com.seaflower.microcommon.rest.guard.CircuitBreaker;
+import com.seaflower.microcommon.rest.guard.RateBudget;
+import com.seaflower.microcommon.rest.lb.LoadBalancer;
+import com.seaflower.microcommon.rest.lb.ServiceInstance;
+import com.seaflower.microcommon.rest.lb.ServiceInstanceResolver;
+import com.seaflower.microcommon.trace.RestClientTracing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * 所有代理对象共用的组件: 发起调用的 RestTemplate, 异步调用的线程池, 微服务实例的查找和负载均衡,
+ * 批量调用的定时器, 每个微服务的熔断器, 舱壁和重试预算, 所有代理调用的统计和采样。
+ * </p>
+ *
+ * <p>
+ * 线程池不注册成 Spring 的 Executor Bean, 否则 Spring Boot 默认的 applicationTaskExecutor 就不会创建了
+ * </p>
+ */
+@Slf4j
+public class RestClientContext implements DisposableBean {
+	private final RestTemplate restTemplate;
+	private final ServiceInstanceResolver resolver;
+	private final RestClientProperties properties;
+	private final ObjectMapper objectMapper;
+	private final ExecutorService executor;
+	// 对冲请求和 scatter-gather 的调用在这个线程池上执行, 不限制线程数, 避免在 executor 上等待 executor 里面的任务
+	private final ExecutorService hedgeExecutor;
+	// 批量调用的时间窗口, 只负责计时, 发送在 executor 上执行
+	private final ScheduledExecutorService scheduler;
+	// 微服务名称 -> 负载均衡, 轮询之类的策略是有状态的, 每个微服务一个
+	private final Map<String, LoadBalancer> balancers = new ConcurrentHashMap<>();
+	// 微服务名称 -> 熔断器, 同一个微服务的所有代理对象共用
+	private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+	// 微服务名称 -> 舱壁, 同一个微服务的所有代理对象共用
+	private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+	// 微服务名称 -> 重试预算, 同一个微服务的所有代理对象共用
+	private final Map<String, RateBudget> retryBudgets = new ConcurrentHashMap<>();
+	private final RestClientMetrics metrics = new RestClientMetrics();
+	private final RestClientTracing tracing;
+
+	public RestClientContext(RestTemplate restTemplate, ServiceInstanceResolver resolver,
+							 RestClientProperties properties, ObjectMapper objectMapper) {
+		this.restTemplate = restTemplate;
+		this.resolver = resolver;
+		this.properties = properties;
+		this.objectMapper = objectMapper;
+		this.tracing = new RestClientTracing(properties.getTrace());
+		ExecutorService virtual = properties.isVirtualThreads() ? VirtualThreads.newExecutor("rest-client-") : null;
+		if (properties.isVirtualThreads() && virtual == null) {
+			log.warn("当前的 JVM（{}）不支持虚拟线程, 异步调用还是使用 {} 个线程的线程池",
+				Runtime.version(), properties.getAsyncThreads());
+		}
+		this.executor = virtual != null ? virtual : newExecutor(properties.getAsyncThreads());
+		this.hedgeExecutor = virtual != null ? VirtualThreads.newExecutor("rest-client-hedge-") : newHedgeExecutor();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "rest-client-timer");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	public RestTemplate restTemplate() {
+		return restTemplate;
+	}
+
+	/**
+	 * 异步调用（返回 CompletableFuture 的契约方法）在这个线程池上执行,
+	 * virtualThreads 打开并且 JVM 支持的时候每个调用一个虚拟线程, 同时进行的调用数只受舱壁限制
+	 */
+	public ExecutorService executor() {
+		return executor;
+	}
+
+	/**
+	 * RestclientHedging 方法的请求和 RestClientScatter 的调用在这个线程池上执行
+	 */
+	public ExecutorService hedgeExecutor() {
+		return hedgeExecutor;
+	}
+
+	public RestClientProperties properties() {
+		return properties;
+	}
+
+	public ObjectMapper objectMapper() {
+		return objectMapper;
+	}
+
+	/**
+	 * 只用来计时的单线程定时器, 任务里面不能做耗时的操作
+	 */
+	public ScheduledExecutorService scheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * 按照微服务配置的负载均衡策略选一个实例
+	 * @param microServiceName 微服务名称
+	 * @return 这次请求使用的实例
+	 * @throws NoAvailableInstanceException 没有可用的实例
+	 */
+	public ServiceInstance choose(String microServiceName) {
+		List<ServiceInstance> instances = resolver.instances(microServiceName);
+		if (instances.isEmpty()) {
+			throw new NoAvailableInstanceException(microServiceName);
+		}
+		return balancers.computeIfAbsent(microServiceName, name -> properties.loadBalancer(name).create())
+			.choose(instances);
+	}
+
+	/**
+	 * 选一个 exclude 以外的实例, 只有一个实例的时候还是用这个实例
+	 */
+	public ServiceInstance choose(String microServiceName, ServiceInstance exclude) {
+		List<ServiceInstance> instances = resolver.instances(microServiceName);
+		if (instances.size() < 2 || !instances.contains(exclude)) {
+			return choose(microServiceName);
+		}
+		List<ServiceInstance> others = new ArrayList<>(instances);
+		others.remove(exclude);
+		return balancers.computeIfAbsent(microServiceName, name -> properties.loadBalancer(name).create())
+			.choose(others);
+	}
+
+	public CircuitBreaker circuitBreaker(String microServiceName) {
+		return circuitBreakers.computeIfAbsent(microServiceName,
+			name -> new CircuitBreaker(properties.circuitBreaker(name)));
+	}
+
+	public Bulkhead bulkhead(String microServiceName) {
+		return bulkheads.computeIfAbsent(microServiceName,
+			name -> {
+				int maxConcurrentCalls = properties.maxConcurrentCalls(name);
+				RestClientProperties.AdaptiveLimitSettings adaptive = properties.adaptiveLimit(name);
+				return new Bulkhead(maxConcurrentCalls, properties.getBulkheadMaxWait(),
+					adaptive.isEnabled() ? new AdaptiveLimit(adaptive, maxConcurrentCalls) : null);
+			});
+	}
+
+	public RateBudget retryBudget(String microServiceName) {
+		return retryBudgets.computeIfAbsent(microServiceName, name -> {
+			RestClientProperties.RetrySettings retry = properties.retry(name);
+			return new RateBudget(retry.getBudgetPercent(), retry.getBudgetMaxTokens());
+		});
+	}
+
+	/**
+	 * 已经创建的熔断器, key 是微服务名称, 只读
+	 */
+	public Map<String, CircuitBreaker> circuitBreakers() {
+		return Collections.unmodifiableMap(circuitBreakers);
+	}
+
+	/**
+	 * 已经创建的舱壁, key 是微服务名称, 只读
+	 */
+	public Map<String, Bulkhead> bulkheads() {
+		return Collections.unmodifiableMap(bulkheads);
+	}
+
+	/**
+	 * 所有代理调用的统计
+	 */
+	public RestClientMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * 调用的采样和慢调用
+	 */
+	public RestClientTracing tracing() {
+		return tracing;
+	}
+
+	@Override
+	public void destroy() {
+		scheduler.shutdownNow();
+		hedgeExecutor.shutdownNow();
+		executor.shutdown();
+	}
+
+	private static ExecutorService newHedgeExecutor() {
+		AtomicInteger index = new AtomicInteger();
+		return Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "rest-client-hedge-" + index.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	private static ExecutorService newExecutor(int threads) {
+		AtomicInteger index = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "rest-client-" + index.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), factory);
+		// 空闲的时候线程可以全部回收
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
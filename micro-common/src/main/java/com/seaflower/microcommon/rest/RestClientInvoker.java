@@ -1,39 +1,115 @@
 package com.seaflower.microcommon.rest;
 
-import lombok.extern.slf4j.Slf4j;
-import org.apache.catalina.connector.Request;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.metrics.CallMetrics;
+import com.seaflower.microcommon.rest.guard.Bulkhead;
+import com.seaflower.microcommon.rest.guard.CircuitBreaker;
+import com.seaflower.microcommon.rest.guard.RateBudget;
+import com.seaflower.microcommon.rest.lb.ServiceInstance;
+import com.seaflower.microcommon.trace.CallTrace;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.yaml.snakeyaml.util.Tuple;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.lang.reflect.Proxy;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
 
 /**
  * 代理对象的构造类
  */
 public class RestClientInvoker implements InvocationHandler {
 	private RestTemplate _restTemplate;
+	private RestClientContext _context;
 	private String _microServiceName;
 	private Class _contract;
 	private String _contextPath;
+	// 契约接口中每个方法的调用计划, 创建代理的时候就解析好
+	private Map<Method, RestMethodPlan> _plans;
+	// RestclientCacheable 方法的结果缓存, 每个代理对象自己一份
+	private Map<Method, RestResponseCache> _caches;
+	// RestclientCoalescing 方法的请求合并, 每个代理对象自己一份
+	private Map<Method, SingleFlight> _flights;
+	// RestclientBatch 方法的批量收集器, 每个代理对象自己一份
+	private Map<Method, MicroBatcher> _batchers;
+	// RestclientHedging 方法的对冲请求, 每个代理对象自己一份
+	private Map<Method, Hedger> _hedgers;
+	// 按照这个微服务的编码格式, 每次请求的头都是一样的, 只读共享
+	private HttpHeaders _headers;
+	// 每个方法的调用统计, 同一个微服务同一个契约方法的所有代理对象共用
+	private Map<Method, CallMetrics> _metrics;
+
+	// 流式方法的请求头, NDJSON 优先, 也可以是普通的 JSON 数组
+	private static final HttpHeaders STREAM_HEADERS;
+
+	static {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(MediaType.APPLICATION_NDJSON, MediaType.valueOf("application/json;q=0.9")));
+		STREAM_HEADERS = HttpHeaders.readOnlyHttpHeaders(headers);
+	}
+
+	// 契约接口 -> 生成的客户端类的 Factory, 没有生成的是 empty
+	private static final Map<Class<?>, Optional<RestClientStubFactory>> STUBS = new ConcurrentHashMap<>();
+
+	// 批量调用的响应
+	private static final ParameterizedTypeReference<List<RestBatchResult>> BATCH_RESULTS =
+		new ParameterizedTypeReference<List<RestBatchResult>>() {
+		};
 
-	public RestClientInvoker(String microName, String contextPath, Class c, RestTemplate restTemplate) {
+
+	public RestClientInvoker(String microName, String contextPath, Class c, RestClientContext context) {
 		_microServiceName = microName;
 		_contextPath = contextPath;
 		_contract = c;
-		_restTemplate = restTemplate;
+		_context = context;
+		_restTemplate = context.restTemplate();
+		_headers = context.properties().codec(microName).headers();
+		_plans = RestMethodPlan.plansOf(c);
+		Map<Method, RestResponseCache> caches = new HashMap<>();
+		Map<Method, SingleFlight> flights = new HashMap<>();
+		Map<Method, MicroBatcher> batchers = new HashMap<>();
+		Map<Method, Hedger> hedgers = new HashMap<>();
+		Map<Method, CallMetrics> metrics = new HashMap<>();
+		for (RestMethodPlan plan : _plans.values()) {
+			metrics.put(plan.method(),
+				context.metrics().of(microName, c.getSimpleName() + "." + plan.method().getName()));
+			if (plan.cacheable() != null) {
+				caches.put(plan.method(), new RestResponseCache(plan.cacheable(), context.executor()));
+			}
+			if (plan.coalescing()) {
+				flights.put(plan.method(), new SingleFlight(microName, plan.methodFullPath()));
+			}
+			if (plan.batch() != null) {
+				batchers.put(plan.method(), newBatcher(plan));
+			}
+			if (plan.hedging() != null) {
+				hedgers.put(plan.method(), new Hedger(microName, plan.methodFullPath(), plan.hedging(),
+					context.hedgeExecutor()));
+			}
+		}
+		_caches = Map.copyOf(caches);
+		_flights = Map.copyOf(flights);
+		_batchers = Map.copyOf(batchers);
+		_hedgers = Map.copyOf(hedgers);
+		_metrics = Map.copyOf(metrics);
 	}
 
 	/**
@@ -63,32 +139,58 @@ public class RestClientInvoker implements InvocationHandler {
 	 *
 	 * @param microName 微服务名称
 	 * @param contextPath 接口路径
-	 * @param restTemplate RestTemplate
+	 * @param context 所有代理共用的组件
 	 * @param consumerIntf 代理的类
 	 * @return 被代理的对象
 	 * @param <T>
 	 */
-	public static <T> T createProxy(String microName, String contextPath, RestTemplate restTemplate,
+	public static <T> T createProxy(String microName, String contextPath, RestClientContext context,
 									Class<?> consumerIntf) {
-		RestClientInvoker invoker = new RestClientInvoker(microName, contextPath, consumerIntf, restTemplate);
+		RestClientInvoker invoker = new RestClientInvoker(microName, contextPath, consumerIntf, context);
+		// 编译期生成了客户端类（契约接口名_RestClient）的话优先使用, 没有的话才用动态代理
+		Optional<RestClientStubFactory> stub = STUBS.computeIfAbsent(consumerIntf, RestClientInvoker::stubOf);
+		if (stub.isPresent()) {
+			return (T) stub.get().create(invoker);
+		}
 		return (T) Proxy.newProxyInstance(RestClientInvoker.class.getClassLoader(), new Class<?>[] { consumerIntf },
 			invoker);
 	}
 
+	/**
+	 * RestClientStubGenerator 通过 META-INF/services 注册的 Factory, 每个契约接口只查找一次
+	 */
+	private static Optional<RestClientStubFactory> stubOf(Class<?> contract) {
+		Iterator<RestClientStubFactory> factories =
+			ServiceLoader.load(RestClientStubFactory.class, contract.getClassLoader()).iterator();
+		while (true) {
+			try {
+				if (!factories.hasNext()) {
+					return Optional.empty();
+				}
+				RestClientStubFactory factory = factories.next();
+				if (factory.contract() == contract) {
+					return Optional.of(factory);
+				}
+			} catch (ServiceConfigurationError | LinkageError e) {
+				// 增量编译以后留下的旧条目, 跳过
+			}
+		}
+	}
+
 	/**
 	 *
 	 * @param microNames
 	 * @param contextPath port/pty/
-	 * @param restTemplate
+	 * @param context
 	 * @param consumerIntf 对应的类
 	 * @return
 	 * @param <T> T 的推断，T createProxy 的返回值是一个 T, 根据 createProxy 的返回值推断 T
 	 */
-	public static <T> List<T> createListProxys(List<String> microNames, String contextPath, RestTemplate restTemplate,
+	public static <T> List<T> createListProxys(List<String> microNames, String contextPath, RestClientContext context,
 											   Class<?> consumerIntf) {
 		List<T> proxies = new ArrayList<T>(microNames.size());
 		for (String micName : microNames) {
-			proxies.add(createProxy(micName, contextPath, restTemplate, consumerIntf));
+			proxies.add(createProxy(micName, contextPath, context, consumerIntf));
 		}
 		return proxies;
 	}
@@ -97,27 +199,65 @@ public class RestClientInvoker implements InvocationHandler {
 	 * Map 类型的，这种情况，Map 的这个 key 就是微服务的名称
 	 * @param microNames
 	 * @param contextPath
-	 * @param restTemplate
+	 * @param context
 	 * @param consumerIntf
 	 * @return
 	 * @param <T>
 	 */
 	public static <T> Map<String, T> createMapProxys(List<String> microNames, String contextPath,
-													 RestTemplate restTemplate, Class<?> consumerIntf) {
+													 RestClientContext context, Class<?> consumerIntf) {
 		Map<String, T> proxies = new HashMap<String, T>(microNames.size());
 		for (String micName : microNames) {
-			proxies.put(micName, createProxy(micName, contextPath, restTemplate, consumerIntf));
+			proxies.put(micName, createProxy(micName, contextPath, context, consumerIntf));
 		}
 		return proxies;
 	}
 
+	/**
+	 * 代理对象对应的微服务名称
+	 * @param proxy createProxy 创建出来的代理对象
+	 * @return 微服务名称
+	 */
+	public static String microServiceNameOf(Object proxy) {
+		return invokerOf(proxy)._microServiceName;
+	}
+
+	/**
+	 * 代理对象使用的共用组件
+	 */
+	static RestClientContext contextOf(Object proxy) {
+		return invokerOf(proxy)._context;
+	}
+
+	private static RestClientInvoker invokerOf(Object proxy) {
+		if (proxy instanceof RestClientStub) {
+			return ((RestClientStub) proxy).restClientInvoker();
+		}
+		if (proxy != null && Proxy.isProxyClass(proxy.getClass())
+			&& Proxy.getInvocationHandler(proxy) instanceof RestClientInvoker) {
+			return (RestClientInvoker) Proxy.getInvocationHandler(proxy);
+		}
+		throw new IllegalArgumentException(proxy + " 不是 RestClientInvoker 创建的代理对象");
+	}
+
 	/**
 	 * <p>
 	 * 被代理类的所有方法都会被转到这个方法上，我们要在这里处理 RestClientMapping 的注解标识的方法
 	 * </p>
 	 *
 	 * <p>
-	 * 只有被代理类的方法实际被执行的时候，才会被转到这个 invoke 方法上
+	 * 只有被代理类的方法实际被执行的时候，才会被转到这个 invoke 方法上。
+	 * 注解和参数在创建代理的时候已经解析成了 RestMethodPlan, 这里只做参数的绑定
+	 * </p>
+	 *
+	 * <p>
+	 * 返回 CompletableFuture 的方法不阻塞调用方, 在 RestClientContext 的线程池上发起调用,
+	 * 调用结束以后用结果或者异常完成这个 future。当前线程的 RestDeadline 会带到线程池上
+	 * </p>
+	 *
+	 * <p>
+	 * 每次调用都记录到这个方法的 CallMetrics 里面, 包括缓存命中和合并的调用, 异步方法在 future 完成的时候记录。
+	 * 流式方法记录的是拿到响应头的时间, 不包括读取元素的时间
 	 * </p>
 	 *
 	 * @return
@@ -125,239 +265,440 @@ public class RestClientInvoker implements InvocationHandler {
 	 */
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-		try {
-			RestclientMapping mapping = method.getAnnotation(RestclientMapping.class);
-
-			// mapping 可能长这样：
-			//  @RestclientMapping(path = "/api/pex/expense/delBill",method = RequestMethod.GET)
-			if (Objects.isNull(mapping)) {
-				// 如果 mapping 是空的，我们直接抛出异常。
-				// 因为进入到这个 invoke，说明服务发起了实际的方法调用, 那么这个实际的方法上，一定要加 RestClientMapping
-				// 来标识我们要发起 http 调用的远端地址
-				throw new IllegalStateException(getMethodFullPath(method) + " 没有配置RestclientMapping");
-			}
+		return invoke(_plans.get(method), method, _metrics.get(method), args);
+	}
 
-			// 处理请求的 URL, 先处理  RequestParam 的参数
-			String requestPath = pupulateGetParamter(resolveMethodPath(method), method, args);
-			// 处理 PathVariable 的变量
-			requestPath = populatePathVar(requestPath, method, args);
+	/**
+	 * 代理对象和生成的客户端类（RestClientCall）都从这里发起调用
+	 */
+	Object invoke(RestMethodPlan plan, Method method, CallMetrics metrics, Object[] args) {
+		if (metrics == null) {
+			return dispatch(plan, method, args);
+		}
+		long start = metrics.start();
+		Object result;
+		try {
+			result = dispatch(plan, method, args);
+		} catch (RuntimeException | Error e) {
+			metrics.stop(start, true);
+			throw e;
+		}
+		if (plan.async() && result instanceof CompletableFuture) {
+			// whenComplete 返回的是新的 future, 返回给调用方的还是原来的
+			((CompletableFuture<?>) result).whenComplete((value, error) -> metrics.stop(start, error != null));
+		} else {
+			metrics.stop(start, false);
+		}
+		return result;
+	}
 
-			// 判断是不是合法的 URL
-			if (!requestPath.startsWith("/")) {
-				System.out.println("path error" + requestPath + "必须以 '/' 开头");
-				throw new IllegalArgumentException(getMethodFullPath(method) + "'s request path is illegal");
-			}
+	/**
+	 * 给生成的客户端类用: 契约接口上一个 RestclientMapping 方法的调用入口, 创建客户端对象的时候解析一次
+	 * @param name 方法名
+	 * @param parameterTypes 参数类型
+	 */
+	public RestClientCall call(String name, Class<?>... parameterTypes) {
+		Method method;
+		try {
+			method = _contract.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(_contract.getName() + " 没有方法 " + name, e);
+		}
+		RestMethodPlan plan = _plans.get(method);
+		if (plan == null) {
+			throw new IllegalStateException(getMethodFullPath(method) + " 没有配置RestclientMapping");
+		}
+		return new RestClientCall(this, plan, _metrics.get(method));
+	}
 
-			Object body = getPostBody(method, args);
-
-			// 准备发起 http 调用
-			HttpHeaders headers = new HttpHeaders();
-			headers.setAccept(Arrays.asList(MediaType.APPLICATION_JSON_UTF8));
-			headers.setContentType(MediaType.APPLICATION_JSON);
-
-			ResponseEntity responseEntity = null;
-			// 这里我们简化, 将微服务实例当成 requestPath 的一部分, microService 当成类上的 RequestMapping
-			// </微服务实例/具体的请求地址>
-			requestPath = "/" + _microServiceName + requestPath;
-
-			// 拼接上端口号和上下文路径
-//			requestPath += (_contextPath.startsWith("/") ? "" : "/") + _contextPath;
-//			requestPath = (_contextPath.startsWith("/") ? "" : "/") + _contextPath + requestPath;
-			String prefix = "http://localhost:8089";
-			// 拼接出来应该是 prefix/serverContextPath/具体的路径
-			requestPath = prefix + requestPath;
-
-			RequestEntity requestEntity = new RequestEntity(body, headers,
-				HttpMethod.valueOf(mapping.method().name()), URI.create(requestPath));
-			// 发起调用，兼容泛型和非泛型的情况
-			responseEntity = _restTemplate.exchange(requestEntity,
-				ParameterizedTypeReference.forType(method.getGenericReturnType()));
-
-			// 判断状态，然后返回结果
-			if (!responseEntity.getStatusCode().is2xxSuccessful()) {
-				throw new RuntimeException(resolveMethodPath(method) + " request is error");
-			}
-			return responseEntity.getBody();
-		} catch (Exception e) {
-			throw new RuntimeException();
+	private Object dispatch(RestMethodPlan plan, Method method, Object[] args) {
+		if (plan != null && plan.streaming() != null) {
+			return traced(method, () -> stream(plan, method, args));
+		}
+		if (plan != null && plan.async() && plan.batch() != null && plan.cacheable() == null) {
+			// 异步的批量调用直接返回批量收集器的 future, 不占用线程等待
+			return _batchers.get(method).submit(args);
+		}
+		if (plan != null && plan.async()) {
+			Long deadline = RestDeadline.current();
+			// provider 正在处理的被采样的请求也带过去, 异步调用和它在同一个 trace 里面
+			CallTrace parent = CallTrace.current();
+			return CompletableFuture.supplyAsync(() -> CallTrace.call(parent,
+				() -> RestDeadline.call(deadline, () -> call(plan, method, args))), _context.executor());
 		}
+		return call(plan, method, args);
 	}
 
 	/**
-	 *
-	 * @param methodPath 从 RestClientMapping 中解析出的 path 地址
-	 * @param method 调用的方法
-	 * @param args 方法的参数
-	 * @return
-	 * @throws UnsupportedEncodingException
+	 * RestclientCacheable 的方法先查缓存, 没有命中的话再看能不能和正在进行的相同调用合并
 	 */
-	private String pupulateGetParamter(String methodPath, Method method, Object[] args) throws UnsupportedEncodingException {
-		RestclientMapping mapping = method.getAnnotation(RestclientMapping.class);
-		Parameter[] params = method.getParameters();
-		Parameter param = null;
-		String paramStr = ""; // 最终拼接出来的 URL 内容
-
-		// 处理方法的参数, 提供出来的方法应该指定 @RequestParam 这样的内容
-		// 例如：
-		// @RestclientMapping(path = "/api/pex/expense/delBill",method = RequestMethod.GET)
-		// void delBill(@RequestParam("billType") String billType,@RequestParam("billId") String billId, boolean... b);
-		for (int i = 0; i < params.length; i ++) {
-			Object paramValue = args[i];
-			if (paramValue == null || paramValue.toString().isEmpty()) {
-				continue;
-			}
-			param = params[i];
-			// 排除掉 RequestBody 和基本类型，String 类型的参数
-
-			// 实际上我们只处理 @RequestParam 注解的参数,
-			// 还有就是将一个对象搞成一个 Map，将这个 Map 拼接成一个 Get 中的参数
-
-			// 尝试从参数上获取 RequestParam 注解
-			RequestParam requestParam = param.getAnnotation(RequestParam.class);
-			if (Objects.nonNull(requestParam)) {
-				// 获取 RequestParam 中的名称
-				String urlParamName = paramName(requestParam);
-				// 没有直接抛出异常，所以这个一定要配
-				if (urlParamName == null || urlParamName.isEmpty()) {
-					throw new IllegalArgumentException(method.getName() + " RequestParam的name属性为空");
-				}
-				// 拼接出 Get 请求
-				paramStr += urlParamName + "=" + URLEncoder.encode(paramValue.toString(), "utf-8") + "&";
-			} else {
-				Map mapValue = null; // 这个具体的实现不写了，就是将这个转换成一个 Map
-				for (Object key : mapValue.keySet()) {
-					Object v = mapValue.get(key);
-					if (v != null) {
-						paramStr += key + "=" + URLEncoder.encode(mapValue.get(key).toString(), "utf-8") + "&";
-					}
-				}
-			}
+	private Object call(RestMethodPlan plan, Method method, Object[] args) {
+		if (plan != null && plan.cacheable() != null) {
+			return _caches.get(method).get(args, () -> coalesce(plan, method, args));
 		}
+		return coalesce(plan, method, args);
+	}
 
-		if (paramStr.length() > 0) {
-			methodPath += "?" + paramStr.substring(0, paramStr.length() - 1);
+	private Object coalesce(RestMethodPlan plan, Method method, Object[] args) {
+		if (plan != null && plan.coalescing()) {
+			return _flights.get(method).execute(args, () -> batch(plan, method, args));
 		}
-		return methodPath;
+		return batch(plan, method, args);
 	}
 
 	/**
-	 * 获取 RestClientMapping 中的 path 地址
-	 * @param method
-	 * @return
+	 * RestclientBatch 的方法交给批量收集器, 等待这一批的结果, 有 deadline 的话最多等到 deadline
 	 */
-	private String resolveMethodPath(Method method) {
-		String methodPath = "";
-		// 获取这个类上的注解，目前没有想到什么场景，RestClientMapping 注解类，可以为当前类的所有的方法都加一个链接前缀
-		RestclientMapping mapping = (RestclientMapping) _contract.getAnnotation(RestclientMapping.class);
-		if (mapping != null) {
-			methodPath = mappingPath(mapping);
+	private Object batch(RestMethodPlan plan, Method method, Object[] args) {
+		if (plan == null || plan.batch() == null) {
+			return traced(method, () -> execute(plan, method, args));
 		}
+		CompletableFuture<Object> future = _batchers.get(method).submit(args);
+		long remaining = RestDeadline.remainingNanos();
+		try {
+			return remaining == Long.MAX_VALUE ? future.get() : future.get(remaining, TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RemoteCallException(_microServiceName, plan.methodFullPath() + " 调用失败: " + e.getCause(),
+				e.getCause());
+		} catch (TimeoutException e) {
+			throw new DeadlineExceededException(_microServiceName,
+				plan.methodFullPath() + " 等待批量调用超过了 deadline", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RemoteCallException(_microServiceName, plan.methodFullPath() + " 等待批量调用时被中断", e);
+		}
+	}
 
-		// 获取方法上的注解中的 path
-		mapping = method.getAnnotation(RestclientMapping.class);
-		if (mapping != null) {
-			// 类上的 URL 前缀 + 方法上的 URL 前缀
-			methodPath += mappingPath(mapping);
+	/**
+	 * 被采样的调用在当前线程上记录每个阶段的时间, 结束以后放到慢调用里面。
+	 * 缓存命中, 合并和批量的调用没有自己的 http 请求, 不采样
+	 */
+	private Object traced(Method method, Supplier<Object> call) {
+		CallTrace trace = _context.tracing().startClient(_microServiceName, method);
+		if (trace == null) {
+			return call.get();
+		}
+		boolean error = true;
+		try {
+			Object result = call.get();
+			error = false;
+			return result;
+		} finally {
+			_context.tracing().finish(trace, null, error);
 		}
+	}
 
-		return methodPath;
+	private MicroBatcher newBatcher(RestMethodPlan plan) {
+		String contract = plan.method().getDeclaringClass().getName();
+		String signature = RestBatchDispatcher.signatureOf(plan.method());
+		JavaType valueType = _context.objectMapper().getTypeFactory().constructType(plan.responseType().getType());
+		return new MicroBatcher(_microServiceName, plan, plan.batch(), _context.scheduler(), _context.executor(),
+			calls -> exchange(HttpMethod.POST, "/micro-batch", new RestBatchRequest(contract, signature, calls),
+				BATCH_RESULTS),
+			value -> _context.objectMapper().convertValue(value, valueType));
 	}
 
-		/**
-		 * 获取方法的全限定名
-		 * @param method
-		 * @return
-		 */
-	private String getMethodFullPath(Method method) {
-		return method.getDeclaringClass().getCanonicalName() + "." + method.getName();
+	/**
+	 * 代理对象上 RestclientCacheable 方法的缓存, 没有的话是 null
+	 */
+	public static RestResponseCache cacheOf(Object proxy, Method method) {
+		return invokerOf(proxy)._caches.get(method);
 	}
 
-	private String mappingPath(RestclientMapping mapping) {
-		if (mapping.path() != null && !mapping.path().isEmpty()) {
-			return mapping.path();
-		}
-		return mapping.value();
+	/**
+	 * 代理对象上 RestclientCoalescing 方法的请求合并, 没有的话是 null
+	 */
+	public static SingleFlight singleFlightOf(Object proxy, Method method) {
+		return invokerOf(proxy)._flights.get(method);
 	}
 
 	/**
-	 * 从 RequestParam 中获取 param 名称
-	 * @param param
-	 * @return
+	 * 同步地发起一次 http 调用
 	 */
-	private String paramName(RequestParam param) {
-		if (param.name() != null && !param.name().isEmpty()) {
-			return param.name();
+	private Object execute(RestMethodPlan plan, Method method, Object[] args) {
+		// mapping 可能长这样：
+		//  @RestclientMapping(path = "/api/pex/expense/delBill",method = RequestMethod.GET)
+		if (Objects.isNull(plan)) {
+			// 如果 mapping 是空的，我们直接抛出异常。
+			// 因为进入到这个 invoke，说明服务发起了实际的方法调用, 那么这个实际的方法上，一定要加 RestClientMapping
+			// 来标识我们要发起 http 调用的远端地址
+			throw new IllegalStateException(getMethodFullPath(method) + " 没有配置RestclientMapping");
+		}
+
+		// 处理请求的 URL, RequestParam 和 PathVariable 的参数
+		String requestPath = plan.bindPath(args);
+		CallTrace.mark(CallTrace.Phase.BIND);
+		Object body = plan.body(args);
+
+		Supplier<Object> attempt = () -> exchange(plan.httpMethod(), requestPath, body, plan.responseType());
+		Hedger hedger = _hedgers.get(method);
+		if (hedger != null) {
+			// 对冲的请求发到另外一个实例, 两个请求都在别的线程上执行, 要把 deadline 带过去;
+			// 采样的话 provider 也要收到 X-Micro-Trace, 但是各个阶段的时间不记录, 只有调用的总时间
+			Long deadline = RestDeadline.current();
+			attempt = () -> {
+				ServiceInstance primary = _context.choose(_microServiceName);
+				CallTrace trace = CallTrace.current();
+				return hedger.call(
+					() -> RestDeadline.call(deadline,
+						() -> exchange(primary, plan.httpMethod(), requestPath, body, plan.responseType(), trace)),
+					() -> RestDeadline.call(deadline,
+						() -> exchange(_context.choose(_microServiceName, primary), plan.httpMethod(), requestPath,
+							body, plan.responseType(), trace)));
+			};
 		}
-		return param.value();
+		// 只有幂等的 GET 可以重试
+		return plan.httpMethod() == HttpMethod.GET ? retry(attempt) : attempt.get();
 	}
 
-	private String populatePathVar(String methodPath, Method method, Object[] args) {
-		Parameter[] params = method.getParameters();
-		Parameter param = null;
-		for (int i = 0; i < params.length; i++) {
-			Object pathVarValue = args[i];
-			if (pathVarValue == null || pathVarValue.toString().isEmpty()) {
-				continue;
-			}
-			param = params[i];
-			PathVariable pathVar = param.getAnnotation(PathVariable.class);
-			if (pathVar != null) {
-				String pathVarName = pathVarName(pathVar);
-				methodPath = methodPath.replace("{" + pathVarName + "}", pathVarValue.toString());
+	/**
+	 * <p>
+	 * 失败以后等待一个指数增长的随机时间（full jitter）再重试, 最多调用 maxAttempts 次。
+	 * </p>
+	 *
+	 * <p>
+	 * 每次重试要从这个微服务的重试预算中取一个令牌, 预算不够, 或者等待以后就超过 deadline 的时候不再重试。
+	 * 熔断, 舱壁满, deadline 已经到了, 4xx 这些失败重试也没有用, 直接抛出。
+	 * </p>
+	 */
+	private Object retry(Supplier<Object> attempt) {
+		RestClientProperties.RetrySettings settings = _context.properties().retry(_microServiceName);
+		RateBudget budget = _context.retryBudget(_microServiceName);
+		budget.deposit();
+		for (int n = 1; ; n++) {
+			try {
+				return attempt.get();
+			} catch (RemoteCallException e) {
+				if (n >= settings.getMaxAttempts() || !retryable(e)) {
+					throw e;
+				}
+				long backoff = backoffNanos(settings, n);
+				if (backoff >= RestDeadline.remainingNanos() || !budget.tryWithdraw()) {
+					throw e;
+				}
+				try {
+					TimeUnit.NANOSECONDS.sleep(backoff);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+				CallTrace.mark(CallTrace.Phase.BACKOFF);
 			}
 		}
-		return methodPath;
 	}
 
-	private String pathVarName(PathVariable pathVar) {
-		if (pathVar.name() != null && !pathVar.name().isEmpty()) {
-			return pathVar.name();
-		}
-		return pathVar.value();
+	private static boolean retryable(RemoteCallException e) {
+		return !(e instanceof CircuitOpenException || e instanceof BulkheadFullException
+			|| e instanceof NoAvailableInstanceException
+			|| e instanceof DeadlineExceededException || e.getCause() instanceof HttpClientErrorException
+			|| Thread.currentThread().isInterrupted());
 	}
 
 	/**
-	 * 获取发送的实体对象, 处理 post 请求, 找第一个 RequestBody
-	 * @param method
-	 * @param args
-	 * @return
+	 * 第 n 次失败以后等待的时间: [0, min(maxBackoff, initialBackoff * multiplier^(n-1))] 之间的随机值
 	 */
-	private Object getPostBody(Method method, Object[] args) {
-		RestclientMapping mapping = method.getAnnotation(RestclientMapping.class);
-		if (!mappingMethod(mapping).contains(RequestMethod.POST)) {
-			return null;
-		}
+	static long backoffNanos(RestClientProperties.RetrySettings settings, int n) {
+		double cap = settings.getInitialBackoff().toNanos() * Math.pow(settings.getMultiplier(), n - 1);
+		long bound = (long) Math.min(settings.getMaxBackoff().toNanos(), cap);
+		return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+	}
 
-		Parameter[] params = method.getParameters();
-		Parameter param = null;
+	/**
+	 * <p>
+	 * 选一个实例, 发起 http 调用。
+	 * </p>
+	 *
+	 * <p>
+	 * 调用之前先过这个微服务的舱壁和熔断器, 没有通过的直接抛出 BulkheadFullException 或者 CircuitOpenException,
+	 * 不占用连接, 也不等待读超时。调用失败的统一包装成 RemoteCallException。
+	 * </p>
+	 * @param httpMethod http 方法
+	 * @param requestPath 微服务内部的请求地址, 以 '/' 开头
+	 * @param body 请求体
+	 * @param responseType 响应体的类型
+	 * @return 响应体
+	 */
+	private <R> R exchange(HttpMethod httpMethod, String requestPath, Object body,
+						  ParameterizedTypeReference<R> responseType) {
+		// 按照负载均衡策略选一个实例
+		return exchange(_context.choose(_microServiceName), httpMethod, requestPath, body, responseType,
+			CallTrace.current());
+	}
 
-		for (int i = 0; i < params.length; i ++) {
-			param = params[i];
-			RequestBody requestBody = param.getAnnotation(RequestBody.class);
-			if (Objects.isNull(requestBody) || Objects.isNull(args[i])) {
-				continue;
+	/**
+	 * @param trace 发给 provider 的 X-Micro-Trace, 一般就是当前线程的 CallTrace;
+	 *              对冲的请求在别的线程上, 不放到那个线程上（CallTrace 只由开始它的线程修改）, 只带上请求头
+	 */
+	private <R> R exchange(ServiceInstance instance, HttpMethod httpMethod, String requestPath, Object body,
+						  ParameterizedTypeReference<R> responseType, CallTrace trace) {
+		ResponseEntity<R> responseEntity = null;
+		// 这里我们简化, 将微服务实例当成 requestPath 的一部分, microService 当成类上的 RequestMapping
+		// </微服务实例/具体的请求地址>
+		// 拼接出来应该是 http://实例地址/微服务名称/具体的路径
+		requestPath = instance.getBaseUrl() + "/" + _microServiceName + requestPath;
+
+		RequestEntity<Object> requestEntity = new RequestEntity<>(body, requestHeaders(_headers, requestPath, trace),
+			httpMethod, URI.create(requestPath));
+
+		Bulkhead bulkhead = _context.bulkhead(_microServiceName);
+		CircuitBreaker breaker = enter(bulkhead);
+		CallTrace.mark(CallTrace.Phase.GUARD);
+
+		// 发起调用，兼容泛型和非泛型的情况, 同时记录实例的负载
+		boolean failure = true;
+		instance.onStart();
+		long start = System.nanoTime();
+		try {
+			// 实例地址可能带有 context path, 连接池按微服务名称划分, 不从 URL 里面猜
+			responseEntity = PooledClientHttpRequestFactory.forMicroService(_microServiceName,
+				() -> _restTemplate.exchange(requestEntity, responseType));
+			failure = !responseEntity.getStatusCode().is2xxSuccessful();
+		} catch (HttpClientErrorException e) {
+			// 4xx 是调用方自己的问题, 不算微服务的失败
+			failure = false;
+			throw new RemoteCallException(_microServiceName, requestPath + " 调用失败: " + e.getStatusCode(), e);
+		} catch (RuntimeException e) {
+			// 对冲输掉的请求是被中断取消的, 不算微服务的失败
+			failure = !Thread.currentThread().isInterrupted();
+			if (RestDeadline.remainingNanos() <= 0) {
+				// 调用方给的时间太短, 也不算微服务的失败, 慢调用还是会统计
+				failure = false;
+				throw new DeadlineExceededException(_microServiceName, requestPath + " 超过了 deadline", e);
 			}
-			// 找到第一个 RequestBody 返回
-			return args[i];
+			throw new RemoteCallException(_microServiceName, requestPath + " 调用失败: " + e.getMessage(), e);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			instance.onComplete(elapsed);
+			breaker.onResult(elapsed, failure);
+			bulkhead.release(elapsed, failure);
 		}
-		return null;
-	}
 
-	private List<RequestMethod> mappingMethod(RestclientMapping mapping) {
-		return Arrays.asList(mapping.method());
+		// 判断状态，然后返回结果
+		if (failure) {
+			throw new RemoteCallException(_microServiceName,
+				requestPath + " 调用失败: " + responseEntity.getStatusCode());
+		}
+		return responseEntity.getBody();
 	}
 
-	private Tuple generalMicroServiceInfo(String microName, String path) {
-		String[] split = microName.split("-");
-		String m = split[0];
-		String p = path;
-		if (split.length>1) {
-			p = "/" + split[1] + path;
+	/**
+	 * <p>
+	 * 流式方法（返回 Stream 或者 Iterator）不经过 RestTemplate, 直接用它的 ClientHttpRequestFactory 发起请求,
+	 * 拿到响应头以后就返回, 响应体在调用方遍历的时候一边读一边解码, 不会把整个结果放在内存里面。
+	 * </p>
+	 *
+	 * <p>
+	 * 舱壁和熔断器只管到拿到响应头为止; 连接在遍历结束或者 close 的时候归还。
+	 * 缓存, 合并, 批量, 对冲, 重试对流式方法都不生效。
+	 * </p>
+	 */
+	private Object stream(RestMethodPlan plan, Method method, Object[] args) {
+		String boundPath = plan.bindPath(args);
+		CallTrace.mark(CallTrace.Phase.BIND);
+		Object body = plan.body(args);
+		ServiceInstance instance = _context.choose(_microServiceName);
+		String requestPath = instance.getBaseUrl() + "/" + _microServiceName + boundPath;
+		HttpHeaders headers = requestHeaders(STREAM_HEADERS, requestPath, CallTrace.current());
+
+		Bulkhead bulkhead = _context.bulkhead(_microServiceName);
+		CircuitBreaker breaker = enter(bulkhead);
+		CallTrace.mark(CallTrace.Phase.GUARD);
+		ClientHttpResponse response = null;
+		boolean failure = true;
+		instance.onStart();
+		long start = System.nanoTime();
+		try {
+			ClientHttpRequestFactory factory = _restTemplate.getRequestFactory();
+			ClientHttpRequest request = factory instanceof PooledClientHttpRequestFactory pooled
+				? pooled.createRequest(URI.create(requestPath), plan.httpMethod(), _microServiceName)
+				: factory.createRequest(URI.create(requestPath), plan.httpMethod());
+			request.getHeaders().addAll(headers);
+			if (body != null) {
+				request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				_context.objectMapper().writeValue(StreamUtils.nonClosing(request.getBody()), body);
+			}
+			response = request.execute();
+			failure = response.getStatusCode().is5xxServerError();
+			if (!response.getStatusCode().is2xxSuccessful()) {
+				throw new RemoteCallException(_microServiceName,
+					requestPath + " 调用失败: " + response.getStatusCode());
+			}
+			JavaType elementType = _context.objectMapper().getTypeFactory()
+				.constructType(plan.responseType().getType());
+			MappingIterator<Object> values = _context.objectMapper().readerFor(elementType)
+				.readValues(response.getBody());
+			StreamingResponseIterator<Object> iterator =
+				new StreamingResponseIterator<>(_microServiceName, requestPath, values, response);
+			response = null;
+			if (plan.streaming() == Iterator.class) {
+				return iterator;
+			}
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+				.onClose(iterator::close);
+		} catch (IOException e) {
+			failure = !Thread.currentThread().isInterrupted() && RestDeadline.remainingNanos() > 0;
+			if (RestDeadline.remainingNanos() <= 0) {
+				throw new DeadlineExceededException(_microServiceName, requestPath + " 超过了 deadline", e);
+			}
+			throw new RemoteCallException(_microServiceName, requestPath + " 调用失败: " + e.getMessage(), e);
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+			long elapsed = System.nanoTime() - start;
+			instance.onComplete(elapsed);
+			breaker.onResult(elapsed, failure);
+			bulkhead.release(elapsed, failure);
 		}
-		return new Tuple(m, p);
 	}
-}
-
 
+	/**
+	 * 有 deadline 的话把剩下的时间带给 provider, 同时也是这次调用的超时时间（见 PooledClientHttpRequestFactory）;
+	 * 被采样的调用带上 X-Micro-Trace
+	 */
+	private HttpHeaders requestHeaders(HttpHeaders headers, String requestPath, CallTrace trace) {
+		long remaining = RestDeadline.remainingNanos();
+		if (remaining <= 0) {
+			throw new DeadlineExceededException(_microServiceName, requestPath + " 的 deadline 已经到了, 没有发出调用");
+		}
+		if (remaining == Long.MAX_VALUE && trace == null) {
+			return headers;
+		}
+		HttpHeaders copy = new HttpHeaders();
+		copy.addAll(headers);
+		if (remaining != Long.MAX_VALUE) {
+			copy.set(RestDeadline.HEADER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining))));
+		}
+		if (trace != null) {
+			copy.set(CallTrace.HEADER, trace.header());
+		}
+		return copy;
+	}
 
+	/**
+	 * 先过舱壁再过熔断器, 都通过的话返回熔断器, 调用结束以后要记录结果并且释放舱壁
+	 */
+	private CircuitBreaker enter(Bulkhead bulkhead) {
+		if (!bulkhead.tryAcquire()) {
+			throw new BulkheadFullException(_microServiceName, bulkhead.getLimit());
+		}
+		CircuitBreaker breaker = _context.circuitBreaker(_microServiceName);
+		if (!breaker.tryAcquire()) {
+			bulkhead.release();
+			throw new CircuitOpenException(_microServiceName);
+		}
+		return breaker;
+	}
 
+	/**
+	 * 获取方法的全限定名
+	 * @param method
+	 * @return
+	 */
+	private String getMethodFullPath(Method method) {
+		return method.getDeclaringClass().getCanonicalName() + "." + method.getName();
+	}
+}
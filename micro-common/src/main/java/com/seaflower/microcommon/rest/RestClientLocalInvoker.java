@@ -0,0 +1,86 @@
+package com.seaflower.microcommon.rest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * 契约接口的实现就在同一个进程里面的时候, RestClientReference 注入这个代理, 直接调用本地的 Bean,
+ * 没有序列化, 也没有网络。
+ * </p>
+ *
+ * <p>
+ * 本地的 Bean 在第一次调用的时候才从容器中取, 注入的时候不会提前创建它, 也不会因为互相引用导致循环依赖。
+ * 参数和返回值是同一个对象, 不会像 http 调用那样复制一份; 熔断, 舱壁, 重试, 缓存和调用统计都不经过。
+ * </p>
+ */
+public final class RestClientLocalInvoker implements InvocationHandler {
+	private final String microServiceName;
+	private final Class<?> contract;
+	private final Supplier<?> target;
+	private volatile Object resolved;
+
+	private RestClientLocalInvoker(String microServiceName, Class<?> contract, Supplier<?> target) {
+		this.microServiceName = microServiceName;
+		this.contract = contract;
+		this.target = target;
+	}
+
+	/**
+	 * @param microServiceName 原来要调用的微服务, 只用在 toString 里面
+	 * @param c 契约接口
+	 * @param target 返回本地实现的 Bean, 只会调用一次
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T createProxy(String microServiceName, Class<T> c, Supplier<?> target) {
+		return (T) Proxy.newProxyInstance(c.getClassLoader(), new Class<?>[] { c },
+			new RestClientLocalInvoker(microServiceName, c, target));
+	}
+
+	/**
+	 * 是不是 createProxy 创建的本地代理
+	 */
+	public static boolean isLocal(Object proxy) {
+		return proxy != null && Proxy.isProxyClass(proxy.getClass())
+			&& Proxy.getInvocationHandler(proxy) instanceof RestClientLocalInvoker;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return contract.getSimpleName() + "(local " + microServiceName + ")";
+				default:
+					break;
+			}
+		}
+		try {
+			return method.invoke(target(), args);
+		} catch (InvocationTargetException e) {
+			// 和直接调用一样, 抛出实现里面的异常
+			throw e.getTargetException();
+		}
+	}
+
+	private Object target() {
+		Object t = resolved;
+		if (t == null) {
+			synchronized (this) {
+				t = resolved;
+				if (t == null) {
+					t = target.get();
+					resolved = t;
+				}
+			}
+		}
+		return t;
+	}
+}
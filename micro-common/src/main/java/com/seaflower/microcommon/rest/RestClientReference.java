@@ -13,4 +13,11 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 public @interface RestClientReference {
 	String[] microServiceNames() default {};
 	Class consumerInterface() default Void.class;
+
+	/**
+	 * 容器中有契约接口的实现的时候直接调用本地的 Bean, 不发 http 请求。
+	 * 只对单个的字段有效, List/Map 的字段还是调用所有的微服务。
+	 * 也可以用 micro.rest-client.prefer-local 对所有的或者某个微服务打开
+	 */
+	boolean preferLocal() default false;
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.seaflower.microcommon.rest;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * <p>
+ * RestClientReferenceIndexer 在编译期生成的索引, classpath 上所有的索引文件合并在一起。
+ * </p>
+ *
+ * <p>
+ * 和 Spring 的 spring.components 一样, 只要 classpath 上有索引就只按索引处理,
+ * 所以有 RestClientReference 字段的模块都要配置注解处理器; 否则用 micro.rest-client.reference-index=false 关掉索引
+ * </p>
+ */
+final class RestClientReferenceIndex {
+	static final String LOCATION = "META-INF/micro-rest-client-references.properties";
+
+	// 类的二进制名称 -> 这个类自己声明的 RestClientReference 字段
+	private final Map<String, List<IndexedField>> fields;
+
+	private RestClientReferenceIndex(Map<String, List<IndexedField>> fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * @return classpath 上没有索引文件的时候是 null
+	 */
+	static RestClientReferenceIndex load(ClassLoader classLoader) {
+		try {
+			Enumeration<URL> urls = classLoader.getResources(LOCATION);
+			if (!urls.hasMoreElements()) {
+				return null;
+			}
+			Map<String, List<IndexedField>> fields = new HashMap<>();
+			while (urls.hasMoreElements()) {
+				Properties index = new Properties();
+				try (Reader in = new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8)) {
+					index.load(in);
+				}
+				for (String key : index.stringPropertyNames()) {
+					int hash = key.indexOf('#');
+					fields.computeIfAbsent(key.substring(0, hash), k -> new ArrayList<>())
+						.add(new IndexedField(key.substring(hash + 1), index.getProperty(key)));
+				}
+			}
+			return new RestClientReferenceIndex(fields);
+		} catch (IOException e) {
+			throw new UncheckedIOException("读取 " + LOCATION + " 失败", e);
+		}
+	}
+
+	/**
+	 * @param className Class.getName()
+	 * @return 这个类自己声明的字段, 不包括父类的, 没有的话是空的 List
+	 */
+	List<IndexedField> fieldsOf(String className) {
+		return fields.getOrDefault(className, List.of());
+	}
+
+	int size() {
+		return fields.values().stream().mapToInt(List::size).sum();
+	}
+
+	static final class IndexedField {
+		private final String name;
+		// 契约接口的二进制名称
+		private final String contract;
+
+		IndexedField(String name, String contract) {
+			this.name = name;
+			this.contract = contract;
+		}
+
+		String name() {
+			return name;
+		}
+
+		String contract() {
+			return contract;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package com.seaflower.microcommon.rest;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * 编译期的注解处理器, 把带有 RestClientReference 的字段记录到 META-INF/micro-rest-client-references.properties:
+ * </p>
+ *
+ * <pre>
+ * com.server.consumer.controller.hello.HelloController#helloInterface=com.server.provider.api.hello.HelloInterface
+ * </pre>
+ *
+ * <p>
+ * key 是 类的二进制名称#字段名, value 是要代理的契约接口（List/Map 字段是元素的类型）。
+ * 运行的时候 RestclientReferenceProcessor 按这个索引只处理需要注入的 Bean, 不再反射每个 Bean 的所有字段。
+ * </p>
+ *
+ * <p>
+ * 使用的模块在 maven-compiler-plugin 的 annotationProcessorPaths 里面加上 micro-common。
+ * 增量编译的时候只重新编译了一部分类, 这时候保留已有索引中其它类的记录
+ * </p>
+ */
+@SupportedAnnotationTypes("com.seaflower.microcommon.rest.RestClientReference")
+public class RestClientReferenceIndexer extends AbstractProcessor {
+	// 类的二进制名称#字段名 -> 契约接口
+	private final Map<String, String> entries = new TreeMap<>();
+	// 这次编译的类, 旧索引里面这些类的记录以这次的为准
+	private final Set<String> compiled = new HashSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			collectCompiled(type);
+		}
+		for (Element element : roundEnv.getElementsAnnotatedWith(RestClientReference.class)) {
+			if (element.getKind() != ElementKind.FIELD) {
+				continue;
+			}
+			VariableElement field = (VariableElement) element;
+			TypeElement owner = (TypeElement) field.getEnclosingElement();
+			String contract = contractOf(field);
+			if (contract == null) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+					"无法确定 RestClientReference 的契约接口, 运行的时候按字段类型处理", field);
+				continue;
+			}
+			entries.put(binaryName(owner) + "#" + field.getSimpleName(), contract);
+		}
+		if (roundEnv.processingOver()) {
+			write();
+		}
+		return false;
+	}
+
+	private void collectCompiled(TypeElement type) {
+		compiled.add(binaryName(type));
+		for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+			collectCompiled(nested);
+		}
+	}
+
+	/**
+	 * 和 RestclientReferenceProcessor 的规则一样: 注解上指定的 consumerInterface 优先,
+	 * 否则是字段的类型, List 取第一个类型参数, Map 取第二个
+	 */
+	private String contractOf(VariableElement field) {
+		try {
+			field.getAnnotation(RestClientReference.class).consumerInterface();
+		} catch (MirroredTypeException e) {
+			String specified = binaryName(e.getTypeMirror());
+			if (specified != null && !Void.class.getName().equals(specified)) {
+				return specified;
+			}
+		}
+		TypeMirror type = field.asType();
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+		if (isAssignable(type, "java.util.List")) {
+			return arguments.size() == 1 ? binaryName(arguments.get(0)) : null;
+		}
+		if (isAssignable(type, "java.util.Map")) {
+			return arguments.size() == 2 ? binaryName(arguments.get(1)) : null;
+		}
+		return binaryName(type);
+	}
+
+	private boolean isAssignable(TypeMirror type, String className) {
+		TypeElement target = processingEnv.getElementUtils().getTypeElement(className);
+		return target != null && processingEnv.getTypeUtils().isAssignable(
+			processingEnv.getTypeUtils().erasure(type), processingEnv.getTypeUtils().erasure(target.asType()));
+	}
+
+	private String binaryName(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		return binaryName((TypeElement) ((DeclaredType) type).asElement());
+	}
+
+	private String binaryName(TypeElement type) {
+		return processingEnv.getElementUtils().getBinaryName(type).toString();
+	}
+
+	private void write() {
+		Properties index = new Properties();
+		try {
+			FileObject existing = processingEnv.getFiler()
+				.getResource(StandardLocation.CLASS_OUTPUT, "", RestClientReferenceIndex.LOCATION);
+			try (Reader in = new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8)) {
+				index.load(in);
+			}
+		} catch (IOException e) {
+			// 第一次编译, 还没有索引
+		}
+		index.keySet().removeIf(key -> compiled.contains(key.toString().substring(0, key.toString().indexOf('#'))));
+		index.putAll(entries);
+		if (index.isEmpty()) {
+			return;
+		}
+
+		try {
+			FileObject file = processingEnv.getFiler()
+				.createResource(StandardLocation.CLASS_OUTPUT, "", RestClientReferenceIndex.LOCATION);
+			// 不用 Properties.store, 它会写入当前时间; 按 key 排序, 同样的代码生成的文件也一样
+			try (Writer out = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+				out.write("# RestClientReference 的索引, 由 RestClientReferenceIndexer 生成\n");
+				for (Map.Entry<Object, Object> entry : new TreeMap<>(index).entrySet()) {
+					out.write(entry.getKey() + "=" + entry.getValue() + "\n");
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				"写 " + RestClientReferenceIndex.LOCATION + " 失败: " + e);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microcommon.trace.CallTrace;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * 对 List/Map 类型的 RestClientReference 代理做 scatter-gather：
+ * 同一个方法同时调用所有的微服务, 在 deadline 之内收集结果, 结果的 key 是微服务名称。
+ * </p>
+ *
+ * <pre>
+ * &#64;RestClientReference(microServiceNames = {"provider-a", "provider-b"})
+ * private Map&lt;String, HelloInterface&gt; helloInterfaces;
+ *
+ * Map&lt;String, String&gt; all = RestClientScatter.of(helloInterfaces)
+ *     .deadline(Duration.ofMillis(500))
+ *     .allOf(h -&gt; h.hello(name));
+ * </pre>
+ *
+ * <p>
+ * 三种模式:
+ * <ul>
+ *     <li>allOf: 所有的微服务都要成功</li>
+ *     <li>firstSuccess: 第一个成功的就返回, 其余的取消</li>
+ *     <li>quorum: N 个里面有 n 个成功就返回</li>
+ * </ul>
+ * 条件没有满足（失败太多或者到了 deadline）的时候抛出 ScatterGatherException, 里面有已经拿到的结果和失败的原因。
+ * 调用在 RestClientContext 的 hedgeExecutor 上执行, deadline（调用方有更早的 RestDeadline 的话用调用方的）
+ * 和当前的采样都带到每个调用上。
+ * </p>
+ *
+ * @param <T> 契约接口
+ */
+public final class RestClientScatter<T> {
+	// ConcurrentHashMap 不能放 null, 用这个代替 null 的返回值
+	private static final Object NULL = new Object();
+
+	private final Map<String, T> proxies;
+	private Duration deadline = Duration.ofSeconds(5);
+
+	private RestClientScatter(Map<String, T> proxies) {
+		if (proxies.isEmpty()) {
+			throw new IllegalArgumentException("scatter 的代理对象不能为空");
+		}
+		this.proxies = proxies;
+	}
+
+	/**
+	 * Map 类型的代理, key 就是微服务的名称
+	 */
+	public static <T> RestClientScatter<T> of(Map<String, T> proxies) {
+		return new RestClientScatter<>(new LinkedHashMap<>(proxies));
+	}
+
+	/**
+	 * List 类型的代理, 从代理对象上取微服务的名称
+	 */
+	public static <T> RestClientScatter<T> of(List<T> proxies) {
+		Map<String, T> named = new LinkedHashMap<>();
+		for (T proxy : proxies) {
+			named.put(RestClientInvoker.microServiceNameOf(proxy), proxy);
+		}
+		return new RestClientScatter<>(named);
+	}
+
+	/**
+	 * 整个 scatter-gather 最多等待的时间, 默认 5s
+	 */
+	public RestClientScatter<T> deadline(Duration deadline) {
+		this.deadline = Objects.requireNonNull(deadline);
+		return this;
+	}
+
+	public <R> Map<String, R> allOf(Function<T, R> call) {
+		return gather(proxies.size(), call);
+	}
+
+	public <R> Map<String, R> firstSuccess(Function<T, R> call) {
+		return gather(1, call);
+	}
+
+	public <R> Map<String, R> quorum(int n, Function<T, R> call) {
+		if (n < 1 || n > proxies.size()) {
+			throw new IllegalArgumentException("quorum 必须在 1 到 " + proxies.size() + " 之间: " + n);
+		}
+		return gather(n, call);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R> Map<String, R> gather(int needed, Function<T, R> call) {
+		int total = proxies.size();
+		// 不用异步调用的线程池: 在异步调用的回调里面 scatter 的时候, 线程池忙的话这里会一直排队到 deadline
+		ExecutorService executor = RestClientInvoker.contextOf(proxies.values().iterator().next()).hedgeExecutor();
+		// 调用方更早的 deadline 优先, 带到每个调用上, provider 也会收到 X-Micro-Deadline
+		long deadlineNanos = System.nanoTime() + deadline.toNanos();
+		Long outer = RestDeadline.current();
+		if (outer != null && outer - deadlineNanos < 0) {
+			deadlineNanos = outer;
+		}
+		Long callDeadline = deadlineNanos;
+		CallTrace parent = CallTrace.current();
+
+		Map<String, Object> results = new ConcurrentHashMap<>();
+		Map<String, Throwable> errors = new ConcurrentHashMap<>();
+		AtomicInteger successes = new AtomicInteger();
+		AtomicInteger stored = new AtomicInteger();
+		AtomicInteger failures = new AtomicInteger();
+		// 成功的个数够了, 或者失败的太多已经不可能够了, 就结束
+		CompletableFuture<Void> done = new CompletableFuture<>();
+
+		List<Future<?>> futures = new ArrayList<>(total);
+		for (Map.Entry<String, T> entry : proxies.entrySet()) {
+			String name = entry.getKey();
+			T proxy = entry.getValue();
+			futures.add(executor.submit(() -> {
+				try {
+					R value = CallTrace.call(parent, () -> RestDeadline.call(callDeadline, () -> call.apply(proxy)));
+					if (successes.incrementAndGet() <= needed) {
+						results.put(name, value == null ? NULL : value);
+						// 结果放进去以后再计数, 保证 done 的时候需要的结果都已经在 results 里面了
+						if (stored.incrementAndGet() == needed) {
+							done.complete(null);
+						}
+					}
+				} catch (Throwable e) {
+					errors.put(name, e);
+					if (failures.incrementAndGet() > total - needed) {
+						done.complete(null);
+					}
+				}
+			}));
+		}
+
+		Map<String, Throwable> failed;
+		try {
+			done.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			// 到了 deadline, 按已经拿到的结果判断
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// done 不会异常完成
+		} finally {
+			// 先记下失败的调用, 下面取消的调用被中断以后也会进 errors, 它们不算失败
+			failed = new LinkedHashMap<>(errors);
+			// 还没有结束的调用全部取消
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+
+		Map<String, R> ordered = new LinkedHashMap<>();
+		for (String name : proxies.keySet()) {
+			Object value = results.get(name);
+			if (value != null) {
+				ordered.put(name, value == NULL ? null : (R) value);
+			}
+		}
+		if (ordered.size() < needed) {
+			throw new ScatterGatherException("scatter-gather 需要 " + needed + " 个成功, 实际 " + ordered.size()
+				+ " 个成功, " + failed.size() + " 个失败", ordered, failed);
+		}
+		return ordered;
+	}
+}
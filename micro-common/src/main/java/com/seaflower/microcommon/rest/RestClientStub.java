@@ -0,0 +1,8 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * RestClientStubGenerator 生成的客户端类都实现这个接口, 用来取回创建它的 RestClientInvoker
+ */
+public interface RestClientStub {
+	RestClientInvoker restClientInvoker();
+}
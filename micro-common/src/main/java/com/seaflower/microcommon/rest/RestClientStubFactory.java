@@ -0,0 +1,24 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * <p>
+ * 创建 RestClientStubGenerator 生成的客户端类, 生成的类里面都有一个实现这个接口的 Factory。
+ * </p>
+ *
+ * <p>
+ * 注解处理器把所有的 Factory 写到 META-INF/services/com.seaflower.microcommon.rest.RestClientStubFactory,
+ * RestClientInvoker 用 ServiceLoader 找到它们, 不需要 Class.forName 和反射调用构造方法,
+ * native image 也不需要额外的 reflect-config
+ * </p>
+ */
+public interface RestClientStubFactory {
+	/**
+	 * @return 生成的类实现的契约接口
+	 */
+	Class<?> contract();
+
+	/**
+	 * @return 生成的客户端类的实例, 实现 contract() 和 RestClientStub
+	 */
+	Object create(RestClientInvoker invoker);
+}
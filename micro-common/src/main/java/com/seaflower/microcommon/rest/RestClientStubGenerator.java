@@ -0,0 +1,277 @@
+package com.seaflower.microcommon.rest;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * 编译期的注解处理器, 为每个用了 RestclientMapping 的契约接口生成一个客户端类, 比如 HelloInterface_RestClient。
+ * </p>
+ *
+ * <p>
+ * 生成的类直接实现契约接口, 每个方法在构造的时候拿到自己的 RestClientCall, 调用的时候不经过 Proxy 的反射分发,
+ * 也不用按 Method 查找调用计划。RestClientInvoker.createProxy 找到生成的类就用它, 找不到的话还是用动态代理。
+ * </p>
+ *
+ * <p>
+ * 每个生成的类里面有一个 RestClientStubFactory 的实现 Factory, 编译结束的时候全部写到
+ * META-INF/services/com.seaflower.microcommon.rest.RestClientStubFactory, 运行的时候用 ServiceLoader 查找,
+ * 不用反射（native image 也直接支持 ServiceLoader）。参数还是装进 Object[] 交给 RestClientCall,
+ * 后面的 URL 拼接, 缓存的 key, 批量调用都是按 Object[] 处理的
+ * </p>
+ *
+ * <p>
+ * 下面这些情况不生成, 运行的时候还是用动态代理:
+ * <ul>
+ *     <li>契约接口或者方法有类型参数</li>
+ *     <li>契约接口是 private 的内部接口</li>
+ * </ul>
+ * 使用的模块（契约接口所在的模块）在 annotationProcessorPaths 里面加上 micro-common
+ * </p>
+ */
+@SupportedAnnotationTypes("com.seaflower.microcommon.rest.RestclientMapping")
+public class RestClientStubGenerator extends AbstractProcessor {
+	static final String SUFFIX = "_RestClient";
+
+	static final String SERVICES = "META-INF/services/" + RestClientStubFactory.class.getName();
+
+	private final Set<String> generated = new LinkedHashSet<>();
+
+	// 这次编译生成的 Factory 的类名
+	private final Set<String> factories = new TreeSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<TypeElement> contracts = new LinkedHashSet<>();
+		for (Element element : roundEnv.getElementsAnnotatedWith(RestclientMapping.class)) {
+			Element type = element.getKind() == ElementKind.METHOD ? element.getEnclosingElement() : element;
+			if (type.getKind() == ElementKind.INTERFACE) {
+				contracts.add((TypeElement) type);
+			}
+		}
+		for (TypeElement contract : contracts) {
+			if (generated.add(binaryName(contract)) && supported(contract)) {
+				generate(contract);
+			}
+		}
+		if (roundEnv.processingOver()) {
+			writeServices();
+		}
+		return false;
+	}
+
+	private boolean supported(TypeElement contract) {
+		if (!contract.getTypeParameters().isEmpty()) {
+			return false;
+		}
+		for (Element e = contract; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+			if (e.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+		}
+		for (ExecutableElement method : methodsOf(contract)) {
+			if (!method.getTypeParameters().isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 接口上所有的抽象方法和带 RestclientMapping 的默认方法, 包括父接口的; 没有 RestclientMapping 的默认方法不覆盖
+	 */
+	private List<ExecutableElement> methodsOf(TypeElement contract) {
+		List<ExecutableElement> methods = new ArrayList<>();
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(contract))) {
+			if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE
+				|| method.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			if (method.getModifiers().contains(Modifier.ABSTRACT) || method.getAnnotation(RestclientMapping.class) != null) {
+				methods.add(method);
+			}
+		}
+		return methods;
+	}
+
+	private void generate(TypeElement contract) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(contract);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binaryName = binaryName(contract);
+		String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+		String contractName = contract.getQualifiedName().toString();
+		List<ExecutableElement> methods = methodsOf(contract);
+
+		StringBuilder src = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			src.append("package ").append(packageName).append(";\n\n");
+		}
+		src.append("/**\n * ").append(contractName).append(" 的客户端, 由 RestClientStubGenerator 生成, 不要修改\n */\n");
+		src.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+		src.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+		src.append("public final class ").append(simpleName).append(" implements ").append(contractName)
+			.append(", com.seaflower.microcommon.rest.RestClientStub {\n");
+		src.append("\tprivate final com.seaflower.microcommon.rest.RestClientInvoker invoker;\n");
+		for (int i = 0; i < methods.size(); i++) {
+			if (methods.get(i).getAnnotation(RestclientMapping.class) != null) {
+				src.append("\tprivate final com.seaflower.microcommon.rest.RestClientCall call").append(i).append(";\n");
+			}
+		}
+
+		src.append("\n\tpublic ").append(simpleName).append("(com.seaflower.microcommon.rest.RestClientInvoker invoker) {\n");
+		src.append("\t\tthis.invoker = invoker;\n");
+		for (int i = 0; i < methods.size(); i++) {
+			ExecutableElement method = methods.get(i);
+			if (method.getAnnotation(RestclientMapping.class) == null) {
+				continue;
+			}
+			src.append("\t\tthis.call").append(i).append(" = invoker.call(\"").append(method.getSimpleName()).append('"');
+			for (VariableElement param : method.getParameters()) {
+				src.append(", ").append(processingEnv.getTypeUtils().erasure(param.asType())).append(".class");
+			}
+			src.append(");\n");
+		}
+		src.append("\t}\n");
+
+		src.append("\n\t@Override\n\tpublic com.seaflower.microcommon.rest.RestClientInvoker restClientInvoker() {\n")
+			.append("\t\treturn invoker;\n\t}\n");
+
+		for (int i = 0; i < methods.size(); i++) {
+			appendMethod(src, contractName, methods.get(i), i);
+		}
+
+		src.append("\n\t/**\n\t * 注册在 ").append(SERVICES).append(", RestClientInvoker 用 ServiceLoader 找到它\n\t */\n");
+		src.append("\tpublic static final class Factory implements com.seaflower.microcommon.rest.RestClientStubFactory {\n");
+		src.append("\t\t@Override\n\t\tpublic Class<?> contract() {\n\t\t\treturn ").append(contractName)
+			.append(".class;\n\t\t}\n");
+		src.append("\n\t\t@Override\n\t\tpublic Object create(com.seaflower.microcommon.rest.RestClientInvoker invoker) {\n")
+			.append("\t\t\treturn new ").append(simpleName).append("(invoker);\n\t\t}\n\t}\n");
+
+		src.append("\n\t@Override\n\tpublic String toString() {\n")
+			.append("\t\treturn \"").append(simpleName).append("(\" + com.seaflower.microcommon.rest.RestClientInvoker.microServiceNameOf(this) + \")\";\n")
+			.append("\t}\n");
+		src.append("}\n");
+
+		String qualified = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		try (Writer out = processingEnv.getFiler().createSourceFile(qualified, contract).openWriter()) {
+			out.write(src.toString());
+			factories.add(qualified + "$Factory");
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成 " + qualified + " 失败: " + e, contract);
+		}
+	}
+
+	/**
+	 * 和上次编译留下的合并, 只编译了一部分文件的时候其它契约接口的 Factory 还在
+	 */
+	private void writeServices() {
+		if (factories.isEmpty()) {
+			return;
+		}
+		Set<String> all = new TreeSet<>(factories);
+		try {
+			FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+			try (BufferedReader in = new BufferedReader(
+				new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+				in.lines().map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#")).forEach(all::add);
+			}
+		} catch (IOException e) {
+			// 第一次编译, 还没有这个文件
+		}
+
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+			try (Writer out = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+				out.write("# RestClientStubGenerator 生成的客户端类\n");
+				for (String factory : all) {
+					out.write(factory + "\n");
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "写 " + SERVICES + " 失败: " + e);
+		}
+	}
+
+	private void appendMethod(StringBuilder src, String contractName, ExecutableElement method, int index) {
+		TypeMirror returnType = method.getReturnType();
+		src.append("\n\t@Override\n\tpublic ").append(returnType).append(' ').append(method.getSimpleName()).append('(');
+		List<? extends VariableElement> params = method.getParameters();
+		for (int i = 0; i < params.size(); i++) {
+			if (i > 0) {
+				src.append(", ");
+			}
+			src.append(params.get(i).asType()).append(" arg").append(i);
+		}
+		src.append(')');
+		List<? extends TypeMirror> thrown = method.getThrownTypes();
+		for (int i = 0; i < thrown.size(); i++) {
+			src.append(i == 0 ? " throws " : ", ").append(thrown.get(i));
+		}
+		src.append(" {\n");
+
+		if (method.getAnnotation(RestclientMapping.class) == null) {
+			// 和动态代理的行为一样
+			src.append("\t\tthrow new IllegalStateException(\"").append(contractName).append('.')
+				.append(method.getSimpleName()).append(" 没有配置RestclientMapping\");\n\t}\n");
+			return;
+		}
+
+		StringBuilder args = new StringBuilder();
+		if (params.isEmpty()) {
+			// 动态代理没有参数的时候 args 也是 null
+			args.append("null");
+		} else {
+			args.append("new Object[] { ");
+			for (int i = 0; i < params.size(); i++) {
+				args.append(i > 0 ? ", " : "").append("arg").append(i);
+			}
+			args.append(" }");
+		}
+		String call = "call" + index + ".invoke(" + args + ")";
+		if (returnType.getKind() == TypeKind.VOID) {
+			src.append("\t\t").append(call).append(";\n");
+		} else if (returnType.getKind().isPrimitive()) {
+			src.append("\t\treturn (").append(processingEnv.getTypeUtils().boxedClass((PrimitiveType) returnType))
+				.append(") ").append(call).append(";\n");
+		} else {
+			src.append("\t\treturn (").append(returnType).append(") ").append(call).append(";\n");
+		}
+		src.append("\t}\n");
+	}
+
+	private String binaryName(TypeElement type) {
+		return processingEnv.getElementUtils().getBinaryName(type).toString();
+	}
+}
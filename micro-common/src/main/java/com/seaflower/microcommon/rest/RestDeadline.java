@@ -0,0 +1,81 @@
+package com.seaflower.microcommon.rest;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * 调用链的 deadline, 保存在当前线程上。
+ * </p>
+ *
+ * <p>
+ * consumer 端在 deadline 之内发起的调用, 会把剩下的时间（毫秒）放在 X-Micro-Deadline 请求头里面,
+ * 同时作为这次调用的超时时间; provider 端的 RestDeadlineFilter 把请求头还原成当前线程的 deadline,
+ * provider 在这个请求里面再调用别的微服务的时候, 继承的是越来越少的剩余时间, 而不是固定的读超时。
+ * </p>
+ *
+ * <pre>
+ * String hello = RestDeadline.within(Duration.ofMillis(300), () -&gt; helloInterface.hello(name));
+ * </pre>
+ *
+ * <p>
+ * deadline 是 System.nanoTime 的值, 请求头里面只传剩下的时间, 不受机器之间时钟偏差的影响
+ * </p>
+ */
+public final class RestDeadline {
+	public static final String HEADER = "X-Micro-Deadline";
+
+	private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+	private RestDeadline() {
+	}
+
+	/**
+	 * 在 timeout 之内执行 call, 外层已经有更早的 deadline 的话用外层的
+	 */
+	public static <T> T within(Duration timeout, Supplier<T> call) {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		Long outer = DEADLINE.get();
+		if (outer != null && outer - deadline < 0) {
+			deadline = outer;
+		}
+		return call(deadline, call);
+	}
+
+	/**
+	 * 当前线程的 deadline, 没有的话是 null
+	 */
+	public static Long current() {
+		return DEADLINE.get();
+	}
+
+	/**
+	 * 剩下的时间, 没有 deadline 的话是 Long.MAX_VALUE
+	 */
+	public static long remainingNanos() {
+		Long deadline = DEADLINE.get();
+		return deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+	}
+
+	/**
+	 * 用指定的 deadline 执行 call, 结束以后恢复原来的; 切换线程（异步调用, 对冲请求）的时候用来传递 deadline
+	 * @param deadline System.nanoTime 的值, null 是没有 deadline
+	 */
+	public static <T> T call(Long deadline, Supplier<T> call) {
+		Long previous = DEADLINE.get();
+		set(deadline);
+		try {
+			return call.get();
+		} finally {
+			set(previous);
+		}
+	}
+
+	static void set(Long deadline) {
+		if (deadline == null) {
+			DEADLINE.remove();
+		} else {
+			DEADLINE.set(deadline);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.seaflower.microcommon.rest;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * provider 端把请求头 X-Micro-Deadline 还原成当前线程的 RestDeadline, 请求结束以后清除。
+ * </p>
+ *
+ * <p>
+ * 剩下的时间已经用完的请求直接返回 504, consumer 那边已经不会再等这个结果了
+ * </p>
+ */
+@Component
+public class RestDeadlineFilter extends OncePerRequestFilter {
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+		throws ServletException, IOException {
+		String header = request.getHeader(RestDeadline.HEADER);
+		if (header == null) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		long remainingMillis;
+		try {
+			remainingMillis = Long.parseLong(header.trim());
+		} catch (NumberFormatException e) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(), RestDeadline.HEADER + " 不是数字: " + header);
+			return;
+		}
+		if (remainingMillis <= 0) {
+			response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "deadline 已经到了");
+			return;
+		}
+
+		RestDeadline.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingMillis));
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			RestDeadline.set(null);
+		}
+	}
+}
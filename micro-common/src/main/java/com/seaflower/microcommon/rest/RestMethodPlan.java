@@ -0,0 +1,293 @@
+package com.seaflower.microcommon.rest;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * 契约方法的调用计划。
+ * </p>
+ *
+ * <p>
+ * 一个被 RestclientMapping 标记的方法，只在第一次创建代理的时候解析一次注解和参数：
+ * http 方法、path 模板、每个参数怎么绑定（RequestParam / PathVariable / RequestBody）、返回值的类型,
+ * 以及是不是异步的方法（返回 CompletableFuture）, 是不是流式的方法（返回 Stream 或者 Iterator）。
+ * 之后每次调用只需要把 args 绑定到计划上，不再做任何反射。
+ * </p>
+ *
+ * <p>
+ * path 编译成 UriTemplate, query 的参数名称提前编码好, 绑定的时候直接写到当前线程复用的缓冲区里面,
+ * 最后只生成一个字符串。
+ * </p>
+ *
+ * <p>
+ * 计划是不可变的，按契约接口缓存，同一个接口的 List/Map 代理共用同一份计划。
+ * </p>
+ */
+final class RestMethodPlan {
+	// 契约接口 -> (方法 -> 调用计划)
+	private static final Map<Class<?>, Map<Method, RestMethodPlan>> PLANS = new ConcurrentHashMap<>();
+
+	/**
+	 * 参数的绑定方式
+	 */
+	enum Binding {
+		// @RequestParam, 拼到 URL 的 query 上
+		QUERY,
+		// @PathVariable, 填到 path 模板的 {name} 里面
+		PATH,
+		// @RequestBody, 作为 POST 的请求体
+		BODY,
+		// 没有注解的对象, 展开成 query 参数
+		OBJECT
+	}
+
+	private final Method method;
+	private final String methodFullPath;
+	private final HttpMethod httpMethod;
+	private final String path;
+	private final UriTemplate template;
+	private final Binding[] bindings;
+	// 下标和方法参数一一对应, QUERY 是参数名称, 其它的是 null
+	private final String[] names;
+	// QUERY 参数编码以后的名称
+	private final String[] encodedNames;
+	private final int bodyIndex;
+	// 返回 CompletableFuture<T> 的方法是异步的, responseType 是 T
+	private final boolean async;
+	// 返回 Stream<T> 或者 Iterator<T> 的方法是流式的, 这里是 Stream.class 或者 Iterator.class, responseType 是 T
+	private final Class<?> streaming;
+	private final ParameterizedTypeReference<?> responseType;
+	// 没有 RestclientCacheable 的话是 null
+	private final RestclientCacheable cacheable;
+	// RestclientCoalescing 的 GET 方法, 参数相同的并发调用合并成一次
+	private final boolean coalescing;
+	// RestclientBatch 的方法, 没有的话是 null
+	private final RestclientBatch batch;
+	// RestclientHedging 并且是 GET 的方法, 没有的话是 null
+	private final RestclientHedging hedging;
+
+	private RestMethodPlan(Method method, String path, RestclientMapping mapping) {
+		this.method = method;
+		this.methodFullPath = method.getDeclaringClass().getCanonicalName() + "." + method.getName();
+		this.httpMethod = HttpMethod.valueOf(mapping.method().name());
+		this.path = path;
+
+		Parameter[] params = method.getParameters();
+		this.bindings = new Binding[params.length];
+		this.names = new String[params.length];
+		this.encodedNames = new String[params.length];
+		Map<String, Integer> pathVariables = new HashMap<>();
+		int body = -1;
+		for (int i = 0; i < params.length; i++) {
+			Parameter param = params[i];
+			RequestParam requestParam = param.getAnnotation(RequestParam.class);
+			PathVariable pathVar = param.getAnnotation(PathVariable.class);
+			RequestBody requestBody = param.getAnnotation(RequestBody.class);
+			if (Objects.nonNull(requestParam)) {
+				bindings[i] = Binding.QUERY;
+				names[i] = paramName(requestParam);
+				encodedNames[i] = names[i] == null ? null : QueryBinder.encodeName(names[i]);
+			} else if (Objects.nonNull(pathVar)) {
+				bindings[i] = Binding.PATH;
+				pathVariables.putIfAbsent(pathVarName(pathVar), i);
+			} else if (Objects.nonNull(requestBody)) {
+				bindings[i] = Binding.BODY;
+				// 只有 POST 才发送请求体, 找第一个 RequestBody
+				if (body < 0 && mapping.method() == RequestMethod.POST) {
+					body = i;
+				}
+			} else if (BeanUtils.isSimpleProperty(param.getType()) && param.isNamePresent()) {
+				// 和 Spring MVC 一样, 没有注解的简单类型当成 RequestParam, 名称是参数名（需要 -parameters 编译）
+				bindings[i] = Binding.QUERY;
+				names[i] = param.getName();
+				encodedNames[i] = QueryBinder.encodeName(names[i]);
+			} else {
+				bindings[i] = Binding.OBJECT;
+			}
+		}
+		this.template = UriTemplate.compile(path, pathVariables);
+		this.bodyIndex = body;
+		this.async = CompletableFuture.class.equals(method.getReturnType());
+		Class<?> returnType = method.getReturnType();
+		this.streaming = Stream.class.equals(returnType) || Iterator.class.equals(returnType) ? returnType : null;
+		this.responseType = ParameterizedTypeReference.forType(async || streaming != null
+			? typeArgument(method) : method.getGenericReturnType());
+		// 和合并, 对冲一样只对 GET 生效, POST 的结果不能当成相同参数的结果复用
+		this.cacheable = mapping.method() == RequestMethod.GET ? method.getAnnotation(RestclientCacheable.class) : null;
+		this.coalescing = method.isAnnotationPresent(RestclientCoalescing.class)
+			&& mapping.method() == RequestMethod.GET;
+		this.batch = method.getAnnotation(RestclientBatch.class);
+		this.hedging = mapping.method() == RequestMethod.GET ? method.getAnnotation(RestclientHedging.class) : null;
+	}
+
+	/**
+	 * CompletableFuture<T>, Stream<T>, Iterator<T> 中的 T, 没有写泛型的话当成 Object
+	 */
+	private static Type typeArgument(Method method) {
+		Type type = method.getGenericReturnType();
+		if (type instanceof ParameterizedType) {
+			return ((ParameterizedType) type).getActualTypeArguments()[0];
+		}
+		return Object.class;
+	}
+
+	/**
+	 * 获取契约接口所有方法的调用计划，只会解析一次
+	 * @param contract 契约接口
+	 * @return 方法 -> 调用计划, 没有 RestclientMapping 的方法不在里面
+	 */
+	static Map<Method, RestMethodPlan> plansOf(Class<?> contract) {
+		return PLANS.computeIfAbsent(contract, RestMethodPlan::compile);
+	}
+
+	private static Map<Method, RestMethodPlan> compile(Class<?> contract) {
+		// 类上的注解, 为当前类的所有的方法都加一个链接前缀
+		RestclientMapping typeMapping = contract.getAnnotation(RestclientMapping.class);
+		String typePath = typeMapping == null ? "" : mappingPath(typeMapping);
+
+		Map<Method, RestMethodPlan> plans = new HashMap<>();
+		for (Method method : contract.getMethods()) {
+			RestclientMapping mapping = method.getAnnotation(RestclientMapping.class);
+			if (mapping == null) {
+				continue;
+			}
+			plans.put(method, new RestMethodPlan(method, typePath + mappingPath(mapping), mapping));
+		}
+		return Map.copyOf(plans);
+	}
+
+	/**
+	 * 把参数绑定到 path 上，得到 /具体的请求地址?query
+	 * @param args 方法的参数
+	 * @return 请求的 path
+	 */
+	String bindPath(Object[] args) {
+		// 判断是不是合法的 URL
+		if (!path.startsWith("/")) {
+			throw new IllegalArgumentException(methodFullPath + "'s request path is illegal");
+		}
+
+		StringBuilder out = UriTemplate.buffer();
+		try {
+			template.render(out, args);
+			char separator = '?';
+			for (int i = 0; i < bindings.length; i++) {
+				Object value = args[i];
+				if (value == null) {
+					continue;
+				}
+				switch (bindings[i]) {
+					case QUERY:
+						// 没有直接抛出异常，所以这个一定要配
+						if (names[i] == null || names[i].isEmpty()) {
+							throw new IllegalArgumentException(method.getName() + " RequestParam的name属性为空");
+						}
+						separator = QueryBinder.appendParam(out, separator, encodedNames[i], value);
+						break;
+					case OBJECT:
+						// 将一个对象展开成 Get 中的参数
+						separator = QueryBinder.appendObject(out, separator, value);
+						break;
+					default:
+						break;
+				}
+			}
+			return out.toString();
+		} finally {
+			UriTemplate.release(out);
+		}
+	}
+
+	/**
+	 * 获取发送的实体对象, 只有 POST 请求才有
+	 */
+	Object body(Object[] args) {
+		return bodyIndex < 0 ? null : args[bodyIndex];
+	}
+
+	Method method() {
+		return method;
+	}
+
+	String methodFullPath() {
+		return methodFullPath;
+	}
+
+	HttpMethod httpMethod() {
+		return httpMethod;
+	}
+
+	String path() {
+		return path;
+	}
+
+	boolean async() {
+		return async;
+	}
+
+	ParameterizedTypeReference<?> responseType() {
+		return responseType;
+	}
+
+	RestclientCacheable cacheable() {
+		return cacheable;
+	}
+
+	boolean coalescing() {
+		return coalescing;
+	}
+
+	RestclientBatch batch() {
+		return batch;
+	}
+
+	Class<?> streaming() {
+		return streaming;
+	}
+
+	RestclientHedging hedging() {
+		return hedging;
+	}
+
+	private static String mappingPath(RestclientMapping mapping) {
+		if (mapping.path() != null && !mapping.path().isEmpty()) {
+			return mapping.path();
+		}
+		return mapping.value();
+	}
+
+	/**
+	 * 从 RequestParam 中获取 param 名称
+	 */
+	private static String paramName(RequestParam param) {
+		if (param.name() != null && !param.name().isEmpty()) {
+			return param.name();
+		}
+		return param.value();
+	}
+
+	private static String pathVarName(PathVariable pathVar) {
+		if (pathVar.name() != null && !pathVar.name().isEmpty()) {
+			return pathVar.name();
+		}
+		return pathVar.value();
+	}
+}
@@ -0,0 +1,162 @@
+package com.seaflower.microcommon.rest;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * RestclientCacheable 方法的结果缓存, 每个代理对象的每个方法一个, key 是方法的参数。
+ * </p>
+ *
+ * <p>
+ * 有容量上限的并发 LRU: 按照 key 的 hash 分成若干段, 每段是一个 access-order 的 LinkedHashMap,
+ * 各自加锁, 不同段之间没有竞争。段内超过容量的时候淘汰最久没有访问的。
+ * </p>
+ *
+ * <p>
+ * 过期了但是还在 staleWhileRevalidate 之内的结果, 先返回旧的, 同时在后台刷新一次（同一个 key 只刷新一次）。
+ * 异常的结果不缓存。
+ * </p>
+ */
+public class RestResponseCache {
+	private static final int SEGMENTS = 16;
+
+	private final long ttlNanos;
+	private final long staleNanos;
+	private final Executor refresher;
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public RestResponseCache(RestclientCacheable cacheable, Executor refresher) {
+		this.ttlNanos = cacheable.unit().toNanos(cacheable.ttl());
+		this.staleNanos = cacheable.unit().toNanos(cacheable.staleWhileRevalidate());
+		this.refresher = refresher;
+		int perSegment = Math.max(1, (cacheable.maxSize() + SEGMENTS - 1) / SEGMENTS);
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(perSegment);
+		}
+	}
+
+	/**
+	 * 有缓存就返回缓存, 没有的话调用 loader 并把结果缓存起来
+	 * @param args 方法的参数
+	 * @param loader 实际发起 http 调用
+	 */
+	public Object get(Object[] args, Supplier<Object> loader) {
+		ArgumentsKey key = new ArgumentsKey(args);
+		Segment segment = segments[(key.hashCode() ^ (key.hashCode() >>> 16)) & (SEGMENTS - 1)];
+		Entry entry = segment.get(key);
+		if (entry != null) {
+			long age = System.nanoTime() - entry.writtenAt;
+			if (age < ttlNanos) {
+				hits.increment();
+				return entry.value;
+			}
+			if (age < ttlNanos + staleNanos) {
+				staleHits.increment();
+				if (entry.refreshing.compareAndSet(false, true)) {
+					refresher.execute(() -> {
+						try {
+							segment.put(key, new Entry(loader.get()), evictions);
+						} catch (RuntimeException e) {
+							// 刷新失败的话, 下一次访问再试
+							entry.refreshing.set(false);
+						}
+					});
+				}
+				return entry.value;
+			}
+		}
+
+		misses.increment();
+		Object value = loader.get();
+		segment.put(key, new Entry(value), evictions);
+		return value;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long staleHits() {
+		return staleHits.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	private static final class Segment {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LinkedHashMap<ArgumentsKey, Entry> map;
+		private final int capacity;
+
+		Segment(int capacity) {
+			this.capacity = capacity;
+			this.map = new LinkedHashMap<>(16, 0.75f, true);
+		}
+
+		Entry get(ArgumentsKey key) {
+			lock.lock();
+			try {
+				return map.get(key);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void put(ArgumentsKey key, Entry entry, LongAdder evictions) {
+			lock.lock();
+			try {
+				map.put(key, entry);
+				if (map.size() > capacity) {
+					// access-order, 第一个就是最久没有访问的
+					map.remove(map.keySet().iterator().next());
+					evictions.increment();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int size() {
+			lock.lock();
+			try {
+				return map.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static final class Entry {
+		final Object value;
+		final long writtenAt = System.nanoTime();
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		Entry(Object value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.seaflower.microcommon.rest;
+
+import java.lang.annotation.*;
+
+/**
+ * <p>
+ * 和 RestclientMapping 一起使用, 把同一个方法的并发调用合并成一个批量请求。
+ * </p>
+ *
+ * <p>
+ * consumer 端的代理在 windowMillis 之内（或者攒够 maxSize 个）收集调用, 用一个 POST 请求发到
+ * /微服务名称/micro-batch, provider 端的 RestBatchDispatcher 把每一个调用分发给本地的实现（比如 HelloService）,
+ * 按顺序返回结果。调用方看到的还是原来的方法签名。
+ * </p>
+ *
+ * <p>
+ * provider 端只会执行带有这个注解的方法
+ * </p>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RestclientBatch {
+	// 一个批量请求最多包含的调用数
+	int maxSize() default 64;
+
+	// 第一个调用进来以后最多等待的时间
+	long windowMillis() default 2;
+}
@@ -0,0 +1,32 @@
+package com.seaflower.microcommon.rest;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * 和 RestclientMapping 一起使用, 标记这个方法的结果可以在 consumer 端缓存。
+ * 只对 GET 方法生效, 相同参数的调用在 ttl 之内直接返回缓存的结果, 不再发起 http 调用。
+ * </p>
+ *
+ * <pre>
+ * &#64;RestclientCacheable(ttl = 30, maxSize = 10000, staleWhileRevalidate = 10)
+ * &#64;RestclientMapping(path = "/sayHello", method = RequestMethod.GET)
+ * String hello(&#64;RequestParam("name") String name);
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RestclientCacheable {
+	// 缓存的有效时间
+	long ttl() default 60;
+
+	TimeUnit unit() default TimeUnit.SECONDS;
+
+	// 每个代理对象最多缓存多少个不同的参数, 超过以后淘汰最久没有使用的
+	int maxSize() default 1000;
+
+	// 过期以后这段时间之内还可以先返回旧的结果, 同时在后台刷新, 0 是不允许
+	long staleWhileRevalidate() default 0;
+}
@@ -0,0 +1,19 @@
+package com.seaflower.microcommon.rest;
+
+import java.lang.annotation.*;
+
+/**
+ * <p>
+ * 和 RestclientMapping 一起使用, 只对 GET 方法生效。
+ * </p>
+ *
+ * <p>
+ * 同一个代理对象上, 参数相同的并发调用只发起一次 http 调用, 所有的调用方共享这一次的结果（或者异常）。
+ * 缓存过期或者发布以后大量线程同时请求同一个 key 的时候, provider 只会收到一个请求。
+ * </p>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RestclientCoalescing {
+}
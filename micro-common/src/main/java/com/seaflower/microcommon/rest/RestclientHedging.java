@@ -0,0 +1,34 @@
+package com.seaflower.microcommon.rest;
+
+import java.lang.annotation.*;
+
+/**
+ * <p>
+ * 和 RestclientMapping 一起使用, 只对 GET 方法生效。
+ * </p>
+ *
+ * <p>
+ * 第一个请求超过 delayMillis（默认是这个方法最近的 p95）还没有返回的时候, 向另外一个实例再发一个相同的请求,
+ * 哪个先返回就用哪个, 另一个取消。用少量额外的请求换掉偶尔很慢的响应, 降低尾延迟。
+ * 额外的请求数不超过调用数的 maxHedgePercent%。
+ * </p>
+ *
+ * <pre>
+ * &#64;RestclientHedging(maxHedgePercent = 5)
+ * &#64;RestclientMapping(path = "/sayHello", method = RequestMethod.GET)
+ * String hello(&#64;RequestParam("name") String name);
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RestclientHedging {
+	// 等待多久发第二个请求, 0 是用这个方法最近的 p95
+	long delayMillis() default 0;
+
+	// 用 p95 的时候最少等待的时间, 太短的话几乎每个请求都会发两次
+	long minDelayMillis() default 5;
+
+	// 额外的请求数最多是调用数的百分之多少
+	int maxHedgePercent() default 10;
+}
@@ -1,31 +1,45 @@
 package com.seaflower.microcommon.rest;
 
 import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.Ordered;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestTemplate;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 /**
+ * <p>
  * 这个需要在 spring 容器中
+ * </p>
+ *
+ * <p>
+ * micro.rest-client.reference-index=true 并且 classpath 上有 RestClientReferenceIndexer 生成的索引的时候,
+ * 只看 Bean 的类和父类在不在索引里面, 不再反射每个 Bean 的所有字段; 默认还是全部扫描
+ * </p>
  */
+@Slf4j
 @Component
 public class RestclientReferenceProcessor implements BeanPostProcessor, Ordered {
 	private String serverContextPath;
 
+	// 编译期生成的索引, 没有的话是 null
+	private RestClientReferenceIndex index;
+
 	// 服务的前缀
 	private final String SERVER_CONTEXT_PATH = "server.servlet.context-path";
 
@@ -36,7 +50,7 @@ public class RestclientReferenceProcessor implements BeanPostProcessor, Ordered
 	private ApplicationContext applicationContext;
 
 	@Autowired
-	private RestTemplate _restTemplate;
+	private RestClientContext restClientContext;
 
 
 	/**
@@ -53,15 +67,35 @@ public class RestclientReferenceProcessor implements BeanPostProcessor, Ordered
 			contextPath = "";
 		}
 		serverContextPath = "/" +contextPath;
+
+		if (restClientContext.properties().isReferenceIndex()) {
+			index = RestClientReferenceIndex.load(applicationContext.getClassLoader());
+		}
+		if (index != null) {
+			log.info("使用 RestClientReference 的索引, 一共 {} 个字段", index.size());
+		}
 	}
 
 	// 在 Bean 初始化之前进行一些操作
 	// 如果想要下面的方法打断点，应该在这个方法上打断点，然后再启动项目
 	@Override
 	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		if (index != null) {
+			// 只是按类名查一下索引, 大部分 Bean 都不在里面, 不会反射字段
+			for (Class<?> c = bean.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+				for (RestClientReferenceIndex.IndexedField indexed : index.fieldsOf(c.getName())) {
+					Field field = ReflectionUtils.findField(c, indexed.name());
+					if (field != null) {
+						processRestClientField(bean, beanName, field, indexed.contract());
+					}
+				}
+			}
+			return bean;
+		}
+
 		// 对给定的 Bean 的字段，执行指定的回调
 		ReflectionUtils.doWithFields(bean.getClass(), field -> {
-			processRestClientField(bean, field);
+			processRestClientField(bean, beanName, field, null);
 		});
 
 		return bean;
@@ -74,7 +108,8 @@ public class RestclientReferenceProcessor implements BeanPostProcessor, Ordered
 	}
 
 	// 判断 Bean 中的每一个 field，处理带有 @RestClientReference 注解的字段
-	private void processRestClientField(Object bean, Field field) {
+	// indexedContract 是索引中记录的契约接口, 不是按索引处理的时候是 null
+	private void processRestClientField(Object bean, String beanName, Field field, String indexedContract) {
 		try {
 			RestClientReference reference = field.getAnnotation(RestClientReference.class);
 			if (Objects.isNull(reference)) {
@@ -90,6 +125,10 @@ public class RestclientReferenceProcessor implements BeanPostProcessor, Ordered
 			}
 
 			Class consumerInterface = reference.consumerInterface();
+			if (indexedContract != null) {
+				// 索引里面已经按照下面同样的规则算好了
+				consumerInterface = indexedContract(bean, field, indexedContract, consumerInterface);
+			}
 			// 没有指定 consumerInterface 的话，我们直接从 field 中获取我们要代理的类的类型 <class>
 			if (consumerInterface.equals(Void.class)) {
 				consumerInterface = field.getType(); // 这个就是 Bean 的类型, 比如 PexService(接口)
@@ -121,21 +160,63 @@ public class RestclientReferenceProcessor implements BeanPostProcessor, Ordered
 			// 针对不同类型的 field 类型的, 我们设置不同的值
 			if (List.class.isAssignableFrom(field.getType())) {
 				ReflectionUtils.setField(field, bean, RestClientInvoker.createListProxys(
-					Arrays.asList(microServiceNames), serverContextPath, _restTemplate, consumerInterface));
+					Arrays.asList(microServiceNames), serverContextPath, restClientContext, consumerInterface));
 			} else if (Map.class.isAssignableFrom(field.getType())) {
 				ReflectionUtils.setField(field, bean, RestClientInvoker.createMapProxys(
-					Arrays.asList(microServiceNames), serverContextPath, _restTemplate, consumerInterface));
+					Arrays.asList(microServiceNames), serverContextPath, restClientContext, consumerInterface));
 			} else {
-				ReflectionUtils.setField(field, bean, RestClientInvoker.createProxy(microServiceNames[0],
-					serverContextPath, _restTemplate, consumerInterface));
+				String localBean = reference.preferLocal()
+					|| restClientContext.properties().preferLocal(microServiceNames[0])
+					? localBeanOf(consumerInterface, beanName) : null;
+				if (localBean != null) {
+					// 实现就在这个进程里面, 直接调用本地的 Bean
+					log.info("{}.{} 使用本地的 {}", bean.getClass().getSimpleName(), field.getName(), localBean);
+					ReflectionUtils.setField(field, bean, RestClientLocalInvoker.createProxy(microServiceNames[0],
+						consumerInterface, () -> applicationContext.getBean(localBean)));
+				} else {
+					ReflectionUtils.setField(field, bean, RestClientInvoker.createProxy(microServiceNames[0],
+						serverContextPath, restClientContext, consumerInterface));
+				}
 			}
 
+		} catch (BeansException e) {
+			throw e;
 		} catch (Exception e) {
-			throw new RuntimeException();
+			throw new BeanCreationException(beanName, "注入 " + bean.getClass().getName() + "." + field.getName()
+				+ " 失败: " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * 索引是编译的时候生成的, 契约接口改名或者删掉以后没有重新编译的话, 索引里面的类已经不存在了,
+	 * 这个时候不用索引的结果, 按注解和字段的类型重新算
+	 */
+	private Class indexedContract(Object bean, Field field, String indexedContract, Class consumerInterface) {
+		try {
+			return ClassUtils.forName(indexedContract, bean.getClass().getClassLoader());
+		} catch (ClassNotFoundException | LinkageError e) {
+			log.warn("RestClientReference 的索引过期了, {}.{} 的契约接口 {} 不存在, 请重新编译",
+				bean.getClass().getName(), field.getName(), indexedContract);
+			return consumerInterface;
+		}
+	}
 
+	/**
+	 * 容器中实现了契约接口的 Bean, 不算正在处理的 Bean 自己; 没有或者有多个的时候返回 null, 还是调用远端。
+	 * 只看 Bean 的定义, 不会提前创建 Bean
+	 */
+	private String localBeanOf(Class<?> contract, String beanName) {
+		List<String> candidates = new ArrayList<>();
+		for (String name : applicationContext.getBeanNamesForType(contract, true, false)) {
+			if (!name.equals(beanName)) {
+				candidates.add(name);
+			}
+		}
+		if (candidates.size() > 1) {
+			log.warn("{} 有多个本地的实现 {}, 还是调用远端", contract.getName(), candidates);
+		}
+		return candidates.size() == 1 ? candidates.get(0) : null;
+	}
 
 		/**
 		 * 指定 Spring 容器中 Bean 的执行顺序。LOWEST_PRECEDENCE 是最低优先级
@@ -0,0 +1,32 @@
+package com.seaflower.microcommon.rest;
+
+import java.util.Map;
+
+/**
+ * scatter-gather 在 deadline 之内没有拿到足够的成功结果
+ */
+public class ScatterGatherException extends RuntimeException {
+	private final Map<String, ?> results;
+	private final Map<String, Throwable> errors;
+
+	public ScatterGatherException(String message, Map<String, ?> results, Map<String, Throwable> errors) {
+		super(message);
+		this.results = results;
+		this.errors = errors;
+		errors.values().forEach(this::addSuppressed);
+	}
+
+	/**
+	 * 已经成功的结果, key 是微服务名称
+	 */
+	public Map<String, ?> getResults() {
+		return results;
+	}
+
+	/**
+	 * 失败的原因, key 是微服务名称, 超时没有返回的不在里面
+	 */
+	public Map<String, Throwable> getErrors() {
+		return errors;
+	}
+}
@@ -0,0 +1,100 @@
+package com.seaflower.microcommon.rest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * RestclientCoalescing 方法的请求合并, 每个代理对象的每个方法一个。
+ * </p>
+ *
+ * <p>
+ * 第一个调用方把自己的 future 放进 inFlight, 然后真正发起调用; 之后参数相同的调用方发现已经有 future 了,
+ * 就等着这个 future。调用结束以后从 inFlight 中删除, 下一次调用重新发起, 所以这里不是缓存。
+ * </p>
+ *
+ * <p>
+ * 等待的调用方只等到自己的 deadline, 发起调用的那个调用方的 deadline 可能比自己的晚得多
+ * </p>
+ */
+public class SingleFlight {
+	private final String microServiceName;
+	private final String methodName;
+	private final Map<ArgumentsKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder shared = new LongAdder();
+
+	public SingleFlight(String microServiceName, String methodName) {
+		this.microServiceName = microServiceName;
+		this.methodName = methodName;
+	}
+
+	/**
+	 * @param args 方法的参数
+	 * @param loader 实际发起 http 调用
+	 */
+	public Object execute(Object[] args, Supplier<Object> loader) {
+		ArgumentsKey key = new ArgumentsKey(args);
+		CompletableFuture<Object> mine = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+		if (existing != null) {
+			shared.increment();
+			return await(existing);
+		}
+
+		executed.increment();
+		try {
+			Object value = loader.get();
+			mine.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	private Object await(CompletableFuture<Object> existing) {
+		long remaining = RestDeadline.remainingNanos();
+		try {
+			return remaining == Long.MAX_VALUE ? existing.get()
+				: existing.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			// 只是不再等了, 发起调用的调用方还在等它自己的结果
+			throw new DeadlineExceededException(microServiceName, methodName + " 等待合并的请求超过了 deadline", e);
+		} catch (ExecutionException e) {
+			// 和发起调用的线程抛出同一个异常
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("合并请求的等待被中断", e);
+		}
+	}
+
+	/**
+	 * 实际发起的调用次数
+	 */
+	public long executed() {
+		return executed.sum();
+	}
+
+	/**
+	 * 共享了别人结果的调用次数
+	 */
+	public long shared() {
+		return shared.sum();
+	}
+}
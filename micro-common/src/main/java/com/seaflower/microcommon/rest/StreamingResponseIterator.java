@@ -0,0 +1,80 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * 流式方法（返回 Stream 或者 Iterator）的结果, 一边从响应里面读一边解码。
+ * 响应可以是 NDJSON（每行一个 JSON）, 也可以是普通的 JSON 数组。
+ * </p>
+ *
+ * <p>
+ * 读到最后一个元素, 解码失败, 或者调用 close 的时候关闭响应, 归还连接。
+ * 没有读完就不用的话一定要 close, 否则连接一直被占用。
+ * </p>
+ */
+final class StreamingResponseIterator<T> implements Iterator<T>, AutoCloseable {
+	private final String microServiceName;
+	private final String requestPath;
+	private final MappingIterator<T> values;
+	private final ClientHttpResponse response;
+	private boolean closed;
+
+	StreamingResponseIterator(String microServiceName, String requestPath, MappingIterator<T> values,
+							  ClientHttpResponse response) {
+		this.microServiceName = microServiceName;
+		this.requestPath = requestPath;
+		this.values = values;
+		this.response = response;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		try {
+			if (values.hasNextValue()) {
+				return true;
+			}
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw new RemoteCallException(microServiceName, requestPath + " 读取流式响应失败: " + e.getMessage(), e);
+		}
+		close();
+		return false;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		try {
+			return values.nextValue();
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw new RemoteCallException(microServiceName, requestPath + " 读取流式响应失败: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			values.close();
+		} catch (IOException e) {
+			// 连接会被丢弃, 不影响结果
+		} finally {
+			response.close();
+		}
+	}
+}
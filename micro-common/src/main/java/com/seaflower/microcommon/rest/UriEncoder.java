@@ -0,0 +1,85 @@
+package com.seaflower.microcommon.rest;
+
+/**
+ * <p>
+ * 直接往 StringBuilder 里面写的百分号编码, 不经过 URLEncoder（每次都要查 Charset, 还会创建中间的字符串和字节数组）。
+ * </p>
+ *
+ * <p>
+ * query 的编码和 URLEncoder.encode(s, UTF_8) 的结果完全一样（空格是 '+'）;
+ * path 的编码按照 RFC 3986 的 segment, '/' 也会编码, 一个路径参数只能是一段。
+ * </p>
+ */
+final class UriEncoder {
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	// ASCII 中不需要编码的字符
+	private static final boolean[] QUERY_SAFE = new boolean[128];
+	private static final boolean[] PATH_SAFE = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			QUERY_SAFE[c] = PATH_SAFE[c] = true;
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			QUERY_SAFE[c] = PATH_SAFE[c] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			QUERY_SAFE[c] = PATH_SAFE[c] = true;
+		}
+		// 和 URLEncoder 一样
+		for (char c : ".-*_".toCharArray()) {
+			QUERY_SAFE[c] = true;
+		}
+		// unreserved, sub-delims, ':' 和 '@'
+		for (char c : "-._~!$&'()*+,;=:@".toCharArray()) {
+			PATH_SAFE[c] = true;
+		}
+	}
+
+	private UriEncoder() {
+	}
+
+	static void appendQuery(StringBuilder out, CharSequence s) {
+		append(out, s, QUERY_SAFE, true);
+	}
+
+	static void appendPathSegment(StringBuilder out, CharSequence s) {
+		append(out, s, PATH_SAFE, false);
+	}
+
+	private static void append(StringBuilder out, CharSequence s, boolean[] safe, boolean spaceAsPlus) {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				if (safe[c]) {
+					out.append(c);
+				} else if (c == ' ' && spaceAsPlus) {
+					out.append('+');
+				} else {
+					percent(out, c);
+				}
+			} else if (c < 0x800) {
+				percent(out, 0xC0 | (c >> 6));
+				percent(out, 0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				percent(out, 0xF0 | (cp >> 18));
+				percent(out, 0x80 | ((cp >> 12) & 0x3F));
+				percent(out, 0x80 | ((cp >> 6) & 0x3F));
+				percent(out, 0x80 | (cp & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// 不成对的代理字符, 和 String.getBytes(UTF_8) 一样当成 '?'
+				percent(out, '?');
+			} else {
+				percent(out, 0xE0 | (c >> 12));
+				percent(out, 0x80 | ((c >> 6) & 0x3F));
+				percent(out, 0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private static void percent(StringBuilder out, int b) {
+		out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+	}
+}
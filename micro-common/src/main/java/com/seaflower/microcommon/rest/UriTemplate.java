@@ -0,0 +1,103 @@
+package com.seaflower.microcommon.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 编译好的 path 模板: 字面量和变量交替, 变量直接对应到方法参数的下标。
+ * 每次调用按顺序把字面量和编码以后的参数写到缓冲区里面, 不需要在字符串里面查找和替换 {name}。
+ * </p>
+ *
+ * <p>
+ * 变量可以写成 {name} 或者 {name:正则}, 正则只是给服务端用的, 这里忽略。
+ * 没有对应 PathVariable 参数的变量保持原样。
+ * </p>
+ */
+final class UriTemplate {
+	// 缓冲区超过这个长度就不再复用, 避免一次很长的 URL 一直占着内存
+	private static final int MAX_BUFFER = 4096;
+	private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	// 比变量多一个, literals[i] 在 slots[i] 前面
+	private final String[] literals;
+	private final int[] slots;
+	private final String[] slotNames;
+
+	private UriTemplate(String[] literals, int[] slots, String[] slotNames) {
+		this.literals = literals;
+		this.slots = slots;
+		this.slotNames = slotNames;
+	}
+
+	/**
+	 * @param path RestclientMapping 的完整路径
+	 * @param pathVariables PathVariable 的名称 -> 参数的下标
+	 */
+	static UriTemplate compile(String path, Map<String, Integer> pathVariables) {
+		List<String> literals = new ArrayList<>();
+		List<Integer> slots = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < path.length()) {
+			int open = path.indexOf('{', i);
+			int close = open < 0 ? -1 : path.indexOf('}', open);
+			if (close < 0) {
+				literal.append(path, i, path.length());
+				break;
+			}
+			String variable = path.substring(open + 1, close);
+			int colon = variable.indexOf(':');
+			String name = (colon < 0 ? variable : variable.substring(0, colon)).trim();
+			Integer index = pathVariables.get(name);
+			literal.append(path, i, open);
+			if (index == null) {
+				literal.append(path, open, close + 1);
+			} else {
+				literals.add(literal.toString());
+				literal.setLength(0);
+				slots.add(index);
+				names.add(name);
+			}
+			i = close + 1;
+		}
+		literals.add(literal.toString());
+		return new UriTemplate(literals.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray(),
+			names.toArray(new String[0]));
+	}
+
+	/**
+	 * 把 path 写到 out 里面, 路径参数按照 path segment 编码
+	 */
+	void render(StringBuilder out, Object[] args) {
+		out.append(literals[0]);
+		for (int i = 0; i < slots.length; i++) {
+			Object value = args[slots[i]];
+			String str = value == null ? "" : value.toString();
+			if (str.isEmpty()) {
+				throw new IllegalArgumentException("路径参数 " + slotNames[i] + " 不能为空");
+			}
+			UriEncoder.appendPathSegment(out, str);
+			out.append(literals[i + 1]);
+		}
+	}
+
+	/**
+	 * 当前线程复用的缓冲区, 用完要调用 release。
+	 * 参数的 toString 里面又发起调用的话, 缓冲区还在使用, 这时候给一个新的
+	 */
+	static StringBuilder buffer() {
+		StringBuilder buffer = BUFFER.get();
+		return buffer.length() == 0 ? buffer : new StringBuilder(256);
+	}
+
+	static void release(StringBuilder buffer) {
+		if (buffer.capacity() > MAX_BUFFER) {
+			BUFFER.remove();
+		} else {
+			buffer.setLength(0);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.seaflower.microcommon.rest;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * 通过反射创建虚拟线程的线程池, 代码还是按 Java 17 编译。
+ * </p>
+ *
+ * <p>
+ * Java 21 以下没有虚拟线程（19, 20 没有打开预览的时候也不能用）, newExecutor 返回 null, 调用方用原来的线程池
+ * </p>
+ */
+final class VirtualThreads {
+	// Thread.ofVirtual(), Executors.newThreadPerTaskExecutor(ThreadFactory), 没有的话是 null
+	private static final Method OF_VIRTUAL;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method newExecutor = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (NoSuchMethodException e) {
+			ofVirtual = null;
+			newExecutor = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+	}
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * 每个任务一个虚拟线程的线程池, 线程的名称是 prefix 加上序号
+	 * @return 当前的 JVM 不支持的话返回 null
+	 */
+	static ExecutorService newExecutor(String prefix) {
+		if (OF_VIRTUAL == null) {
+			return null;
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+			ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Java 19, 20 没有打开预览的时候抛出 UnsupportedOperationException
+			return null;
+		}
+	}
+}
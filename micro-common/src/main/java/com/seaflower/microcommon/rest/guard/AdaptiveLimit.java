@@ -0,0 +1,100 @@
+package com.seaflower.microcommon.rest.guard;
+
+import com.seaflower.microcommon.RestClientProperties;
+
+/**
+ * <p>
+ * 按调用的往返时间自动调整的并发上限（gradient 算法）。
+ * </p>
+ *
+ * <p>
+ * 用两个指数移动平均跟踪往返时间: 短期的反映最近几十次调用, 长期的是微服务正常时候的基线。
+ * 短期的没有超过基线的 rttTolerance 倍的时候, 上限每次增加大约 sqrt(limit) 的排队余量;
+ * 超过的时候按 基线 * rttTolerance / 短期 的比例缩小, 最多一次缩小一半。
+ * 调用失败（超时、连接失败、5xx）说明微服务已经过载了, 上限直接乘以 BACKOFF_RATIO。
+ * 上限在 minLimit 和舱壁的 maxConcurrentCalls 之间。
+ * </p>
+ *
+ * <p>
+ * 调用方自己用不满上限的时候（正在进行的调用数不到上限的一半）不增加,
+ * 否则空闲一段时间以后上限会涨到最大, 流量一来又把微服务压垮。
+ * </p>
+ *
+ * <p>
+ * 舱壁每次判断只读一个 volatile 的上限; 每个调用结束的时候在锁里面更新, 锁里面只有几次浮点运算。
+ * </p>
+ */
+public final class AdaptiveLimit {
+	// 短期平均大约是最近 10 次调用, 长期平均大约是最近 500 次
+	private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+	private static final double LONG_ALPHA = 2.0 / (500 + 1);
+	// 每次只向新的上限移动这么多, 避免一两个慢调用让上限大幅波动
+	private static final double SMOOTHING = 0.2;
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double rttTolerance;
+
+	// 下面的字段只在 this 的锁里面修改
+	private double limit;
+	private double shortRtt;
+	private double longRtt;
+	private volatile int current;
+
+	/**
+	 * @param maxLimit 上限的最大值, 就是舱壁的 maxConcurrentCalls
+	 */
+	public AdaptiveLimit(RestClientProperties.AdaptiveLimitSettings settings, int maxLimit) {
+		this.maxLimit = Math.max(1, maxLimit);
+		this.minLimit = Math.max(1, Math.min(settings.getMinLimit(), this.maxLimit));
+		this.rttTolerance = Math.max(1.0, settings.getRttTolerance());
+		this.limit = clamp(settings.getInitialLimit());
+		this.current = (int) limit;
+	}
+
+	/**
+	 * 当前的并发上限
+	 */
+	public int get() {
+		return current;
+	}
+
+	/**
+	 * 记录一次结束的调用
+	 * @param rttNanos 调用的时间
+	 * @param inflight 这次调用结束之前正在进行的调用数, 包括它自己
+	 * @param dropped 调用是不是因为微服务过载失败的
+	 */
+	public synchronized void onSample(long rttNanos, int inflight, boolean dropped) {
+		if (dropped) {
+			limit = clamp(limit * BACKOFF_RATIO);
+			current = (int) limit;
+			return;
+		}
+		double rtt = Math.max(1, rttNanos);
+		if (longRtt == 0) {
+			shortRtt = rtt;
+			longRtt = rtt;
+		} else {
+			shortRtt += (rtt - shortRtt) * SHORT_ALPHA;
+			longRtt += (rtt - longRtt) * LONG_ALPHA;
+		}
+		// 微服务从变慢里面恢复以后, 基线还停在高位, 让它快一点降下来, 否则要很久才能发现下一次变慢
+		if (longRtt > 2 * shortRtt) {
+			longRtt *= 0.95;
+		}
+		if (inflight < limit / 2) {
+			return;
+		}
+
+		double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / shortRtt));
+		double next = limit * gradient + Math.sqrt(limit);
+		limit = clamp(limit * (1 - SMOOTHING) + next * SMOOTHING);
+		current = (int) limit;
+	}
+
+	private double clamp(double value) {
+		return Math.max(minLimit, Math.min(maxLimit, value));
+	}
+}
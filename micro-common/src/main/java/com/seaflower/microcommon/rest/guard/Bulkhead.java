@@ -0,0 +1,132 @@
+package com.seaflower.microcommon.rest.guard;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * 舱壁: 限制一个微服务同时进行的调用数。
+ * </p>
+ *
+ * <p>
+ * 一个微服务变慢的时候, 调用它的线程最多占用 maxConcurrentCalls 个, 其余的调用等待 maxWait 以后失败,
+ * 不会把调用方的线程全部拖住, 影响其它不相关的接口。
+ * </p>
+ *
+ * <p>
+ * 有 AdaptiveLimit 的时候上限跟着调用的往返时间变化, maxConcurrentCalls 只是上限的最大值。
+ * 拿许可只是对正在进行的调用数做一次 CAS, 只有需要等待的调用才用到锁。
+ * </p>
+ */
+public final class Bulkhead {
+	private final int maxConcurrentCalls;
+	private final long maxWaitNanos;
+	// 没有的话上限固定是 maxConcurrentCalls
+	private final AdaptiveLimit adaptiveLimit;
+	private final AtomicInteger active = new AtomicInteger();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	// 正在等待的调用数, 没有的话 release 不用拿锁
+	private volatile int waiters;
+
+	public Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+		this(maxConcurrentCalls, maxWait, null);
+	}
+
+	public Bulkhead(int maxConcurrentCalls, Duration maxWait, AdaptiveLimit adaptiveLimit) {
+		this.maxConcurrentCalls = Math.max(1, maxConcurrentCalls);
+		this.maxWaitNanos = maxWait.toNanos();
+		this.adaptiveLimit = adaptiveLimit;
+	}
+
+	/**
+	 * @return 拿到许可返回 true, 调用结束以后一定要 release
+	 */
+	public boolean tryAcquire() {
+		if (tryIncrement()) {
+			return true;
+		}
+		if (maxWaitNanos <= 0) {
+			return false;
+		}
+		lock.lock();
+		waiters++;
+		try {
+			long remaining = maxWaitNanos;
+			while (!tryIncrement()) {
+				if (remaining <= 0) {
+					return false;
+				}
+				// 自适应的上限变大的时候没有通知, 最多等到超时再检查一次
+				remaining = released.awaitNanos(remaining);
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			waiters--;
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 调用没有发出去就结束了, 不记录往返时间
+	 */
+	public void release() {
+		active.decrementAndGet();
+		if (waiters > 0) {
+			lock.lock();
+			try {
+				released.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 调用结束, 有自适应的上限的话按这次调用的时间调整
+	 * @param dropped 调用是不是因为微服务过载失败的
+	 */
+	public void release(long rttNanos, boolean dropped) {
+		if (adaptiveLimit != null) {
+			adaptiveLimit.onSample(rttNanos, active.get(), dropped);
+		}
+		release();
+	}
+
+	private boolean tryIncrement() {
+		int limit = getLimit();
+		for (;;) {
+			int current = active.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (active.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	public int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	/**
+	 * 当前的上限, 没有自适应的话就是 maxConcurrentCalls
+	 */
+	public int getLimit() {
+		return adaptiveLimit == null ? maxConcurrentCalls : adaptiveLimit.get();
+	}
+
+	/**
+	 * 正在进行的调用数
+	 */
+	public int getActiveCalls() {
+		return active.get();
+	}
+}
@@ -0,0 +1,154 @@
+package com.seaflower.microcommon.rest.guard;
+
+import com.seaflower.microcommon.RestClientProperties;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * 一个微服务的熔断器。
+ * </p>
+ *
+ * <p>
+ * 关闭状态下用一个环形数组记录最近 slidingWindowSize 次调用的结果,
+ * 失败率或者慢调用率达到阈值就打开, 打开状态的调用直接失败;
+ * 过了 openDuration 进入半开状态, 放过去 halfOpenCalls 个试探的调用,
+ * 全部结束以后按同样的阈值决定关闭还是重新打开。
+ * </p>
+ *
+ * <p>
+ * 关闭状态的 tryAcquire 只读一个 volatile 的状态, 没有锁;
+ * 记录结果的时候在锁里面更新计数, 锁里面只有几次加减法。
+ * </p>
+ */
+public final class CircuitBreaker {
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final byte FAILURE = 1;
+	private static final byte SLOW = 2;
+
+	private final boolean enabled;
+	private final int minimumCalls;
+	private final int failureRateThreshold;
+	private final long slowCallNanos;
+	private final int slowCallRateThreshold;
+	private final long openNanos;
+	private final int halfOpenCalls;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	// 下面的字段只在 lock 里面修改
+	private final byte[] window;
+	private int next;
+	private int calls;
+	private int failures;
+	private int slowCalls;
+	private int halfOpenPermits;
+	private volatile State state = State.CLOSED;
+	private volatile long openedAt;
+
+	public CircuitBreaker(RestClientProperties.CircuitBreakerSettings settings) {
+		this.enabled = settings.isEnabled();
+		this.window = new byte[Math.max(1, settings.getSlidingWindowSize())];
+		this.minimumCalls = Math.max(1, Math.min(settings.getMinimumCalls(), window.length));
+		this.failureRateThreshold = settings.getFailureRateThreshold();
+		this.slowCallNanos = settings.getSlowCallDuration().toNanos();
+		this.slowCallRateThreshold = settings.getSlowCallRateThreshold();
+		this.openNanos = settings.getOpenDuration().toNanos();
+		this.halfOpenCalls = Math.max(1, Math.min(settings.getHalfOpenCalls(), window.length));
+	}
+
+	/**
+	 * @return 可以发起调用返回 true, 调用结束以后一定要 onResult
+	 */
+	public boolean tryAcquire() {
+		if (!enabled || state == State.CLOSED) {
+			return true;
+		}
+		lock.lock();
+		try {
+			if (state == State.OPEN) {
+				if (System.nanoTime() - openedAt < openNanos) {
+					return false;
+				}
+				transition(State.HALF_OPEN);
+			}
+			if (state == State.HALF_OPEN) {
+				if (halfOpenPermits >= halfOpenCalls) {
+					return false;
+				}
+				halfOpenPermits++;
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 记录一次调用的结果
+	 * @param elapsedNanos 调用的耗时
+	 * @param failure 是否失败, 调用方自己的错误（比如 4xx）不算失败
+	 */
+	public void onResult(long elapsedNanos, boolean failure) {
+		if (!enabled) {
+			return;
+		}
+		byte outcome = (byte) ((failure ? FAILURE : 0) | (elapsedNanos >= slowCallNanos ? SLOW : 0));
+		lock.lock();
+		try {
+			// 打开之前发出去的调用, 结果不再统计
+			if (state == State.OPEN) {
+				return;
+			}
+			record(outcome);
+			if (state == State.HALF_OPEN) {
+				if (calls >= halfOpenCalls) {
+					transition(exceeded() ? State.OPEN : State.CLOSED);
+				}
+			} else if (calls >= minimumCalls && exceeded()) {
+				transition(State.OPEN);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	private void record(byte outcome) {
+		if (calls == window.length) {
+			byte old = window[next];
+			failures -= old & FAILURE;
+			slowCalls -= (old & SLOW) >> 1;
+		} else {
+			calls++;
+		}
+		window[next] = outcome;
+		next = (next + 1) % window.length;
+		failures += outcome & FAILURE;
+		slowCalls += (outcome & SLOW) >> 1;
+	}
+
+	private boolean exceeded() {
+		return failures * 100 >= failureRateThreshold * calls || slowCalls * 100 >= slowCallRateThreshold * calls;
+	}
+
+	/**
+	 * 状态变化的时候清空窗口, 半开状态只统计试探的调用
+	 */
+	private void transition(State to) {
+		next = 0;
+		calls = 0;
+		failures = 0;
+		slowCalls = 0;
+		halfOpenPermits = 0;
+		if (to == State.OPEN) {
+			openedAt = System.nanoTime();
+		}
+		state = to;
+	}
+}
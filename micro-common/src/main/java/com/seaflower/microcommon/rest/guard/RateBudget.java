@@ -0,0 +1,65 @@
+package com.seaflower.microcommon.rest.guard;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * 按比例限制额外请求（对冲, 重试）的预算。
+ * </p>
+ *
+ * <p>
+ * 每次正常的调用存入 ratePercent/100 个令牌, 每次额外的请求取出一个令牌, 最多攒 maxTokens 个。
+ * 长期来看额外的请求不会超过调用数的 ratePercent%, 微服务故障的时候也不会成倍地放大请求。
+ * </p>
+ */
+public final class RateBudget {
+	// 以 1/100 个令牌为单位
+	private static final int UNIT = 100;
+
+	private final int ratePercent;
+	private final int maxBalance;
+	private final AtomicInteger balance;
+
+	public RateBudget(int ratePercent, int maxTokens) {
+		this.ratePercent = Math.max(0, ratePercent);
+		this.maxBalance = Math.max(1, maxTokens) * UNIT;
+		this.balance = new AtomicInteger(this.ratePercent == 0 ? 0 : maxBalance);
+	}
+
+	/**
+	 * 一次正常的调用
+	 */
+	public void deposit() {
+		if (ratePercent == 0) {
+			return;
+		}
+		int current;
+		do {
+			current = balance.get();
+			if (current >= maxBalance) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(maxBalance, current + ratePercent)));
+	}
+
+	/**
+	 * @return 预算够的话取出一个令牌, 返回 true
+	 */
+	public boolean tryWithdraw() {
+		int current;
+		do {
+			current = balance.get();
+			if (current < UNIT) {
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - UNIT));
+		return true;
+	}
+
+	/**
+	 * 剩下的令牌数
+	 */
+	public double getTokens() {
+		return balance.get() / (double) UNIT;
+	}
+}
@@ -0,0 +1,54 @@
+package com.seaflower.microcommon.rest.lb;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * 按照观察到的响应时间加权随机, 权重是 1 / EWMA, 响应越快的实例分到的请求越多。
+ * </p>
+ *
+ * <p>
+ * 还没有请求过的实例（EWMA 是 0）按照目前最快的实例算, 保证新的实例也能分到请求
+ * </p>
+ */
+public class LatencyWeightedLoadBalancer implements LoadBalancer {
+	// 1ms, 避免权重太大
+	private static final double MIN_NANOS = 1_000_000;
+
+	@Override
+	public ServiceInstance choose(List<ServiceInstance> instances) {
+		int size = instances.size();
+		if (size == 1) {
+			return instances.get(0);
+		}
+
+		double fastest = Double.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			double ewma = instances.get(i).getEwmaNanos();
+			if (ewma > 0 && ewma < fastest) {
+				fastest = ewma;
+			}
+		}
+		if (fastest == Double.MAX_VALUE) {
+			fastest = MIN_NANOS;
+		}
+
+		double[] weights = new double[size];
+		double total = 0;
+		for (int i = 0; i < size; i++) {
+			double ewma = instances.get(i).getEwmaNanos();
+			weights[i] = 1.0 / Math.max(MIN_NANOS, ewma > 0 ? ewma : fastest);
+			total += weights[i];
+		}
+
+		double r = ThreadLocalRandom.current().nextDouble(total);
+		for (int i = 0; i < size; i++) {
+			r -= weights[i];
+			if (r < 0) {
+				return instances.get(i);
+			}
+		}
+		return instances.get(size - 1);
+	}
+}
@@ -0,0 +1,37 @@
+package com.seaflower.microcommon.rest.lb;
+
+import java.util.List;
+
+/**
+ * 负载均衡的策略, 从一个微服务的所有实例中选一个。每个微服务有自己的 LoadBalancer 对象
+ */
+public interface LoadBalancer {
+	/**
+	 * @param instances 微服务的所有实例, 不为空
+	 * @return 这次请求使用的实例
+	 */
+	ServiceInstance choose(List<ServiceInstance> instances);
+
+	/**
+	 * 负载均衡策略的类型, 可以在 micro.rest-client.load-balancer 中配置
+	 */
+	enum Strategy {
+		// 轮询
+		ROUND_ROBIN,
+		// 随机选两个, 用正在进行的请求数少的那个
+		POWER_OF_TWO_CHOICES,
+		// 按照响应时间的倒数加权随机
+		LATENCY_WEIGHTED;
+
+		public LoadBalancer create() {
+			switch (this) {
+				case POWER_OF_TWO_CHOICES:
+					return new PowerOfTwoChoicesLoadBalancer();
+				case LATENCY_WEIGHTED:
+					return new LatencyWeightedLoadBalancer();
+				default:
+					return new RoundRobinLoadBalancer();
+			}
+		}
+	}
+}
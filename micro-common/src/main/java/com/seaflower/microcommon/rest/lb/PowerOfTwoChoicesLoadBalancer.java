@@ -0,0 +1,38 @@
+package com.seaflower.microcommon.rest.lb;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * power-of-two-choices: 随机选两个不同的实例, 用正在进行的请求数少的那个, 一样多的话用响应时间短的那个。
+ * </p>
+ *
+ * <p>
+ * 比起遍历所有的实例找最小值, 它不需要全局的视图, 也不会让所有的请求同时涌向同一个"最空闲"的实例
+ * </p>
+ */
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+
+	@Override
+	public ServiceInstance choose(List<ServiceInstance> instances) {
+		int size = instances.size();
+		if (size == 1) {
+			return instances.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int i = random.nextInt(size);
+		// 第二个从剩下的 size - 1 个里面选, 保证和第一个不同
+		int j = random.nextInt(size - 1);
+		if (j >= i) {
+			j++;
+		}
+		ServiceInstance a = instances.get(i);
+		ServiceInstance b = instances.get(j);
+		int diff = a.getOutstanding() - b.getOutstanding();
+		if (diff != 0) {
+			return diff < 0 ? a : b;
+		}
+		return a.getEwmaNanos() <= b.getEwmaNanos() ? a : b;
+	}
+}
@@ -0,0 +1,43 @@
+package com.seaflower.microcommon.rest.lb;
+
+import com.seaflower.microcommon.RestClientProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 从配置中读取微服务的实例:
+ * <code>
+ * micro.rest-client.services.provider.instances=http://localhost:8089,http://localhost:8090
+ * </code>
+ * 没有单独配置的微服务使用 micro.rest-client.instances。
+ * </p>
+ *
+ * <p>
+ * 配置启动以后不会变, 每个微服务的实例只创建一次, 这样实例上记录的负载数据也是同一份
+ * </p>
+ */
+public class PropertiesServiceInstanceResolver implements ServiceInstanceResolver {
+	private final RestClientProperties properties;
+	private final Map<String, List<ServiceInstance>> instances = new ConcurrentHashMap<>();
+
+	public PropertiesServiceInstanceResolver(RestClientProperties properties) {
+		this.properties = properties;
+	}
+
+	@Override
+	public List<ServiceInstance> instances(String microServiceName) {
+		return instances.computeIfAbsent(microServiceName, this::load);
+	}
+
+	private List<ServiceInstance> load(String microServiceName) {
+		List<ServiceInstance> list = new ArrayList<>();
+		for (String url : properties.instances(microServiceName)) {
+			list.add(new ServiceInstance(microServiceName, url.trim()));
+		}
+		return List.copyOf(list);
+	}
+}
@@ -0,0 +1,17 @@
+package com.seaflower.microcommon.rest.lb;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轮询
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+	private final AtomicInteger next = new AtomicInteger();
+
+	@Override
+	public ServiceInstance choose(List<ServiceInstance> instances) {
+		int index = next.getAndIncrement() & Integer.MAX_VALUE;
+		return instances.get(index % instances.size());
+	}
+}
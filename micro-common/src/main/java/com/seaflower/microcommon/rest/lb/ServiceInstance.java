@@ -0,0 +1,90 @@
+package com.seaflower.microcommon.rest.lb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * 微服务的一个实例, 比如 provider 的 http://localhost:8089。
+ * </p>
+ *
+ * <p>
+ * 除了地址以外, 还记录了负载均衡需要的运行时数据: 正在进行的请求数, 响应时间的 EWMA（指数加权移动平均）。
+ * 这些数据只是用来做选择的参考, 更新的时候不加锁, 偶尔丢一次更新没有关系。
+ * </p>
+ */
+public final class ServiceInstance {
+	// EWMA 的平滑系数, 越大越看重最近的响应时间
+	private static final double ALPHA = 0.2;
+
+	private final String microServiceName;
+	// http://host:port, 结尾没有 '/'
+	private final String baseUrl;
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private volatile double ewmaNanos;
+
+	public ServiceInstance(String microServiceName, String baseUrl) {
+		this.microServiceName = microServiceName;
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+	}
+
+	public String getMicroServiceName() {
+		return microServiceName;
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * 正在进行的请求数
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * 响应时间的 EWMA, 还没有请求过的是 0
+	 */
+	public double getEwmaNanos() {
+		return ewmaNanos;
+	}
+
+	/**
+	 * 发起请求之前调用
+	 */
+	public void onStart() {
+		outstanding.incrementAndGet();
+	}
+
+	/**
+	 * 请求结束以后调用, 不管成功还是失败
+	 * @param elapsedNanos 这次请求的耗时
+	 */
+	public void onComplete(long elapsedNanos) {
+		outstanding.decrementAndGet();
+		double ewma = ewmaNanos;
+		ewmaNanos = ewma == 0 ? elapsedNanos : ewma + ALPHA * (elapsedNanos - ewma);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof ServiceInstance)) {
+			return false;
+		}
+		ServiceInstance that = (ServiceInstance) o;
+		return microServiceName.equals(that.microServiceName) && baseUrl.equals(that.baseUrl);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * microServiceName.hashCode() + baseUrl.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return microServiceName + "@" + baseUrl;
+	}
+}
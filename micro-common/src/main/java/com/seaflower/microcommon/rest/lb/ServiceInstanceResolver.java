@@ -0,0 +1,14 @@
+package com.seaflower.microcommon.rest.lb;
+
+import java.util.List;
+
+/**
+ * 根据微服务名称找到它的所有实例
+ */
+public interface ServiceInstanceResolver {
+	/**
+	 * @param microServiceName RestClientReference 中的微服务名称
+	 * @return 微服务的所有实例, 没有的话返回空的 List
+	 */
+	List<ServiceInstance> instances(String microServiceName);
+}
@@ -0,0 +1,202 @@
+package com.seaflower.microcommon.trace;
+
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * 一次被采样的调用: 在哪个 trace 里面, 每个阶段花了多少时间。
+ * </p>
+ *
+ * <p>
+ * 当前线程正在进行的调用放在 ThreadLocal 里面, RestClientInvoker 和连接池在阶段结束的地方调用 mark,
+ * 没有被采样的调用这里是 null, mark 只是读一次 ThreadLocal。
+ * 每个阶段的时间是从上一次 mark 到这一次 mark, 重试的时候同一个阶段的时间累加。
+ * </p>
+ *
+ * <p>
+ * 只有开始这个调用的线程会修改它, 结束以后只读
+ * </p>
+ */
+public final class CallTrace {
+	/**
+	 * consumer 发给 provider 的请求头: traceId-spanId, 都是 16 进制
+	 */
+	public static final String HEADER = "X-Micro-Trace";
+
+	private static final ThreadLocal<CallTrace> CURRENT = new ThreadLocal<>();
+
+	public enum Kind {
+		// consumer 发起的调用
+		CLIENT,
+		// provider 处理的请求
+		SERVER
+	}
+
+	/**
+	 * 一次 http 调用的各个阶段, 按照发生的顺序
+	 */
+	public enum Phase {
+		// 参数绑定成 URL
+		BIND,
+		// 选实例, 舱壁和熔断器
+		GUARD,
+		// 创建请求, 写请求头和序列化请求体
+		SERIALIZE,
+		// 等待连接池
+		ACQUIRE,
+		// 发送请求到收到响应头, 包括网络和 provider 处理的时间
+		WAIT,
+		// 读取和反序列化响应体
+		DECODE,
+		// 重试之前的等待
+		BACKOFF
+	}
+
+	private final Kind kind;
+	private final long traceId;
+	private final long spanId;
+	private final long parentSpanId;
+	private final String service;
+	private String name;
+	private final long startMillis = System.currentTimeMillis();
+	private final long startNanos = System.nanoTime();
+	private final long[] phaseNanos = new long[Phase.values().length];
+	private long lastMark = startNanos;
+	private int attempts;
+	// 开始之前当前线程上的调用, 结束的时候恢复
+	private final CallTrace previous;
+	private volatile long durationNanos = -1;
+	private boolean error;
+
+	CallTrace(Kind kind, long traceId, long spanId, long parentSpanId, String service, String name,
+			  CallTrace previous) {
+		this.kind = kind;
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.parentSpanId = parentSpanId;
+		this.service = service;
+		this.name = name;
+		this.previous = previous;
+	}
+
+	/**
+	 * 当前线程上正在进行的被采样的调用, 没有的话是 null
+	 */
+	public static CallTrace current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * 把 trace 放到当前线程上执行 call, 结束以后恢复原来的; 切换线程（异步调用）的时候用来传递上级的调用
+	 * @param trace 调用方线程上的 current(), null 是没有
+	 */
+	public static <T> T call(CallTrace trace, Supplier<T> call) {
+		CallTrace previous = CURRENT.get();
+		set(trace);
+		try {
+			return call.get();
+		} finally {
+			set(previous);
+		}
+	}
+
+	/**
+	 * 当前线程上被采样的调用结束了一个阶段
+	 */
+	public static void mark(Phase phase) {
+		CallTrace trace = CURRENT.get();
+		if (trace != null) {
+			trace.end(phase);
+		}
+	}
+
+	/**
+	 * 从上一次 mark 到现在的时间算到 phase 上, 调用结束以后不再记录
+	 */
+	public void end(Phase phase) {
+		if (durationNanos >= 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		phaseNanos[phase.ordinal()] += now - lastMark;
+		lastMark = now;
+		if (phase == Phase.GUARD) {
+			attempts++;
+		}
+	}
+
+	/**
+	 * 发给 provider 的 X-Micro-Trace
+	 */
+	public String header() {
+		return Long.toHexString(traceId) + "-" + Long.toHexString(spanId);
+	}
+
+	static void set(CallTrace trace) {
+		if (trace == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(trace);
+		}
+	}
+
+	void finish(boolean error) {
+		this.error = error;
+		durationNanos = System.nanoTime() - startNanos;
+	}
+
+	void setName(String name) {
+		this.name = name;
+	}
+
+	public Kind kind() {
+		return kind;
+	}
+
+	public long traceId() {
+		return traceId;
+	}
+
+	public long spanId() {
+		return spanId;
+	}
+
+	public long parentSpanId() {
+		return parentSpanId;
+	}
+
+	public String service() {
+		return service;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public long startMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * 还没有结束的话是 -1
+	 */
+	public long durationNanos() {
+		return durationNanos;
+	}
+
+	public long phaseNanos(Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	public int attempts() {
+		return attempts;
+	}
+
+	public boolean error() {
+		return error;
+	}
+
+	CallTrace previous() {
+		return previous;
+	}
+}
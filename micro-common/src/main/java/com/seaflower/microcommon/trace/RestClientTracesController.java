@@ -0,0 +1,32 @@
+package com.seaflower.microcommon.trace;
+
+import com.seaflower.microcommon.rest.RestClientContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 被采样的调用里面每个方法最近最慢的几个, 带有每个阶段的时间; 用 traceId 可以找到 provider 上对应的请求
+ */
+@RestController
+public class RestClientTracesController {
+
+	@Autowired
+	private RestClientContext restClientContext;
+
+	/**
+	 * @param traceId 只看一个 trace 的调用, 不传就是全部
+	 */
+	@GetMapping("/micro-traces")
+	public List<SlowCall> traces(@RequestParam(value = "traceId", required = false) String traceId) {
+		List<SlowCall> all = restClientContext.tracing().slowCalls();
+		if (traceId == null || traceId.isEmpty()) {
+			return all;
+		}
+		return all.stream().filter(c -> traceId.equalsIgnoreCase(c.getTraceId())).collect(Collectors.toList());
+	}
+}
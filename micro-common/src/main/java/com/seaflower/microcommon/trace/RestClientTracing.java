@@ -0,0 +1,115 @@
+package com.seaflower.microcommon.trace;
+
+import com.seaflower.microcommon.RestClientProperties;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * 采样和收集慢调用。
+ * </p>
+ *
+ * <p>
+ * consumer 发起的调用按 sampleRate 随机采样; 当前线程正在处理一个被采样的请求（provider 收到了 X-Micro-Trace）
+ * 的时候, 它里面发起的调用都采样, 和上游在同一个 trace 里面。
+ * 没有被采样的调用只多一次随机数和一次 ThreadLocal 的读取。
+ * </p>
+ *
+ * <p>
+ * 结束的调用按 (类型, 微服务, 名称) 放到各自的 SlowCallLog 里面, 只保留最近最慢的几个
+ * </p>
+ */
+public class RestClientTracing {
+	private final double sampleRate;
+	private final int slowCalls;
+	private final long windowNanos;
+	// "类型 微服务 名称" -> 最慢的调用
+	private final Map<String, SlowCallLog> logs = new ConcurrentHashMap<>();
+
+	public RestClientTracing(RestClientProperties.TraceSettings settings) {
+		this.sampleRate = settings.getSampleRate();
+		this.slowCalls = settings.getSlowCalls();
+		this.windowNanos = settings.getWindow().toNanos();
+	}
+
+	/**
+	 * consumer 开始一次 http 调用, 被采样的话放到当前线程上, 没有被采样返回 null。
+	 * 不是 null 的话一定要调用 finish
+	 */
+	public CallTrace startClient(String microServiceName, Method method) {
+		CallTrace parent = CallTrace.current();
+		if (parent == null && !sampled()) {
+			return null;
+		}
+		CallTrace trace = new CallTrace(CallTrace.Kind.CLIENT, parent == null ? newId() : parent.traceId(), newId(),
+			parent == null ? 0 : parent.spanId(), microServiceName,
+			method.getDeclaringClass().getSimpleName() + "." + method.getName(), parent);
+		CallTrace.set(trace);
+		return trace;
+	}
+
+	/**
+	 * provider 收到带有 X-Micro-Trace 的请求, 格式不对的话返回 null
+	 * @param header X-Micro-Trace 请求头
+	 * @param service 自己的名称
+	 */
+	public CallTrace startServer(String header, String service) {
+		int dash = header.indexOf('-');
+		long traceId;
+		long parentSpanId;
+		try {
+			traceId = Long.parseUnsignedLong(header.substring(0, Math.max(0, dash)).trim(), 16);
+			parentSpanId = Long.parseUnsignedLong(header.substring(dash + 1).trim(), 16);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		CallTrace trace = new CallTrace(CallTrace.Kind.SERVER, traceId, newId(), parentSpanId, service, null,
+			CallTrace.current());
+		CallTrace.set(trace);
+		return trace;
+	}
+
+	/**
+	 * 调用结束, 恢复当前线程上原来的调用, 记录到慢调用里面。可以在开始的线程以外调用, 见 TraceFilter
+	 * @param name SERVER 的名称到结束的时候才知道, CLIENT 传 null
+	 */
+	public void finish(CallTrace trace, String name, boolean error) {
+		trace.finish(error);
+		if (name != null) {
+			trace.setName(name);
+		}
+		// 异步的请求在别的线程上结束, 那个线程上不是这个调用
+		if (CallTrace.current() == trace) {
+			CallTrace.set(trace.previous());
+		}
+		logs.computeIfAbsent(trace.kind() + " " + trace.service() + " " + trace.name(),
+			key -> new SlowCallLog(slowCalls, windowNanos)).offer(trace);
+	}
+
+	/**
+	 * 所有方法最近最慢的调用, 按 (类型, 微服务, 名称) 排序, 同一个方法里面从慢到快
+	 */
+	public List<SlowCall> slowCalls() {
+		List<SlowCall> all = new ArrayList<>();
+		new TreeMap<>(logs).values().forEach(log -> log.slowest().forEach(trace -> all.add(SlowCall.of(trace))));
+		return all;
+	}
+
+	private boolean sampled() {
+		return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+	}
+
+	private static long newId() {
+		long id;
+		do {
+			id = ThreadLocalRandom.current().nextLong();
+		} while (id == 0);
+		return id;
+	}
+}
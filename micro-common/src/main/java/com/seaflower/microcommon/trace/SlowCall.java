@@ -0,0 +1,59 @@
+package com.seaflower.microcommon.trace;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /micro-traces 返回的一个慢调用, 时间的单位都是微秒
+ */
+@Data
+public class SlowCall {
+	private String traceId;
+	private String spanId;
+	// 没有上级的话是 null
+	private String parentSpanId;
+	private CallTrace.Kind kind;
+	private String service;
+	// CLIENT 是 契约接口.方法, SERVER 是 http 方法和 controller 的路径
+	private String name;
+	// 开始的时间, epoch 毫秒
+	private long startTime;
+	private long durationMicros;
+	private int attempts;
+	private boolean error;
+	// 阶段 -> 时间, OTHER 是没有算到任何阶段上的时间
+	private Map<String, Long> phaseMicros;
+
+	static SlowCall of(CallTrace trace) {
+		SlowCall call = new SlowCall();
+		call.setTraceId(Long.toHexString(trace.traceId()));
+		call.setSpanId(Long.toHexString(trace.spanId()));
+		call.setParentSpanId(trace.parentSpanId() == 0 ? null : Long.toHexString(trace.parentSpanId()));
+		call.setKind(trace.kind());
+		call.setService(trace.service());
+		call.setName(trace.name());
+		call.setStartTime(trace.startMillis());
+		call.setDurationMicros(micros(trace.durationNanos()));
+		call.setAttempts(trace.attempts());
+		call.setError(trace.error());
+		if (trace.kind() == CallTrace.Kind.CLIENT) {
+			Map<String, Long> phases = new LinkedHashMap<>();
+			long other = trace.durationNanos();
+			for (CallTrace.Phase phase : CallTrace.Phase.values()) {
+				long nanos = trace.phaseNanos(phase);
+				phases.put(phase.name(), micros(nanos));
+				other -= nanos;
+			}
+			phases.put("OTHER", micros(Math.max(0, other)));
+			call.setPhaseMicros(phases);
+		}
+		return call;
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
@@ -0,0 +1,91 @@
+package com.seaflower.microcommon.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * 一个方法最近最慢的 N 个被采样的调用。
+ * </p>
+ *
+ * <p>
+ * 和 LatencyHistogram 一样分成两个时间窗口, 当前窗口过期以后变成上一个窗口, 查询的时候合并两个窗口,
+ * 所以看到的是最近 1 到 2 个窗口的调用。
+ * 当前窗口已经满了的时候, 比里面最快的还快的调用不加锁直接丢弃, 大部分调用都走这个分支。
+ * </p>
+ */
+final class SlowCallLog {
+	private final int size;
+	private final long windowNanos;
+
+	// 下面的字段在 this 的锁里面修改
+	private CallTrace[] current;
+	private int count;
+	private CallTrace[] previous = new CallTrace[0];
+	private volatile long windowStart = System.nanoTime();
+	// 当前窗口满了以后是里面最快的调用的时间, 没有满的时候是 -1
+	private volatile long threshold = -1;
+
+	SlowCallLog(int size, long windowNanos) {
+		this.size = Math.max(1, size);
+		this.windowNanos = windowNanos;
+		this.current = new CallTrace[this.size];
+	}
+
+	void offer(CallTrace trace) {
+		long duration = trace.durationNanos();
+		long now = System.nanoTime();
+		if (duration <= threshold && now - windowStart < windowNanos) {
+			return;
+		}
+		synchronized (this) {
+			rotate(now);
+			if (count < size) {
+				current[count++] = trace;
+			} else {
+				int fastest = fastest();
+				if (duration <= current[fastest].durationNanos()) {
+					return;
+				}
+				current[fastest] = trace;
+			}
+			threshold = count < size ? -1 : current[fastest()].durationNanos();
+		}
+	}
+
+	/**
+	 * 最近最慢的调用, 从慢到快
+	 */
+	synchronized List<CallTrace> slowest() {
+		rotate(System.nanoTime());
+		List<CallTrace> all = new ArrayList<>(Arrays.asList(previous));
+		all.addAll(Arrays.asList(current).subList(0, count));
+		all.sort(Comparator.comparingLong(CallTrace::durationNanos).reversed());
+		return all.size() > size ? new ArrayList<>(all.subList(0, size)) : all;
+	}
+
+	private int fastest() {
+		int fastest = 0;
+		for (int i = 1; i < count; i++) {
+			if (current[i].durationNanos() < current[fastest].durationNanos()) {
+				fastest = i;
+			}
+		}
+		return fastest;
+	}
+
+	private void rotate(long now) {
+		long elapsed = now - windowStart;
+		if (elapsed < windowNanos) {
+			return;
+		}
+		// 超过两个窗口没有调用的话, 上一个窗口也已经过期了
+		previous = elapsed < 2 * windowNanos ? Arrays.copyOf(current, count) : new CallTrace[0];
+		current = new CallTrace[size];
+		count = 0;
+		threshold = -1;
+		windowStart = now;
+	}
+}
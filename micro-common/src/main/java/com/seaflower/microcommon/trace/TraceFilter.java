@@ -0,0 +1,112 @@
+package com.seaflower.microcommon.trace;
+
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.RestClientContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * provider 端: 请求带有 X-Micro-Trace（consumer 采样了这次调用）的时候记录自己处理这个请求的时间,
+ * 和 consumer 的调用在同一个 trace 里面, 处理的过程中发起的调用也都采样。
+ * </p>
+ *
+ * <p>
+ * 名称是 http 方法和 controller 的路径模板, 不是实际的 URL, 路径参数不会让名称无限增多。
+ * 没有这个请求头的请求什么都不做。
+ * 异步的 controller 到请求完成的时候才结束, 包括等待 CompletableFuture 的时间
+ * </p>
+ *
+ * <p>
+ * 有 RestClientContext 的话和它发起的调用共用一个 RestClientTracing; 只引入了 MicroProviderConfig 的 provider
+ * 没有客户端, 按 micro.rest-client.trace 的配置自己创建一个
+ * </p>
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class TraceFilter extends OncePerRequestFilter {
+
+	@Autowired
+	private ObjectProvider<RestClientContext> restClientContext;
+
+	@Autowired
+	private ObjectProvider<RestClientProperties> properties;
+
+	@Autowired
+	private Environment environment;
+
+	private RestClientTracing tracing;
+
+	@PostConstruct
+	void init() {
+		RestClientContext context = restClientContext.getIfAvailable();
+		tracing = context != null ? context.tracing()
+			: new RestClientTracing(properties.getIfAvailable(RestClientProperties::new).getTrace());
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+		throws ServletException, IOException {
+		String header = request.getHeader(CallTrace.HEADER);
+		CallTrace trace = header == null ? null : tracing
+			.startServer(header, environment.getProperty("spring.application.name", ""));
+		if (trace == null) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		boolean error = true;
+		boolean async = false;
+		try {
+			chain.doFilter(request, response);
+			error = response.getStatus() >= 500;
+			async = request.isAsyncStarted();
+		} finally {
+			if (async) {
+				// 返回 CompletableFuture 或者 DeferredResult 的 controller, 请求完成的时候才结束
+				CallTrace.set(trace.previous());
+				request.getAsyncContext().addListener(new AsyncListener() {
+					@Override
+					public void onComplete(AsyncEvent event) {
+						finish(request, trace, response.getStatus() >= 500);
+					}
+
+					@Override
+					public void onTimeout(AsyncEvent event) {
+					}
+
+					@Override
+					public void onError(AsyncEvent event) {
+					}
+
+					@Override
+					public void onStartAsync(AsyncEvent event) {
+					}
+				});
+			} else {
+				finish(request, trace, error);
+			}
+		}
+	}
+
+	private void finish(HttpServletRequest request, CallTrace trace, boolean error) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		tracing.finish(trace,
+			request.getMethod() + " " + (pattern == null ? request.getRequestURI() : pattern), error);
+	}
+}
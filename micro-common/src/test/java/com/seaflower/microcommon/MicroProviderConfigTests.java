@@ -0,0 +1,44 @@
+package com.seaflower.microcommon;
+
+import com.seaflower.microcommon.codec.CodecWebConfig;
+import com.seaflower.microcommon.registry.RegistryRegistrar;
+import com.seaflower.microcommon.registry.ServiceRegistry;
+import com.seaflower.microcommon.rest.RestBatchDispatcher;
+import com.seaflower.microcommon.rest.RestClientContext;
+import com.seaflower.microcommon.rest.RestDeadlineFilter;
+import com.seaflower.microcommon.rest.RestclientReferenceProcessor;
+import com.seaflower.microcommon.trace.TraceFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicroProviderConfigTests {
+
+	private final WebApplicationContextRunner runner = new WebApplicationContextRunner()
+		.withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class))
+		.withUserConfiguration(MicroProviderConfig.class);
+
+	@Test
+	void onlyProviderSideComponentsAreCreated() {
+		runner.run(context -> {
+			assertThat(context).hasNotFailed();
+			assertThat(context).hasSingleBean(RestDeadlineFilter.class);
+			assertThat(context).hasSingleBean(TraceFilter.class);
+			assertThat(context).hasSingleBean(CodecWebConfig.class);
+			assertThat(context).hasSingleBean(RestBatchDispatcher.class);
+			assertThat(context).doesNotHaveBean(RestClientContext.class);
+			assertThat(context).doesNotHaveBean(RestclientReferenceProcessor.class);
+			assertThat(context).doesNotHaveBean(ServiceRegistry.class);
+			assertThat(context).doesNotHaveBean(RegistryRegistrar.class);
+		});
+	}
+
+	@Test
+	void registrarIsCreatedWhenARegistryIsConfigured() {
+		runner.withPropertyValues("micro.registry.address=http://localhost:1", "micro.registry.service-name=provider")
+			.run(context -> assertThat(context).hasSingleBean(RegistryRegistrar.class));
+	}
+}
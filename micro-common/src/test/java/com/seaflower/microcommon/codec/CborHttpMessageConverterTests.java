@@ -0,0 +1,79 @@
+package com.seaflower.microcommon.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CborHttpMessageConverterTests {
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class Bill {
+		private long id;
+		private String name;
+		private BigDecimal amount;
+		private BigInteger serial;
+		private double rate;
+		private byte[] attachment;
+		private List<String> tags;
+		private Map<String, Integer> counts;
+	}
+
+	private final CborHttpMessageConverter converter = new CborHttpMessageConverter(new ObjectMapper());
+
+	@Test
+	void writesIndefiniteLengthMaps() throws Exception {
+		MockHttpOutputMessage output = new MockHttpOutputMessage();
+		converter.write(Map.of("a", 1), null, output);
+		assertArrayEquals(new byte[] { (byte) 0xBF, 0x61, 'a', 0x01, (byte) 0xFF }, output.getBodyAsBytes());
+	}
+
+	@Test
+	void readsDefiniteLengthMaps() throws Exception {
+		// {"a": [1, -2], "b": "中"}
+		byte[] cbor = { (byte) 0xA2, 0x61, 'a', (byte) 0x82, 0x01, 0x21, 0x61, 'b', 0x63, (byte) 0xE4, (byte) 0xB8,
+			(byte) 0xAD };
+		Object value = converter.read(Map.class, new MockHttpInputMessage(cbor));
+		assertEquals(Map.of("a", List.of(1, -2), "b", "中"), value);
+	}
+
+	@Test
+	void roundTrip() throws Exception {
+		Bill bill = new Bill(Long.MIN_VALUE, "报销", new BigDecimal("-12.345"),
+			new BigInteger("123456789012345678901234567890"), 0.25, new byte[] { 1, 2, 3 }, List.of("x", "y"),
+			Map.of("n", 300000));
+		List<Bill> bills = List.of(bill, new Bill());
+		ParameterizedTypeReference<List<Bill>> type = new ParameterizedTypeReference<List<Bill>>() {
+		};
+
+		MockHttpOutputMessage output = new MockHttpOutputMessage();
+		converter.write(bills, type.getType(), null, output);
+		Object read = converter.read(type.getType(), null, new MockHttpInputMessage(output.getBodyAsBytes()));
+		assertEquals(bills, read);
+	}
+
+	@Test
+	void rejectsDeeplyNestedTags() {
+		// 2MB 的 tag 6, 每一个都套着下一个
+		byte[] cbor = new byte[2 * 1024 * 1024];
+		Arrays.fill(cbor, (byte) 0xC6);
+		HttpMessageNotReadableException e = assertThrows(HttpMessageNotReadableException.class,
+			() -> converter.read(Object.class, new MockHttpInputMessage(cbor)));
+		assertTrue(e.getMessage().contains("嵌套"), e.getMessage());
+	}
+}
@@ -0,0 +1,86 @@
+package com.seaflower.microcommon.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTests {
+
+	@Test
+	void bucketsCoverTheWholeRange() {
+		for (long v : new long[] { 0, 1, 31, 32, 63, 64, 1000, 123_456_789, Long.MAX_VALUE }) {
+			int index = LatencyHistogram.index(v);
+			assertTrue(index < LatencyHistogram.BUCKETS);
+			assertTrue(LatencyHistogram.lowerBound(index) <= v && v <= LatencyHistogram.upperBound(index), "" + v);
+		}
+		for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+			assertEquals(LatencyHistogram.upperBound(i - 1) + 1, LatencyHistogram.lowerBound(i));
+		}
+	}
+
+	@Test
+	void percentilesWithinRelativeError() {
+		LatencyHistogram histogram = new LatencyHistogram(1, TimeUnit.MINUTES);
+		for (long i = 1; i <= 10_000; i++) {
+			histogram.record(i * 1000);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(10_000, snapshot.total());
+		assertEquals(10_000, histogram.count());
+		assertEquals(5_000_000, snapshot.valueAt(0.5), 5_000_000 / 32.0);
+		assertEquals(9_900_000, snapshot.valueAt(0.99), 9_900_000 / 32.0);
+		assertEquals(10_000_000, snapshot.max(), 10_000_000 / 32.0);
+	}
+
+	@Test
+	void windowsRotateOnRecord() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram(50, TimeUnit.MILLISECONDS);
+		histogram.record(1_000);
+		Thread.sleep(120);
+		// 中间没有取快照, 记录的时候就已经轮换了; 超过两个窗口, 旧的数据不再算
+		histogram.record(2_000);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1, snapshot.total());
+		assertEquals(2, histogram.count());
+	}
+
+	@Test
+	void coordinatedOmissionCorrection() {
+		LatencyHistogram histogram = new LatencyHistogram(1, TimeUnit.MINUTES);
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1_000_000);
+		}
+		// 一次 100ms 的停顿, 按 1ms 的间隔应该还有 99 个请求被推迟了
+		histogram.record(100_000_000);
+		LatencyHistogram.Snapshot raw = histogram.snapshot();
+		LatencyHistogram.Snapshot corrected = raw.correctedForCoordinatedOmission(1_000_000);
+		assertEquals(100, raw.total());
+		assertEquals(199, corrected.total(), 2);
+		assertTrue(raw.valueAt(0.9) < 2_000_000);
+		assertTrue(corrected.valueAt(0.9) > 50_000_000);
+	}
+
+	@Test
+	void prometheusText() {
+		RestClientMetrics metrics = new RestClientMetrics();
+		CallMetrics hello = metrics.of("provider", "HelloInterface.hello");
+		hello.stop(hello.start(), false);
+		hello.stop(hello.start(), true);
+		assertSame(hello, metrics.of("provider", "HelloInterface.hello"));
+
+		StringBuilder out = new StringBuilder();
+		metrics.writePrometheus(out);
+		String text = out.toString();
+		assertTrue(text.contains("micro_rest_client_calls_total{service=\"provider\",method=\"HelloInterface.hello\"} 2\n"));
+		assertTrue(text.contains("micro_rest_client_errors_total{service=\"provider\",method=\"HelloInterface.hello\"} 1\n"));
+		assertTrue(text.contains("micro_rest_client_in_flight{service=\"provider\",method=\"HelloInterface.hello\"} 0\n"));
+		assertTrue(text.contains("micro_rest_client_service_latency_seconds_count{service=\"provider\"} 2\n"));
+		// 最大值不在 summary 下面, 是单独的 gauge
+		assertTrue(text.contains("# TYPE micro_rest_client_latency_max_seconds gauge\n"
+			+ "micro_rest_client_latency_max_seconds{service=\"provider\",method=\"HelloInterface.hello\"} "));
+		assertTrue(text.contains("# TYPE micro_rest_client_service_latency_max_seconds gauge\n"));
+		assertEquals(1, text.split("micro_rest_client_latency_max_seconds\\{", -1).length - 1);
+	}
+}
@@ -0,0 +1,81 @@
+package com.seaflower.microcommon.registry;
+
+import com.seaflower.microcommon.RestClientProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RegistryControllerTests {
+	private final RegistryProperties properties = new RegistryProperties();
+	private final ServiceRegistry registry = new ServiceRegistry(properties, new RestClientProperties());
+	private final MockMvc mvc;
+
+	private final RegistryController controller = new RegistryController();
+
+	RegistryControllerTests() {
+		ReflectionTestUtils.setField(controller, "serviceRegistry", registry);
+		ReflectionTestUtils.setField(controller, "properties", properties);
+		mvc = MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	@AfterEach
+	void close() {
+		registry.destroy();
+	}
+
+	private int register(String body, String token) throws Exception {
+		var request = post("/micro-registry/register").contentType(MediaType.APPLICATION_JSON).content(body);
+		if (token != null) {
+			request.header(RegistryController.TOKEN_HEADER, token);
+		}
+		return mvc.perform(request).andReturn().getResponse().getStatus();
+	}
+
+	@Test
+	void registrationIsOffByDefault() throws Exception {
+		assertEquals(403, register("{\"service\":\"provider\",\"url\":\"http://evil:80\"}", null));
+		assertTrue(registry.instances("provider").stream().noneMatch(i -> i.getBaseUrl().contains("evil")));
+	}
+
+	@Test
+	void tokenIsChecked() throws Exception {
+		properties.setAcceptRegistrations(true);
+		properties.setToken("secret");
+		assertEquals(401, register("{\"service\":\"provider\",\"url\":\"http://localhost:8090\"}", null));
+		assertEquals(401, register("{\"service\":\"provider\",\"url\":\"http://localhost:8090\"}", "wrong"));
+		assertEquals(200, register("{\"service\":\"provider\",\"url\":\"http://localhost:8090\"}", "secret"));
+		assertTrue(registry.instances("provider").stream().anyMatch(i -> i.getBaseUrl().equals("http://localhost:8090")));
+	}
+
+	@Test
+	void acceptingRegistrationsRequiresAToken() throws Exception {
+		properties.setAcceptRegistrations(true);
+		assertThrows(IllegalStateException.class, controller::checkToken);
+		assertEquals(403, register("{\"service\":\"provider\",\"url\":\"http://evil:80\"}", null));
+		assertEquals(403, register("{\"service\":\"provider\",\"url\":\"http://evil:80\"}", ""));
+
+		properties.setToken("secret");
+		controller.checkToken();
+	}
+
+	@Test
+	void serviceAndUrlAreValidated() throws Exception {
+		properties.setAcceptRegistrations(true);
+		properties.setToken("secret");
+		assertEquals(400, register("{\"url\":\"http://localhost:8090\"}", "secret"));
+		assertEquals(400, register("{\"service\":\"a b\",\"url\":\"http://localhost:8090\"}", "secret"));
+		assertEquals(400, register("{\"service\":\"provider\"}", "secret"));
+		assertEquals(400, register("{\"service\":\"provider\",\"url\":\"file:///etc/passwd\"}", "secret"));
+		assertEquals(400, register("{\"service\":\"provider\",\"url\":\"http://user@localhost:8090\"}", "secret"));
+		assertEquals(400, register("{\"service\":\"provider\",\"url\":\"http://localhost:99999\"}", "secret"));
+		assertEquals(400, register("{\"service\":\"provider\",\"url\":\"http:///nohost\"}", "secret"));
+		assertEquals(200, register("{\"service\":\"provider\",\"url\":\"https://10.0.0.1\"}", "secret"));
+	}
+}
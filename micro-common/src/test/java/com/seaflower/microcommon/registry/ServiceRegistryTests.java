@@ -0,0 +1,79 @@
+package com.seaflower.microcommon.registry;
+
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.ServiceInstance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceRegistryTests {
+	private final ServiceRegistry registry = new ServiceRegistry(new RegistryProperties(), new RestClientProperties());
+
+	@AfterEach
+	void close() {
+		registry.destroy();
+	}
+
+	@Test
+	void seedsFromPropertiesAndKeepsSnapshotStable() {
+		List<ServiceInstance> instances = registry.instances("provider");
+		assertEquals(1, instances.size());
+		assertEquals("http://localhost:8089", instances.get(0).getBaseUrl());
+		assertSame(instances, registry.instances("provider"));
+	}
+
+	@Test
+	void registerAndIncrementalChanges() {
+		registry.instances("provider");
+		long version = registry.changesSince(-1).getVersion();
+
+		registry.register("provider", "http://localhost:8090/");
+		assertEquals(2, registry.instances("provider").size());
+
+		RegistryChanges changes = registry.changesSince(version);
+		assertFalse(changes.isFull());
+		assertEquals(List.of(new RegistryEndpoint("provider", "http://localhost:8090", true)), changes.getEndpoints());
+
+		registry.deregister("provider", "http://localhost:8090");
+		assertEquals(1, registry.instances("provider").size());
+		assertEquals(2, registry.changesSince(version).getEndpoints().size());
+		assertTrue(registry.changesSince(changes.getVersion() + 100).isFull());
+	}
+
+	@Test
+	void applyRemoteFullSnapshot() {
+		registry.applyRemote(new RegistryChanges(7, true,
+			List.of(new RegistryEndpoint("remote", "http://10.0.0.1:8089", true))));
+		assertEquals("http://10.0.0.1:8089", registry.instances("remote").get(0).getBaseUrl());
+
+		registry.applyRemote(new RegistryChanges(8, true, List.of()));
+		assertTrue(registry.instances("remote").isEmpty());
+	}
+
+	@Test
+	void healthCheckRoundMarksDeadInstances() throws Exception {
+		RegistryProperties properties = new RegistryProperties();
+		properties.setUnhealthyThreshold(1);
+		ServiceRegistry registry = new ServiceRegistry(properties, new RestClientProperties());
+		try (ServerSocket live = new ServerSocket(0)) {
+			int deadPort;
+			try (ServerSocket dead = new ServerSocket(0)) {
+				deadPort = dead.getLocalPort();
+			}
+			registry.register("checked", "http://localhost:" + live.getLocalPort());
+			registry.register("checked", "http://localhost:" + deadPort);
+			assertEquals(2, registry.instances("checked").size());
+
+			// 一轮检查完才返回
+			registry.healthCheck();
+			assertEquals(List.of("http://localhost:" + live.getLocalPort()),
+				registry.instances("checked").stream().map(ServiceInstance::getBaseUrl).toList());
+		} finally {
+			registry.destroy();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microcommon.RestClientProperties;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.Http2;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class H2cTransportTests {
+
+	private WebServer server;
+	// 同时在服务端执行的请求数达到这个数以后才一起返回
+	private CountDownLatch arrived;
+
+	@BeforeEach
+	void start() {
+		TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+		Http2 http2 = new Http2();
+		http2.setEnabled(true);
+		factory.setHttp2(http2);
+		factory.addConnectorCustomizers(new H2cServerConfig().h2cStreamExecutionCustomizer());
+		server = factory.getWebServer(context -> context.addServlet("protocol", new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				if (request.getParameter("wait") != null) {
+					arrived.countDown();
+					try {
+						arrived.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				response.getWriter().write(request.getProtocol());
+			}
+		}).addMapping("/*"));
+		server.start();
+	}
+
+	@AfterEach
+	void stop() {
+		server.stop();
+	}
+
+	@Test
+	void h2cMultiplexesConcurrentCalls() throws Exception {
+		RestClientProperties properties = new RestClientProperties();
+		properties.setProtocol(RestClientProperties.Protocol.H2C);
+		// 只有一个连接的配置对 H2C 不生效, 同时进行的请求数看 maxConcurrentStreams
+		properties.setMaxConnections(1);
+		RestTemplate restTemplate = new RestTemplate(new PooledClientHttpRequestFactory(properties));
+		String url = "http://localhost:" + server.getPort() + "/demo/protocol";
+
+		// 第一个请求升级成 HTTP/2
+		restTemplate.getForObject(url, String.class);
+		assertEquals("HTTP/2.0", restTemplate.getForObject(url, String.class));
+
+		// 30 个请求同时在服务端等待, 超过 Tomcat 默认每个连接 20 个流的执行上限
+		int concurrency = 30;
+		arrived = new CountDownLatch(concurrency);
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		try {
+			List<CompletableFuture<String>> calls = new ArrayList<>();
+			for (int i = 0; i < concurrency; i++) {
+				calls.add(CompletableFuture.supplyAsync(() -> restTemplate.getForObject(url + "?wait", String.class),
+					executor));
+			}
+			for (CompletableFuture<String> call : calls) {
+				assertEquals("HTTP/2.0", call.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(0, arrived.getCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void http11IsStillTheDefault() {
+		RestTemplate restTemplate = new RestTemplate(new PooledClientHttpRequestFactory(new RestClientProperties()));
+		String url = "http://localhost:" + server.getPort() + "/demo/protocol";
+		restTemplate.getForObject(url, String.class);
+		assertEquals("HTTP/1.1", restTemplate.getForObject(url, String.class));
+	}
+}
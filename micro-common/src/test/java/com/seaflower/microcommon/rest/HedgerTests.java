@@ -0,0 +1,89 @@
+package com.seaflower.microcommon.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgerTests {
+
+	interface HedgedInterface {
+		@RestclientHedging(delayMillis = 20, maxHedgePercent = 10)
+		@RestclientMapping("/echo")
+		String echo(@RequestParam("name") String name);
+	}
+
+	@Test
+	void slowPrimaryIsHedgedAndCancelled() throws Exception {
+		RestclientHedging hedging = HedgedInterface.class.getMethod("echo", String.class)
+			.getAnnotation(RestclientHedging.class);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		CountDownLatch cancelled = new CountDownLatch(1);
+		try {
+			Hedger hedger = new Hedger("demo", "HedgedInterface.echo", hedging, executor);
+			Object value = hedger.call(() -> {
+				try {
+					Thread.sleep(5000);
+					return "primary";
+				} catch (InterruptedException e) {
+					cancelled.countDown();
+					throw new IllegalStateException(e);
+				}
+			}, () -> "backup");
+			assertEquals("backup", value);
+			assertEquals(1, hedger.hedged());
+			assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+
+			// 第一个请求失败, 对冲的请求还没有发出去, 直接失败
+			assertThrows(IllegalArgumentException.class, () -> hedger.call(() -> {
+				throw new IllegalArgumentException();
+			}, () -> "backup"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void waitingStopsAtTheDeadlineAndCancelsBothAttempts() throws Exception {
+		RestclientHedging hedging = HedgedInterface.class.getMethod("echo", String.class)
+			.getAnnotation(RestclientHedging.class);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		AtomicInteger started = new AtomicInteger();
+		AtomicInteger cancelled = new AtomicInteger();
+		Supplier<Object> slow = () -> {
+			started.incrementAndGet();
+			try {
+				Thread.sleep(5000);
+				return "slow";
+			} catch (InterruptedException e) {
+				cancelled.incrementAndGet();
+				throw new IllegalStateException(e);
+			}
+		};
+		try {
+			Hedger hedger = new Hedger("demo", "HedgedInterface.echo", hedging, executor);
+			long start = System.nanoTime();
+			DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+				() -> RestDeadline.within(Duration.ofMillis(200), () -> hedger.call(slow, slow)));
+			assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+			assertEquals("demo", e.getMicroServiceName());
+			assertEquals(2, started.get());
+
+			long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+			while (cancelled.get() < 2 && System.nanoTime() < waitUntil) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, cancelled.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTests {
+
+	public interface BatchInterface {
+		@RestclientBatch(maxSize = 3, windowMillis = 20)
+		@RestclientMapping("/echo")
+		String echo(@RequestParam("name") String name);
+	}
+
+	@Test
+	void callsAreSentTogetherAndResultsKeepOrder() throws Exception {
+		RestMethodPlan plan = RestMethodPlan.plansOf(BatchInterface.class)
+			.get(BatchInterface.class.getMethod("echo", String.class));
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		AtomicInteger requests = new AtomicInteger();
+		try {
+			MicroBatcher batcher = new MicroBatcher("demo", plan, plan.batch(), scheduler, Runnable::run, calls -> {
+				requests.incrementAndGet();
+				List<RestBatchResult> results = new ArrayList<>();
+				for (List<Object> args : calls) {
+					results.add("bad".equals(args.get(0))
+						? new RestBatchResult(null, "boom") : new RestBatchResult("hi " + args.get(0), null));
+				}
+				return results;
+			}, value -> value);
+
+			// 攒够 maxSize 马上发送
+			CompletableFuture<Object> a = batcher.submit(new Object[] { "a" });
+			CompletableFuture<Object> bad = batcher.submit(new Object[] { "bad" });
+			CompletableFuture<Object> c = batcher.submit(new Object[] { "c" });
+			assertEquals("hi a", a.join());
+			assertEquals("hi c", c.join());
+			CompletionException failed = assertThrows(CompletionException.class, bad::join);
+			// 和不批量的调用一样是 RemoteCallException
+			assertEquals("demo", ((RemoteCallException) failed.getCause()).getMicroServiceName());
+			assertEquals(1, requests.get());
+
+			// 不够 maxSize 的等时间窗口
+			assertEquals("hi d", batcher.submit(new Object[] { "d" }).get());
+			assertEquals(2, requests.get());
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	void batchIsSentUnderTheEarliestDeadline() throws Exception {
+		RestMethodPlan plan = RestMethodPlan.plansOf(BatchInterface.class)
+			.get(BatchInterface.class.getMethod("echo", String.class));
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		List<Long> remaining = new CopyOnWriteArrayList<>();
+		try {
+			MicroBatcher batcher = new MicroBatcher("demo", plan, plan.batch(), scheduler, executor, calls -> {
+				remaining.add(RestDeadline.remainingNanos());
+				List<RestBatchResult> results = new ArrayList<>();
+				calls.forEach(args -> results.add(new RestBatchResult(args.get(0), null)));
+				return results;
+			}, value -> value);
+
+			CompletableFuture<Object> relaxed = batcher.submit(new Object[] { "a" });
+			CompletableFuture<Object> urgent = RestDeadline.within(Duration.ofMillis(500),
+				() -> batcher.submit(new Object[] { "b" }));
+			CompletableFuture<Object> none = batcher.submit(new Object[] { "c" });
+			assertEquals(List.of("a", "b", "c"), List.of(relaxed.get(), urgent.get(), none.get()));
+			assertEquals(1, remaining.size());
+			assertTrue(remaining.get(0) > 0 && remaining.get(0) <= Duration.ofMillis(500).toNanos(), remaining.toString());
+		} finally {
+			scheduler.shutdownNow();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void syncCallStopsWaitingAtTheDeadline() throws Exception {
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/demo/micro-batch", exchange -> {
+			try {
+				Thread.sleep(3000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+		});
+		server.start();
+		RestClientProperties properties = new RestClientProperties();
+		properties.setInstances(List.of("http://localhost:" + server.getAddress().getPort()));
+		properties.setReadTimeout(Duration.ofSeconds(10));
+		RestClientContext context = new RestClientContext(new RestTemplate(new PooledClientHttpRequestFactory(properties)),
+			new PropertiesServiceInstanceResolver(properties), properties, new ObjectMapper());
+		try {
+			BatchInterface proxy = RestClientInvoker.createProxy("demo", null, context, BatchInterface.class);
+			long start = System.nanoTime();
+			assertThrows(DeadlineExceededException.class,
+				() -> RestDeadline.within(Duration.ofMillis(200), () -> proxy.echo("a")));
+			assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+		} finally {
+			context.destroy();
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void deadlineHeaderReachesTheBatchEndpoint() throws Exception {
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		List<String> headers = new CopyOnWriteArrayList<>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/demo/micro-batch", exchange -> {
+			headers.add(String.valueOf(exchange.getRequestHeaders().getFirst(RestDeadline.HEADER)));
+			exchange.getRequestBody().readAllBytes();
+			byte[] body = "[{\"value\":\"hi a\"}]".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		RestClientProperties properties = new RestClientProperties();
+		properties.setInstances(List.of("http://localhost:" + server.getAddress().getPort()));
+		RestClientContext context = new RestClientContext(new RestTemplate(new PooledClientHttpRequestFactory(properties)),
+			new PropertiesServiceInstanceResolver(properties), properties, new ObjectMapper());
+		try {
+			BatchInterface proxy = RestClientInvoker.createProxy("demo", null, context, BatchInterface.class);
+			// 批量请求在 executor 的线程上发送, deadline 也要跟过去
+			assertEquals("hi a", RestDeadline.within(Duration.ofSeconds(5), () -> proxy.echo("a")));
+			assertEquals(1, headers.size());
+			long millis = Long.parseLong(headers.get(0));
+			assertTrue(millis > 0 && millis <= 5000, headers.toString());
+		} finally {
+			context.destroy();
+			server.stop(0);
+		}
+	}
+}
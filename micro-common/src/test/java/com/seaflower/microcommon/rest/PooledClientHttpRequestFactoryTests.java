@@ -0,0 +1,176 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microcommon.RestClientProperties;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledClientHttpRequestFactoryTests {
+
+	static {
+		// 否则每个请求都要等 delayed ACK
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private HttpServer server;
+	private RestClientProperties properties;
+	private String baseUrl;
+
+	@BeforeEach
+	void start() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		// 响应体是客户端连接的端口, 换了连接端口就不一样
+		server.createContext("/", exchange -> {
+			if (exchange.getRequestURI().getPath().endsWith("/slow")) {
+				sleep(500);
+			}
+			byte[] body = String.valueOf(exchange.getRemoteAddress().getPort()).getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+		properties = new RestClientProperties();
+		properties.setMaxConnections(2);
+		properties.setConnectTimeout(Duration.ofMillis(200));
+		RestClientProperties.Service a = new RestClientProperties.Service();
+		a.setMaxConnections(1);
+		properties.setServices(Map.of("a", a));
+	}
+
+	@AfterEach
+	void stop() {
+		server.stop(0);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static ClientHttpResponse get(PooledClientHttpRequestFactory factory, String url) throws IOException {
+		return factory.createRequest(URI.create(url), HttpMethod.GET).execute();
+	}
+
+	private static String body(ClientHttpResponse response) throws IOException {
+		try (response) {
+			return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	void permitIsReturnedWhenTheResponseIsClosed() throws Exception {
+		PooledClientHttpRequestFactory factory = new PooledClientHttpRequestFactory(properties);
+		ClientHttpResponse held = get(factory, baseUrl + "/a/hello");
+		IOException full = assertThrows(IOException.class, () -> get(factory, baseUrl + "/a/hello"));
+		assertTrue(full.getMessage().contains("连接池已满"), full.getMessage());
+
+		held.close();
+		// 关闭两次也只归还一次
+		held.close();
+		assertNotNull(body(get(factory, baseUrl + "/a/hello")));
+		ClientHttpResponse again = get(factory, baseUrl + "/a/hello");
+		assertThrows(IOException.class, () -> get(factory, baseUrl + "/a/hello"));
+		again.close();
+	}
+
+	@Test
+	void permitIsReturnedWhenTheRequestFails() throws Exception {
+		int closedPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closedPort = socket.getLocalPort();
+		}
+		PooledClientHttpRequestFactory factory = new PooledClientHttpRequestFactory(properties);
+		for (int i = 0; i < 3; i++) {
+			assertThrows(IOException.class, () -> get(factory, "http://localhost:" + closedPort + "/a/hello"));
+		}
+		// 连接失败的请求没有占着唯一的连接
+		assertNotNull(body(get(factory, baseUrl + "/a/hello")));
+	}
+
+	@Test
+	void maxConnectionsIsPerMicroService() throws Exception {
+		PooledClientHttpRequestFactory factory = new PooledClientHttpRequestFactory(properties);
+		ClientHttpResponse a = get(factory, baseUrl + "/a/hello");
+		assertThrows(IOException.class, () -> get(factory, baseUrl + "/a/hello"));
+
+		// b 没有单独配置, 用默认的 2 个, 也不受 a 的影响
+		ClientHttpResponse b1 = get(factory, baseUrl + "/b/hello");
+		ClientHttpResponse b2 = get(factory, baseUrl + "/b/hello");
+		assertThrows(IOException.class, () -> get(factory, baseUrl + "/b/hello"));
+		for (ClientHttpResponse response : List.of(a, b1, b2)) {
+			response.close();
+		}
+	}
+
+	@Test
+	void microServiceNameIsNotGuessedFromAContextPath() throws Exception {
+		PooledClientHttpRequestFactory factory = new PooledClientHttpRequestFactory(properties);
+		// 实例地址是 http://host:port/ctx, 第一段是 ctx 而不是微服务名称
+		ClientHttpResponse held = PooledClientHttpRequestFactory.forMicroService("a",
+			() -> createAndExecute(factory, baseUrl + "/ctx/a/hello"));
+		assertThrows(IOException.class,
+			() -> factory.createRequest(URI.create(baseUrl + "/ctx/a/hello"), HttpMethod.GET, "a").execute());
+		held.close();
+		assertNotNull(body(factory.createRequest(URI.create(baseUrl + "/ctx/a/hello"), HttpMethod.GET, "a").execute()));
+	}
+
+	private static ClientHttpResponse createAndExecute(PooledClientHttpRequestFactory factory, String url) {
+		try {
+			return get(factory, url);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Test
+	void deadlineShortensTheReadTimeoutOfOneRequest() throws Exception {
+		PooledClientHttpRequestFactory factory = new PooledClientHttpRequestFactory(properties);
+		long start = System.nanoTime();
+		UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> RestDeadline.within(Duration.ofMillis(100),
+			() -> createAndExecute(factory, baseUrl + "/b/slow")));
+		assertInstanceOf(HttpTimeoutException.class, e.getCause());
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(450));
+		// 只影响这一个请求, 之后的请求还是默认的读取超时
+		assertNotNull(body(get(factory, baseUrl + "/b/slow")));
+	}
+
+	@Test
+	void connectionsAreReplacedAfterTheTtl() throws Exception {
+		PooledClientHttpRequestFactory reused = new PooledClientHttpRequestFactory(properties);
+		assertEquals(body(get(reused, baseUrl + "/b/hello")), body(get(reused, baseUrl + "/b/hello")));
+
+		properties.setConnectionTtl(Duration.ofMillis(50));
+		PooledClientHttpRequestFactory renewed = new PooledClientHttpRequestFactory(properties);
+		String first = body(get(renewed, baseUrl + "/b/hello"));
+		Thread.sleep(100);
+		// 新的 HttpClient 新建连接, 客户端的端口不一样
+		assertNotEquals(first, body(get(renewed, baseUrl + "/b/hello")));
+	}
+}
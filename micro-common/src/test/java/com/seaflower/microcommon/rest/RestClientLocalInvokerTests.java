@@ -0,0 +1,118 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestClientLocalInvokerTests {
+
+	@RestclientMapping("/echo")
+	public interface EchoInterface {
+		@RestclientMapping("/echo")
+		String echo(@RequestParam("text") String text);
+	}
+
+	static class LocalEcho implements EchoInterface {
+		@Override
+		public String echo(String text) {
+			if (text == null) {
+				throw new IllegalArgumentException("text");
+			}
+			return "local " + text;
+		}
+	}
+
+	static class Consumer {
+		@RestClientReference(microServiceNames = "echo", preferLocal = true)
+		EchoInterface local;
+
+		@RestClientReference(microServiceNames = "echo")
+		EchoInterface remote;
+	}
+
+	static class Broken {
+		@RestClientReference(microServiceNames = {})
+		EchoInterface echo;
+	}
+
+	@Configuration
+	static class Config {
+		@Bean
+		RestClientContext restClientContext() {
+			RestClientProperties properties = new RestClientProperties();
+			properties.setInstances(List.of("http://localhost:1"));
+			return new RestClientContext(new RestTemplate(), new PropertiesServiceInstanceResolver(properties),
+				properties, new ObjectMapper());
+		}
+
+		@Bean
+		RestclientReferenceProcessor restclientReferenceProcessor() {
+			return new RestclientReferenceProcessor();
+		}
+
+		@Bean
+		LocalEcho localEcho() {
+			return new LocalEcho();
+		}
+
+		@Bean
+		Consumer consumer() {
+			return new Consumer();
+		}
+	}
+
+	@Test
+	void preferLocalCallsTheColocatedBean() {
+		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Config.class)) {
+			Consumer consumer = context.getBean(Consumer.class);
+
+			assertTrue(RestClientLocalInvoker.isLocal(consumer.local));
+			assertEquals("local a", consumer.local.echo("a"));
+			// 和直接调用一样抛出原来的异常
+			assertThrows(IllegalArgumentException.class, () -> consumer.local.echo(null));
+			assertEquals("EchoInterface(local echo)", consumer.local.toString());
+
+			// 没有打开的还是远端调用
+			assertFalse(RestClientLocalInvoker.isLocal(consumer.remote));
+			assertEquals("echo", RestClientInvoker.microServiceNameOf(consumer.remote));
+		}
+	}
+
+	@Test
+	void injectionFailureNamesTheField() {
+		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+			context.register(Config.class);
+			context.registerBean("broken", Broken.class);
+			BeanCreationException e = assertThrows(BeanCreationException.class, context::refresh);
+			assertEquals("broken", e.getBeanName());
+			assertTrue(e.getMessage().contains(Broken.class.getName() + ".echo"), e.getMessage());
+			assertInstanceOf(IllegalStateException.class, e.getCause());
+		}
+	}
+
+	@Test
+	void targetIsResolvedOnFirstCall() {
+		int[] resolved = { 0 };
+		EchoInterface echo = RestClientLocalInvoker.createProxy("echo", EchoInterface.class, () -> {
+			resolved[0]++;
+			return new LocalEcho();
+		});
+		assertTrue(Proxy.isProxyClass(echo.getClass()));
+		assertEquals(0, resolved[0]);
+		echo.echo("a");
+		echo.echo("b");
+		assertEquals(1, resolved[0]);
+	}
+}
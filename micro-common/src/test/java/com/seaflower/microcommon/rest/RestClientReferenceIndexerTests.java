@@ -0,0 +1,86 @@
+package com.seaflower.microcommon.rest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestClientReferenceIndexerTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void indexFieldsAndContracts() throws Exception {
+		Path source = dir.resolve("src/demo/DemoController.java");
+		Files.createDirectories(source.getParent());
+		Files.writeString(source, """
+			package demo;
+
+			import com.seaflower.microcommon.rest.RestClientReference;
+			import java.util.List;
+			import java.util.Map;
+
+			public class DemoController {
+				public interface Hello {
+				}
+
+				@RestClientReference(microServiceNames = "provider")
+				private Hello hello;
+
+				@RestClientReference(microServiceNames = { "a", "b" })
+				private List<Hello> hellos;
+
+				@RestClientReference(microServiceNames = { "a", "b" })
+				private Map<String, Hello> helloMap;
+
+				@RestClientReference(microServiceNames = "provider", consumerInterface = Runnable.class)
+				private Object other;
+
+				private Hello notReferenced;
+			}
+			""");
+		Path out = Files.createDirectories(dir.resolve("classes"));
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		int result = compiler.run(null, null, null, "-proc:only",
+			"-processor", RestClientReferenceIndexer.class.getName(),
+			"-cp", System.getProperty("java.class.path"), "-d", out.toString(), source.toString());
+		assertEquals(0, result);
+		assertTrue(Files.exists(out.resolve(RestClientReferenceIndex.LOCATION)));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { out.toUri().toURL() }, null)) {
+			RestClientReferenceIndex index = RestClientReferenceIndex.load(loader);
+			assertNotNull(index);
+			assertEquals(4, index.size());
+			List<RestClientReferenceIndex.IndexedField> fields = index.fieldsOf("demo.DemoController");
+			assertEquals("demo.DemoController$Hello", contractOf(fields, "hello"));
+			assertEquals("demo.DemoController$Hello", contractOf(fields, "hellos"));
+			assertEquals("demo.DemoController$Hello", contractOf(fields, "helloMap"));
+			assertEquals("java.lang.Runnable", contractOf(fields, "other"));
+			assertNull(contractOf(fields, "notReferenced"));
+		}
+	}
+
+	@Test
+	void noIndexOnClasspath() throws Exception {
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { new File(dir.toFile(), "empty/").toURI().toURL() },
+			null)) {
+			assertNull(RestClientReferenceIndex.load(loader));
+		}
+	}
+
+	private static String contractOf(List<RestClientReferenceIndex.IndexedField> fields, String name) {
+		return fields.stream().filter(f -> f.name().equals(name)).map(RestClientReferenceIndex.IndexedField::contract)
+			.findFirst().orElse(null);
+	}
+}
@@ -0,0 +1,144 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestClientScatterTests {
+
+	static {
+		// 否则每个请求都要等 delayed ACK
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	@RestclientMapping("/echo")
+	public interface EchoInterface {
+		@RestclientMapping("/who")
+		String who();
+	}
+
+	private HttpServer server;
+	private RestClientContext context;
+	// 微服务名称 -> 响应前等待的毫秒数, 负数是返回 500
+	private final Map<String, Long> behavior = new ConcurrentHashMap<>();
+	// 微服务名称 -> 收到的 X-Micro-Deadline
+	private final Map<String, String> deadlines = new ConcurrentHashMap<>();
+	private final Map<String, EchoInterface> proxies = new LinkedHashMap<>();
+
+	@BeforeEach
+	void start() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", exchange -> {
+			String service = exchange.getRequestURI().getPath().split("/")[1];
+			String deadline = exchange.getRequestHeaders().getFirst(RestDeadline.HEADER);
+			if (deadline != null) {
+				deadlines.put(service, deadline);
+			}
+			long millis = behavior.getOrDefault(service, 0L);
+			if (millis > 0) {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			byte[] body = service.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(millis < 0 ? 500 : 200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+
+		RestClientProperties properties = new RestClientProperties();
+		properties.setInstances(List.of("http://localhost:" + server.getAddress().getPort()));
+		properties.getRetry().setMaxAttempts(1);
+		properties.setReadTimeout(Duration.ofSeconds(10));
+		context = new RestClientContext(new RestTemplate(new PooledClientHttpRequestFactory(properties)),
+			new PropertiesServiceInstanceResolver(properties), properties, new ObjectMapper());
+		for (String name : List.of("a", "b", "c")) {
+			proxies.put(name, RestClientInvoker.createProxy(name, null, context, EchoInterface.class));
+		}
+	}
+
+	@AfterEach
+	void stop() {
+		context.destroy();
+		server.stop(0);
+	}
+
+	@Test
+	void allOfKeepsTheOrderOfTheProxies() {
+		behavior.put("a", 50L);
+		Map<String, String> all = RestClientScatter.of(proxies).allOf(EchoInterface::who);
+		assertEquals(List.of("a", "b", "c"), List.copyOf(all.keySet()));
+		assertEquals(List.of("a", "b", "c"), List.copyOf(all.values()));
+	}
+
+	@Test
+	void firstSuccessDoesNotWaitForTheSlowOnes() {
+		behavior.put("a", 3000L);
+		behavior.put("b", -1L);
+		long start = System.nanoTime();
+		Map<String, String> first = RestClientScatter.of(proxies).firstSuccess(EchoInterface::who);
+		assertEquals(Map.of("c", "c"), first);
+		assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+	}
+
+	@Test
+	void quorumGivesUpAsSoonAsItCannotBeReached() {
+		behavior.put("a", -1L);
+		behavior.put("b", -1L);
+		behavior.put("c", 3000L);
+		long start = System.nanoTime();
+		ScatterGatherException e = assertThrows(ScatterGatherException.class,
+			() -> RestClientScatter.of(proxies).deadline(Duration.ofSeconds(10)).quorum(2, EchoInterface::who));
+		assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+		assertEquals(List.of("a", "b"), e.getErrors().keySet().stream().sorted().toList());
+		assertTrue(e.getErrors().get("a") instanceof RemoteCallException);
+
+		behavior.remove("b");
+		assertEquals(Map.of("b", "b"), Map.copyOf(RestClientScatter.of(proxies).quorum(1, EchoInterface::who)));
+	}
+
+	@Test
+	void deadlineIsSentToTheProviders() {
+		behavior.put("b", 3000L);
+		long start = System.nanoTime();
+		ScatterGatherException e = assertThrows(ScatterGatherException.class,
+			() -> RestClientScatter.of(proxies).deadline(Duration.ofMillis(300)).allOf(EchoInterface::who));
+		assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+		assertEquals(Map.of("a", "a", "c", "c"), Map.copyOf(e.getResults()));
+		for (String name : List.of("a", "b", "c")) {
+			assertTrue(Long.parseLong(deadlines.get(name)) <= 300, deadlines.toString());
+		}
+	}
+
+	@Test
+	void callerDeadlineWinsWhenItIsEarlier() {
+		RestDeadline.within(Duration.ofMillis(200),
+			() -> RestClientScatter.of(proxies).deadline(Duration.ofSeconds(10)).allOf(EchoInterface::who));
+		for (String name : List.of("a", "b", "c")) {
+			assertTrue(Long.parseLong(deadlines.get(name)) <= 200, deadlines.toString());
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import javax.tools.ToolProvider;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class RestClientStubGeneratorTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void generatedStubIsUsedInsteadOfProxy() throws Exception {
+		Path source = dir.resolve("src/demo/EchoInterface.java");
+		Files.createDirectories(source.getParent());
+		Files.writeString(source, """
+			package demo;
+
+			import com.seaflower.microcommon.rest.RestclientMapping;
+			import org.springframework.web.bind.annotation.PathVariable;
+			import org.springframework.web.bind.annotation.RequestMethod;
+			import org.springframework.web.bind.annotation.RequestParam;
+
+			@RestclientMapping("/echo")
+			public interface EchoInterface {
+				@RestclientMapping(path = "/{id}", method = RequestMethod.GET)
+				String echo(@PathVariable("id") long id, @RequestParam("name") String name);
+
+				@RestclientMapping(path = "/count", method = RequestMethod.GET)
+				int count();
+
+				String notMapped();
+			}
+			""");
+		Path out = Files.createDirectories(dir.resolve("classes"));
+		int result = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+			"-processor", RestClientStubGenerator.class.getName(), "-parameters",
+			"-cp", System.getProperty("java.class.path"), "-d", out.toString(), source.toString());
+		assertEquals(0, result);
+		// 通过 ServiceLoader 查找, 不用 Class.forName
+		assertEquals(List.of("# RestClientStubGenerator 生成的客户端类", "demo.EchoInterface_RestClient$Factory"),
+			Files.readAllLines(out.resolve(RestClientStubGenerator.SERVICES)));
+
+		RestClientProperties properties = new RestClientProperties();
+		properties.setInstances(List.of("http://localhost:1"));
+		RestTemplate restTemplate = new RestTemplate();
+		MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+		server.expect(requestTo("http://localhost:1/demo/echo/42?name=a+b")).andExpect(method(HttpMethod.GET))
+			.andRespond(withSuccess("a b 42", MediaType.TEXT_PLAIN));
+		server.expect(requestTo("http://localhost:1/demo/echo/count"))
+			.andRespond(withSuccess("3", MediaType.APPLICATION_JSON));
+		RestClientContext context = new RestClientContext(restTemplate,
+			new PropertiesServiceInstanceResolver(properties), properties, new ObjectMapper());
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { out.toUri().toURL() }, getClass().getClassLoader())) {
+			Class<?> contract = loader.loadClass("demo.EchoInterface");
+			Object client = RestClientInvoker.createProxy("demo", null, context, contract);
+			assertFalse(Proxy.isProxyClass(client.getClass()));
+			assertEquals("demo.EchoInterface_RestClient", client.getClass().getName());
+			assertEquals("demo", RestClientInvoker.microServiceNameOf(client));
+
+			assertEquals("a b 42", contract.getMethod("echo", long.class, String.class).invoke(client, 42L, "a b"));
+			assertEquals(3, contract.getMethod("count").invoke(client));
+			server.verify();
+		} finally {
+			context.destroy();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.seaflower.microcommon.rest;
+
+import com.seaflower.microcommon.RestClientProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestDeadlineTests {
+
+	@Test
+	void innerDeadlineCannotExtendOuter() {
+		assertNull(RestDeadline.current());
+		RestDeadline.within(Duration.ofMillis(100), () -> {
+			Long outer = RestDeadline.current();
+			RestDeadline.within(Duration.ofMinutes(1), () -> {
+				assertEquals(outer, RestDeadline.current());
+				return null;
+			});
+			assertTrue(RestDeadline.remainingNanos() <= Duration.ofMillis(100).toNanos());
+			return null;
+		});
+		assertNull(RestDeadline.current());
+		assertEquals(Long.MAX_VALUE, RestDeadline.remainingNanos());
+	}
+
+	@Test
+	void backoffIsCappedExponentialJitter() {
+		RestClientProperties.RetrySettings settings = new RestClientProperties.RetrySettings();
+		settings.setInitialBackoff(Duration.ofMillis(10));
+		settings.setMaxBackoff(Duration.ofMillis(25));
+		for (int i = 0; i < 100; i++) {
+			assertTrue(RestClientInvoker.backoffNanos(settings, 1) <= Duration.ofMillis(10).toNanos());
+			assertTrue(RestClientInvoker.backoffNanos(settings, 2) <= Duration.ofMillis(20).toNanos());
+			assertTrue(RestClientInvoker.backoffNanos(settings, 5) <= Duration.ofMillis(25).toNanos());
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.seaflower.microcommon.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.lang.reflect.Method;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestMethodPlanTests {
+
+	@RestclientMapping("/demo")
+	interface DemoInterface {
+		@RestclientCacheable
+		@RestclientMapping(path = "/bill/{billId}", method = RequestMethod.GET)
+		String bill(@PathVariable("billId") String billId, @RequestParam("type") String type);
+
+		@RestclientCacheable
+		@RestclientMapping(path = "/save", method = RequestMethod.POST)
+		String save(@RequestBody String body);
+
+		@RestclientMapping("/list")
+		CompletableFuture<List<String>> listAsync();
+
+		@RestclientMapping("/search/{area:[a-z]+}/items")
+		String search(@PathVariable("area") String area, BillQuery query, @RequestParam("tag") List<String> tags);
+
+		@RestclientMapping("/page")
+		String page(Map<String, Object> filters, PageQuery page);
+
+		String notMapped();
+	}
+
+	public static class BillQuery {
+		private final String owner;
+		private final Integer size;
+
+		BillQuery(String owner, Integer size) {
+			this.owner = owner;
+			this.size = size;
+		}
+
+		public String getOwner() {
+			return owner;
+		}
+
+		public Integer getSize() {
+			return size;
+		}
+	}
+
+	public record PageQuery(int page, String sort) {
+	}
+
+	@Test
+	void plansAreCompiledOncePerContract() throws Exception {
+		Map<Method, RestMethodPlan> plans = RestMethodPlan.plansOf(DemoInterface.class);
+		assertSame(plans, RestMethodPlan.plansOf(DemoInterface.class));
+		assertNull(plans.get(DemoInterface.class.getMethod("notMapped")));
+	}
+
+	@Test
+	void bindPathAndQuery() throws Exception {
+		RestMethodPlan plan = RestMethodPlan.plansOf(DemoInterface.class)
+			.get(DemoInterface.class.getMethod("bill", String.class, String.class));
+		assertEquals(HttpMethod.GET, plan.httpMethod());
+		assertEquals("/demo/bill/42?type=a+b", plan.bindPath(new Object[] { "42", "a b" }));
+		assertEquals("/demo/bill/42", plan.bindPath(new Object[] { "42", null }));
+		assertNull(plan.body(new Object[] { "42", "a" }));
+		assertNotNull(plan.cacheable());
+	}
+
+	@Test
+	void postBody() throws Exception {
+		RestMethodPlan plan = RestMethodPlan.plansOf(DemoInterface.class)
+			.get(DemoInterface.class.getMethod("save", String.class));
+		assertEquals("/demo/save", plan.bindPath(new Object[] { "x" }));
+		assertEquals("x", plan.body(new Object[] { "x" }));
+		// 只有 GET 的结果可以缓存
+		assertNull(plan.cacheable());
+	}
+
+	@Test
+	void asyncResponseTypeIsFutureValue() throws Exception {
+		RestMethodPlan plan = RestMethodPlan.plansOf(DemoInterface.class)
+			.get(DemoInterface.class.getMethod("listAsync"));
+		assertTrue(plan.async());
+		assertEquals("java.util.List<java.lang.String>", plan.responseType().getType().getTypeName());
+	}
+
+	@Test
+	void pathVariablesAreEncodedAsSegments() throws Exception {
+		RestMethodPlan plan = RestMethodPlan.plansOf(DemoInterface.class)
+			.get(DemoInterface.class.getMethod("bill", String.class, String.class));
+		assertEquals("/demo/bill/a%2Fb%20c?type=%E4%BD%A0%E5%A5%BD", plan.bindPath(new Object[] { "a/b c", "你好" }));
+		assertThrows(IllegalArgumentException.class, () -> plan.bindPath(new Object[] { null, "a" }));
+	}
+
+	@Test
+	void objectParametersAreExpandedIntoQuery() throws Exception {
+		RestMethodPlan search = RestMethodPlan.plansOf(DemoInterface.class)
+			.get(DemoInterface.class.getMethod("search", String.class, BillQuery.class, List.class));
+		assertEquals("/demo/search/east/items?owner=a+b&size=10&tag=x&tag=y",
+			search.bindPath(new Object[] { "east", new BillQuery("a b", 10), List.of("x", "y") }));
+		// null 的属性不写
+		assertEquals("/demo/search/east/items?size=1",
+			search.bindPath(new Object[] { "east", new BillQuery(null, 1), null }));
+
+		RestMethodPlan page = RestMethodPlan.plansOf(DemoInterface.class)
+			.get(DemoInterface.class.getMethod("page", Map.class, PageQuery.class));
+		Map<String, Object> filters = new LinkedHashMap<>();
+		filters.put("status", new String[] { "open", "closed" });
+		filters.put("q", "a&b");
+		assertEquals("/demo/page?status=open&status=closed&q=a%26b&page=2&sort=id",
+			page.bindPath(new Object[] { filters, new PageQuery(2, "id") }));
+	}
+
+	@Test
+	void queryEncodingMatchesUrlEncoder() {
+		Random random = new Random(42);
+		for (int n = 0; n < 1000; n++) {
+			StringBuilder text = new StringBuilder();
+			for (int i = random.nextInt(20); i > 0; i--) {
+				switch (random.nextInt(4)) {
+					case 0 -> text.append((char) (32 + random.nextInt(95)));
+					case 1 -> text.append((char) (0x80 + random.nextInt(0x780)));
+					case 2 -> text.append((char) (0x4E00 + random.nextInt(0x5000)));
+					default -> text.appendCodePoint(0x1F600 + random.nextInt(80));
+				}
+			}
+			StringBuilder encoded = new StringBuilder();
+			UriEncoder.appendQuery(encoded, text);
+			assertEquals(URLEncoder.encode(text.toString(), StandardCharsets.UTF_8), encoded.toString());
+		}
+	}
+}
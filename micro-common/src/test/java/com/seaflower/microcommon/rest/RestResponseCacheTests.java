@@ -0,0 +1,56 @@
+package com.seaflower.microcommon.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestResponseCacheTests {
+
+	@RestclientCacheable(ttl = 1, unit = TimeUnit.HOURS, maxSize = 16)
+	void longLived() {
+	}
+
+	@RestclientCacheable(ttl = 0, unit = TimeUnit.SECONDS, staleWhileRevalidate = 5, maxSize = 16)
+	void stale() {
+	}
+
+	private RestclientCacheable cacheable(String name) throws Exception {
+		return getClass().getDeclaredMethod(name).getAnnotation(RestclientCacheable.class);
+	}
+
+	@Test
+	void hitsAndMisses() throws Exception {
+		RestResponseCache cache = new RestResponseCache(cacheable("longLived"), Runnable::run);
+		AtomicInteger calls = new AtomicInteger();
+		assertEquals("a1", cache.get(new Object[] { "a" }, () -> "a" + calls.incrementAndGet()));
+		assertEquals("a1", cache.get(new Object[] { "a" }, () -> "a" + calls.incrementAndGet()));
+		assertNull(cache.get(new Object[] { null }, () -> null));
+		assertNull(cache.get(new Object[] { null }, () -> "not cached"));
+		assertEquals(2, cache.hits());
+		assertEquals(2, cache.misses());
+	}
+
+	@Test
+	void boundedSize() throws Exception {
+		RestResponseCache cache = new RestResponseCache(cacheable("longLived"), Runnable::run);
+		for (int i = 0; i < 1000; i++) {
+			cache.get(new Object[] { i }, () -> "v");
+		}
+		assertEquals(16, cache.size());
+		assertTrue(cache.evictions() > 0);
+	}
+
+	@Test
+	void staleWhileRevalidate() throws Exception {
+		RestResponseCache cache = new RestResponseCache(cacheable("stale"), Runnable::run);
+		AtomicInteger calls = new AtomicInteger();
+		assertEquals(1, cache.get(new Object[] { "a" }, calls::incrementAndGet));
+		// 已经过期但是在 stale 窗口之内, 返回旧值并同步（测试中的 executor）刷新
+		assertEquals(1, cache.get(new Object[] { "a" }, calls::incrementAndGet));
+		assertEquals(2, calls.get());
+		assertEquals(1, cache.staleHits());
+	}
+}
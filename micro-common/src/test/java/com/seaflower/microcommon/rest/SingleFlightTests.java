@@ -0,0 +1,90 @@
+package com.seaflower.microcommon.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTests {
+
+	@Test
+	void concurrentCallsShareOneExecution() throws Exception {
+		SingleFlight flight = new SingleFlight("demo", "/a");
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flight.execute(new Object[] { "a" }, () -> {
+				started.countDown();
+				await(release);
+				return "v";
+			}), pool);
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			List<CompletableFuture<Object>> followers = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				followers.add(CompletableFuture.supplyAsync(
+					() -> flight.execute(new Object[] { "a" }, () -> "other"), pool));
+			}
+			while (flight.shared() < 5) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+
+			assertEquals("v", leader.get(5, TimeUnit.SECONDS));
+			for (CompletableFuture<Object> f : followers) {
+				assertEquals("v", f.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, flight.executed());
+			// 结束以后不再合并
+			assertEquals("next", flight.execute(new Object[] { "a" }, () -> "next"));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void followerOnlyWaitsUntilItsOwnDeadline() throws Exception {
+		SingleFlight flight = new SingleFlight("demo", "/a");
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flight.execute(new Object[] { "a" }, () -> {
+				started.countDown();
+				await(release);
+				return "v";
+			}), pool);
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			long start = System.nanoTime();
+			DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+				() -> RestDeadline.within(Duration.ofMillis(50), () -> flight.execute(new Object[] { "a" }, () -> "other")));
+			assertEquals("demo", e.getMicroServiceName());
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+			// 发起调用的调用方不受影响
+			release.countDown();
+			assertEquals("v", leader.get(5, TimeUnit.SECONDS));
+			assertEquals(1, flight.shared());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCallTests {
+
+	@RestclientMapping("/items")
+	interface ItemInterface {
+		@RestclientMapping("/ndjson")
+		Stream<Integer> stream(@RequestParam("count") int count);
+
+		@RestclientMapping("/array")
+		Iterator<List<String>> iterator();
+	}
+
+	private HttpServer server;
+	private RestClientContext context;
+
+	@BeforeEach
+	void start() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/demo/items/ndjson", exchange -> {
+			int count = Integer.parseInt(exchange.getRequestURI().getQuery().substring("count=".length()));
+			exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				for (int i = 0; i < count; i++) {
+					out.write((i + "\n").getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		});
+		server.createContext("/demo/items/array", exchange -> {
+			byte[] body = "[[\"a\"],[\"b\",\"c\"]]".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+
+		RestClientProperties properties = new RestClientProperties();
+		properties.setInstances(List.of("http://localhost:" + server.getAddress().getPort()));
+		// 只有一个连接, 没有归还的话第二次调用会等待连接超时
+		properties.setMaxConnections(1);
+		properties.setConnectTimeout(Duration.ofMillis(500));
+		RestTemplate restTemplate = new RestTemplate(new PooledClientHttpRequestFactory(properties));
+		context = new RestClientContext(restTemplate, new PropertiesServiceInstanceResolver(properties), properties,
+			new ObjectMapper());
+	}
+
+	@AfterEach
+	void stop() {
+		context.destroy();
+		server.stop(0);
+	}
+
+	@Test
+	void streamsAreDecodedIncrementallyAndReleaseTheConnection() {
+		ItemInterface items = RestClientInvoker.createProxy("demo", null, context, ItemInterface.class);
+		try (Stream<Integer> stream = items.stream(1000)) {
+			assertEquals(List.of(0, 1, 2), stream.limit(3).collect(Collectors.toList()));
+		}
+		try (Stream<Integer> stream = items.stream(1000)) {
+			assertEquals(1000, stream.count());
+		}
+
+		List<List<String>> read = new ArrayList<>();
+		items.iterator().forEachRemaining(read::add);
+		assertEquals(List.of(List.of("a"), List.of("b", "c")), read);
+		// 读到最后一个元素的时候已经归还了连接
+		assertEquals(List.of("a"), items.iterator().next());
+	}
+}
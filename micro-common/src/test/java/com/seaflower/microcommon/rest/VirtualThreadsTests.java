@@ -0,0 +1,42 @@
+package com.seaflower.microcommon.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsTests {
+
+	private static final boolean SUPPORTED = Runtime.version().feature() >= 21;
+
+	@Test
+	void virtualThreadsNeedJava21() throws Exception {
+		ExecutorService executor = VirtualThreads.newExecutor("test-");
+		assertEquals(SUPPORTED, executor != null);
+		if (executor != null) {
+			String name = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+			assertTrue(name.startsWith("test-"), name);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void contextFallsBackToThePlatformPool() {
+		RestClientProperties properties = new RestClientProperties();
+		properties.setVirtualThreads(true);
+		RestClientContext context = new RestClientContext(new RestTemplate(),
+			new PropertiesServiceInstanceResolver(properties), properties, new ObjectMapper());
+		try {
+			assertEquals(!SUPPORTED, context.executor() instanceof ThreadPoolExecutor);
+		} finally {
+			context.destroy();
+		}
+	}
+}
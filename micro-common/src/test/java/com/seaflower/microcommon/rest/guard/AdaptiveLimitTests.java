@@ -0,0 +1,87 @@
+package com.seaflower.microcommon.rest.guard;
+
+import com.seaflower.microcommon.RestClientProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimitTests {
+
+	private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private static AdaptiveLimit limit(int initialLimit, int maxLimit) {
+		RestClientProperties.AdaptiveLimitSettings settings = new RestClientProperties.AdaptiveLimitSettings();
+		settings.setEnabled(true);
+		settings.setInitialLimit(initialLimit);
+		settings.setMinLimit(2);
+		return new AdaptiveLimit(settings, maxLimit);
+	}
+
+	@Test
+	void growsWhileLatencyIsSteady() {
+		AdaptiveLimit limit = limit(10, 50);
+		for (int i = 0; i < 200; i++) {
+			limit.onSample(RTT, limit.get(), false);
+		}
+		assertEquals(50, limit.get());
+	}
+
+	@Test
+	void doesNotGrowWhenTheCallerDoesNotUseIt() {
+		AdaptiveLimit limit = limit(10, 50);
+		for (int i = 0; i < 200; i++) {
+			limit.onSample(RTT, 1, false);
+		}
+		assertEquals(10, limit.get());
+	}
+
+	@Test
+	void shrinksWhenLatencyRises() {
+		AdaptiveLimit limit = limit(40, 50);
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(RTT, limit.get(), false);
+		}
+		assertEquals(50, limit.get());
+
+		// provider 变慢到原来的 4 倍, 远远超过 rttTolerance
+		for (int i = 0; i < 50; i++) {
+			limit.onSample(4 * RTT, limit.get(), false);
+		}
+		assertTrue(limit.get() < 25, String.valueOf(limit.get()));
+	}
+
+	@Test
+	void dropsBackOffAndStopAtTheMinimum() {
+		AdaptiveLimit limit = limit(20, 50);
+		limit.onSample(RTT, 20, true);
+		assertEquals(18, limit.get());
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(RTT, 1, true);
+		}
+		assertEquals(2, limit.get());
+	}
+
+	@Test
+	void bulkheadRejectsOrQueuesAboveTheLimit() throws Exception {
+		Bulkhead rejecting = new Bulkhead(100, Duration.ZERO, limit(2, 100));
+		assertTrue(rejecting.tryAcquire());
+		assertTrue(rejecting.tryAcquire());
+		assertFalse(rejecting.tryAcquire());
+		assertEquals(2, rejecting.getLimit());
+		assertEquals(100, rejecting.getMaxConcurrentCalls());
+
+		Bulkhead queueing = new Bulkhead(100, Duration.ofSeconds(10), limit(2, 100));
+		queueing.tryAcquire();
+		queueing.tryAcquire();
+		CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(queueing::tryAcquire);
+		Thread.sleep(50);
+		assertFalse(waiting.isDone());
+		queueing.release(RTT, false);
+		assertTrue(waiting.get(5, TimeUnit.SECONDS));
+		assertEquals(2, queueing.getActiveCalls());
+	}
+}
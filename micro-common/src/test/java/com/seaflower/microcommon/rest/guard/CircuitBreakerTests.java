@@ -0,0 +1,67 @@
+package com.seaflower.microcommon.rest.guard;
+
+import com.seaflower.microcommon.RestClientProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTests {
+
+	private static RestClientProperties.CircuitBreakerSettings settings(Duration openDuration) {
+		RestClientProperties.CircuitBreakerSettings settings = new RestClientProperties.CircuitBreakerSettings();
+		settings.setSlidingWindowSize(10);
+		settings.setMinimumCalls(4);
+		settings.setFailureRateThreshold(50);
+		settings.setOpenDuration(openDuration);
+		settings.setHalfOpenCalls(2);
+		return settings;
+	}
+
+	@Test
+	void opensWhenFailureRateIsReached() {
+		CircuitBreaker breaker = new CircuitBreaker(settings(Duration.ofMinutes(1)));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onResult(0, i == 0);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		breaker.onResult(0, true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	void halfOpenClosesAfterSuccessfulProbes() {
+		CircuitBreaker breaker = new CircuitBreaker(settings(Duration.ZERO));
+		for (int i = 0; i < 4; i++) {
+			breaker.tryAcquire();
+			breaker.onResult(0, true);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// openDuration 是 0, 马上进入半开, 只放过去两个试探的调用
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		breaker.onResult(0, false);
+		breaker.onResult(0, false);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void slowCallsCount() {
+		RestClientProperties.CircuitBreakerSettings settings = settings(Duration.ofMinutes(1));
+		settings.setSlowCallDuration(Duration.ofMillis(100));
+		settings.setSlowCallRateThreshold(100);
+		CircuitBreaker breaker = new CircuitBreaker(settings);
+		for (int i = 0; i < 4; i++) {
+			breaker.tryAcquire();
+			breaker.onResult(Duration.ofMillis(200).toNanos(), false);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+}
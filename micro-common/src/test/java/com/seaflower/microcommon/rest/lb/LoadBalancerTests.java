@@ -0,0 +1,68 @@
+package com.seaflower.microcommon.rest.lb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.NoAvailableInstanceException;
+import com.seaflower.microcommon.rest.RemoteCallException;
+import com.seaflower.microcommon.rest.RestClientContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTests {
+	private final ServiceInstance a = new ServiceInstance("provider", "http://localhost:8089/");
+	private final ServiceInstance b = new ServiceInstance("provider", "http://localhost:8090");
+
+	@Test
+	void roundRobinCycles() {
+		LoadBalancer balancer = LoadBalancer.Strategy.ROUND_ROBIN.create();
+		List<ServiceInstance> instances = List.of(a, b);
+		assertSame(a, balancer.choose(instances));
+		assertSame(b, balancer.choose(instances));
+		assertSame(a, balancer.choose(instances));
+		assertEquals("http://localhost:8089", a.getBaseUrl());
+	}
+
+	@Test
+	void powerOfTwoPrefersFewerOutstanding() {
+		LoadBalancer balancer = LoadBalancer.Strategy.POWER_OF_TWO_CHOICES.create();
+		a.onStart();
+		a.onStart();
+		for (int i = 0; i < 20; i++) {
+			assertSame(b, balancer.choose(List.of(a, b)));
+		}
+	}
+
+	@Test
+	void latencyWeightedPrefersFasterInstance() {
+		LoadBalancer balancer = LoadBalancer.Strategy.LATENCY_WEIGHTED.create();
+		a.onStart();
+		a.onComplete(100_000_000L);
+		b.onStart();
+		b.onComplete(1_000_000L);
+		int fast = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (balancer.choose(List.of(a, b)) == b) {
+				fast++;
+			}
+		}
+		assertTrue(fast > 900, "fast instance chosen " + fast + " times");
+	}
+
+	@Test
+	void noInstanceIsARemoteCallFailure() {
+		RestClientProperties properties = new RestClientProperties();
+		properties.setInstances(List.of());
+		RestClientContext context = new RestClientContext(new RestTemplate(),
+			new PropertiesServiceInstanceResolver(properties), properties, new ObjectMapper());
+		try {
+			RemoteCallException e = assertThrows(NoAvailableInstanceException.class, () -> context.choose("provider"));
+			assertEquals("provider", e.getMicroServiceName());
+		} finally {
+			context.destroy();
+		}
+	}
+}
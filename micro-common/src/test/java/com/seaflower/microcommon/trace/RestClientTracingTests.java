@@ -0,0 +1,191 @@
+package com.seaflower.microcommon.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seaflower.microcommon.RestClientProperties;
+import com.seaflower.microcommon.rest.PooledClientHttpRequestFactory;
+import com.seaflower.microcommon.rest.RestClientContext;
+import com.seaflower.microcommon.rest.RestClientInvoker;
+import com.seaflower.microcommon.rest.RestclientHedging;
+import com.seaflower.microcommon.rest.RestclientMapping;
+import com.seaflower.microcommon.rest.lb.PropertiesServiceInstanceResolver;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestClientTracingTests {
+
+	static {
+		// 否则每个请求都要等 delayed ACK
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	@RestclientMapping("/echo")
+	public interface EchoInterface {
+		@RestclientMapping("/sleep")
+		String sleep(@RequestParam("millis") long millis);
+
+		@RestclientMapping("/sleep")
+		CompletableFuture<String> sleepAsync(@RequestParam("millis") long millis);
+
+		@RestclientHedging(delayMillis = 10, maxHedgePercent = 100)
+		@RestclientMapping("/sleep")
+		String sleepHedged(@RequestParam("millis") long millis);
+	}
+
+	private HttpServer server;
+	// 服务端收到的 X-Micro-Trace
+	private final List<String> received = new CopyOnWriteArrayList<>();
+	private RestClientContext context;
+
+	@BeforeEach
+	void start() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/demo/echo/sleep", exchange -> {
+			received.add(String.valueOf(exchange.getRequestHeaders().getFirst(CallTrace.HEADER)));
+			long millis = Long.parseLong(exchange.getRequestURI().getQuery().substring("millis=".length()));
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = String.valueOf(millis).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	@AfterEach
+	void stop() {
+		context.destroy();
+		server.stop(0);
+	}
+
+	private EchoInterface proxy(double sampleRate) {
+		RestClientProperties properties = new RestClientProperties();
+		properties.setInstances(List.of("http://localhost:" + server.getAddress().getPort()));
+		properties.getTrace().setSampleRate(sampleRate);
+		properties.getTrace().setSlowCalls(2);
+		RestTemplate restTemplate = new RestTemplate(new PooledClientHttpRequestFactory(properties));
+		context = new RestClientContext(restTemplate, new PropertiesServiceInstanceResolver(properties), properties,
+			new ObjectMapper());
+		return RestClientInvoker.createProxy("demo", null, context, EchoInterface.class);
+	}
+
+	@Test
+	void sampledCallsRecordPhasesAndKeepTheSlowest() {
+		EchoInterface echo = proxy(1);
+		for (long millis : new long[] { 0, 60, 0, 30, 0 }) {
+			assertEquals(String.valueOf(millis), echo.sleep(millis));
+		}
+
+		List<SlowCall> slowest = context.tracing().slowCalls();
+		assertEquals(2, slowest.size());
+		SlowCall first = slowest.get(0);
+		assertEquals(CallTrace.Kind.CLIENT, first.getKind());
+		assertEquals("demo", first.getService());
+		assertEquals("EchoInterface.sleep", first.getName());
+		assertEquals(1, first.getAttempts());
+		assertTrue(first.getDurationMicros() >= 60_000, first.toString());
+		assertTrue(slowest.get(1).getDurationMicros() >= 30_000 && slowest.get(1).getDurationMicros() < 60_000);
+		// 服务端的时间算在 WAIT 里面
+		Map<String, Long> phases = first.getPhaseMicros();
+		assertTrue(phases.get("WAIT") >= 60_000, phases.toString());
+		// 每个阶段分别截断到微秒
+		assertEquals(first.getDurationMicros(), phases.values().stream().mapToLong(Long::longValue).sum(),
+			phases.size());
+
+		// 每个调用都带着自己的 trace 传给了 provider
+		assertEquals(5, received.size());
+		assertTrue(received.contains(first.getTraceId() + "-" + first.getSpanId()), received.toString());
+		assertEquals(5, received.stream().distinct().count());
+		assertNull(CallTrace.current());
+	}
+
+	@Test
+	void callsInsideAServerTraceJoinIt() {
+		EchoInterface echo = proxy(0);
+		CallTrace server = context.tracing().startServer("abc-123", "me");
+		try {
+			echo.sleep(0);
+		} finally {
+			context.tracing().finish(server, "GET /hello", false);
+		}
+		assertNull(CallTrace.current());
+
+		Map<CallTrace.Kind, SlowCall> byKind = context.tracing().slowCalls().stream()
+			.collect(Collectors.toMap(SlowCall::getKind, c -> c));
+		SlowCall client = byKind.get(CallTrace.Kind.CLIENT);
+		assertEquals("abc", client.getTraceId());
+		assertEquals(byKind.get(CallTrace.Kind.SERVER).getSpanId(), client.getParentSpanId());
+		assertEquals("123", byKind.get(CallTrace.Kind.SERVER).getParentSpanId());
+		assertEquals("GET /hello", byKind.get(CallTrace.Kind.SERVER).getName());
+		assertEquals(List.of("abc-" + client.getSpanId()), received);
+	}
+
+	@Test
+	void asyncCallsJoinTheServerTraceOnAnotherThread() throws Exception {
+		EchoInterface echo = proxy(0);
+		CallTrace server = context.tracing().startServer("abc-123", "me");
+		CompletableFuture<String> future;
+		try {
+			future = echo.sleepAsync(0);
+		} finally {
+			// 异步的 controller 在 future 完成之前就返回了, 在别的线程上结束
+			CallTrace.set(server.previous());
+		}
+		assertEquals("0", future.get(5, TimeUnit.SECONDS));
+		CompletableFuture.runAsync(() -> context.tracing().finish(server, "GET /hello", false))
+			.get(5, TimeUnit.SECONDS);
+		assertNull(CallTrace.current());
+
+		Map<CallTrace.Kind, SlowCall> byKind = context.tracing().slowCalls().stream()
+			.collect(Collectors.toMap(SlowCall::getKind, c -> c));
+		assertEquals(byKind.get(CallTrace.Kind.SERVER).getSpanId(), byKind.get(CallTrace.Kind.CLIENT).getParentSpanId());
+		assertEquals(List.of("abc-" + byKind.get(CallTrace.Kind.CLIENT).getSpanId()), received);
+	}
+
+	@Test
+	void hedgedAttemptsCarryTheTrace() {
+		EchoInterface echo = proxy(1);
+		assertEquals("100", echo.sleepHedged(100));
+		assertNull(CallTrace.current());
+
+		SlowCall call = context.tracing().slowCalls().get(0);
+		assertEquals("EchoInterface.sleepHedged", call.getName());
+		assertTrue(call.getDurationMicros() >= 100_000, call.toString());
+		// 两个请求都带着调用方的 trace, 在别的线程上执行, 不记录各个阶段的时间
+		assertEquals(2, received.size());
+		assertEquals(List.of(call.getTraceId() + "-" + call.getSpanId()), received.stream().distinct().toList());
+		assertEquals(0, call.getAttempts());
+	}
+
+	@Test
+	void unsampledCallsCarryNothing() {
+		EchoInterface echo = proxy(0);
+		echo.sleep(0);
+		assertEquals(List.of("null"), received);
+		assertTrue(context.tracing().slowCalls().isEmpty());
+		assertNull(context.tracing().startServer("not-a-trace", "me"));
+	}
+}
@@ -1,11 +1,33 @@
 package com.server.provider.api.hello;
 
+import com.seaflower.microcommon.rest.RestclientBatch;
 import com.seaflower.microcommon.rest.RestclientMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
 public interface HelloInterface {
 	// 这个和 controller 中的 GetMapping 是一样的, 类上的 @RequestMapping 我们当作微服务的 url
 	@RestclientMapping(path = "/sayHello", method = RequestMethod.GET)
 	String hello(@RequestParam("name") String name);
+
+	// 批量的版本, provider 端用同一个实现。consumer 端并发的调用会被合并成一个批量请求, 发到 provider 的 /micro-batch,
+	// provider 需要有 BatchController
+	@RestclientBatch
+	@RestclientMapping(path = "/sayHello", method = RequestMethod.GET)
+	default String helloBatched(@RequestParam("name") String name) {
+		return hello(name);
+	}
+
+	// 异步的版本, 调用的是同一个接口。consumer 端的代理不会阻塞调用线程, provider 端直接用同步的实现
+	@RestclientMapping(path = "/sayHello", method = RequestMethod.GET)
+	default CompletableFuture<String> helloAsync(@RequestParam("name") String name) {
+		return CompletableFuture.completedFuture(hello(name));
+	}
+
+	// 流式的版本, provider 一边生成一边写 NDJSON, consumer 一边读一边处理, 用完要 close
+	@RestclientMapping(path = "/sayHelloStream", method = RequestMethod.GET)
+	Stream<String> helloStream(@RequestParam("name") String name, @RequestParam("count") int count);
 }
@@ -1,11 +1,13 @@
 package com.server.provider.controller;
 
+import com.seaflower.microcommon.MicroProviderConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
 
-@SpringBootApplication
-@ComponentScan(basePackages = {"com.server.provider"})
+// microcommon 只引入 provider 端的组件（过滤器, 编码, 批量调用, 注册）, 不扫描整个包, 见 MicroProviderConfig
+@SpringBootApplication(scanBasePackages = "com.server.provider")
+@Import(MicroProviderConfig.class)
 public class ServerProviderControllerApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,26 @@
+package com.server.provider.controller.batch;
+
+import com.seaflower.microcommon.rest.RestBatchDispatcher;
+import com.seaflower.microcommon.rest.RestBatchRequest;
+import com.seaflower.microcommon.rest.RestBatchResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// consumer 端 RestclientBatch 方法的批量请求都发到这里, 逐个交给本地的实现, 按顺序返回结果
+@RestController
+@RequestMapping("/provider")
+public class BatchController {
+
+	@Autowired
+	private RestBatchDispatcher restBatchDispatcher;
+
+	@PostMapping("/micro-batch")
+	public List<RestBatchResult> microBatch(@RequestBody RestBatchRequest request) {
+		return restBatchDispatcher.dispatch(request);
+	}
+}
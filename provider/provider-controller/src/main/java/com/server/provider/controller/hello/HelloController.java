@@ -2,11 +2,14 @@ package com.server.provider.controller.hello;
 
 import com.server.provider.api.hello.HelloInterface;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.stream.Stream;
+
 @RestController
 @RequestMapping("/provider")
 public class HelloController {
@@ -18,4 +21,10 @@ public class HelloController {
 	public String sayHello(@RequestParam("name") String name) {
 		return helloInterface.hello(name);
 	}
+
+	// 返回 Stream 的接口由 NdjsonHttpMessageConverter 一边遍历一边写
+	@GetMapping(value = "/sayHelloStream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Stream<String> sayHelloStream(@RequestParam("name") String name, @RequestParam("count") int count) {
+		return helloInterface.helloStream(name, count);
+	}
 }
@@ -3,10 +3,18 @@ package com.server.provider.service.hello;
 import com.server.provider.api.hello.HelloInterface;
 import org.springframework.stereotype.Service;
 
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 @Service
 public class HelloService implements HelloInterface {
 	@Override
 	public String hello(String name) {
 		return "你好: " + name + "!";
 	}
+
+	@Override
+	public Stream<String> helloStream(String name, int count) {
+		return IntStream.range(0, count).mapToObj(i -> hello(name + i));
+	}
 }